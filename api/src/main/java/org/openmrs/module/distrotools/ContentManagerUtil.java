@@ -16,13 +16,17 @@ package org.openmrs.module.distrotools;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.openmrs.api.APIException;
 import org.openmrs.api.context.Context;
 import org.openmrs.module.BaseModuleActivator;
 import org.openmrs.module.distrotools.api.DistroToolsService;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Base abstract class that dependent modules can extend, which ensure that the included tools are run,
@@ -33,7 +37,14 @@ public class ContentManagerUtil extends BaseModuleActivator {
 	protected static final Log log = LogFactory.getLog(ContentManagerUtil.class);
 
 	/**
-	 * Refresh all content managers of a particular type by priority within that type
+	 * The maximum number of content managers which can be refreshed at once
+	 */
+	protected static final int MAX_PARALLEL_REFRESHES = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+	/**
+	 * Refresh all content managers of a particular type by priority within that type. If any managers declare the
+	 * managers they depend on, then managers are refreshed concurrently according to their dependency graph, with each
+	 * refresh in its own session and transaction.
 	 */
 	public static synchronized <T extends ContentManager> void refreshContentManagers(Class<T> contentManagerType) {
 
@@ -50,13 +61,117 @@ public class ContentManagerUtil extends BaseModuleActivator {
 			}
 		});
 
-		DistroToolsService distroToolsService = Context.getService(DistroToolsService.class);
-		for (ContentManager manager : contentManagers) {
-			log.info("Refreshing: " + manager.getClass() + " with priority: " + manager.getPriority());
-			distroToolsService.refreshManager(manager);
+		if (isAnyDependent(contentManagers)) {
+			new RefreshExecutor(MAX_PARALLEL_REFRESHES).execute(new ArrayList<ContentManager>(contentManagers), getDependencies(contentManagers));
+		}
+		else {
+			DistroToolsService distroToolsService = Context.getService(DistroToolsService.class);
+			for (ContentManager manager : contentManagers) {
+				log.info("Refreshing: " + manager.getClass() + " with priority: " + manager.getPriority());
+				distroToolsService.refreshManager(manager);
+			}
 		}
 
 		long time = System.currentTimeMillis() - start;
 		log.info("Refreshed content managers of type " + contentManagerType + " in " + time + "ms");
 	}
+
+	/**
+	 * Gets the dependencies of each of the given content managers. Managers which declare their dependencies depend on
+	 * those, and on every manager with a lower priority which doesn't declare its dependencies (e.g. the requirement and
+	 * metadata managers), as such managers can't know who depends on them. Other managers keep their priority order,
+	 * i.e. they depend on every other such manager before them, and on every declaring manager with a lower priority.
+	 * @param contentManagers the content managers sorted by priority
+	 * @return the map of each manager to the managers it depends on
+	 */
+	protected static Map<ContentManager, List<ContentManager>> getDependencies(List<? extends ContentManager> contentManagers) {
+		Map<ContentManager, List<ContentManager>> dependencies = new HashMap<ContentManager, List<ContentManager>>();
+
+		for (int m = 0; m < contentManagers.size(); m++) {
+			ContentManager manager = contentManagers.get(m);
+			List<ContentManager> dependsOn = new ArrayList<ContentManager>();
+
+			if (manager instanceof DependentContentManager) {
+				for (ContentManager other : contentManagers) {
+					if (!(other instanceof DependentContentManager) && other.getPriority() < manager.getPriority()) {
+						dependsOn.add(other);
+					}
+				}
+				for (Class<? extends ContentManager> dependencyClass : ((DependentContentManager) manager).dependsOn()) {
+					for (ContentManager other : contentManagers) {
+						if (other != manager && dependencyClass.isInstance(other) && !dependsOn.contains(other)) {
+							dependsOn.add(other);
+						}
+					}
+				}
+			}
+			else {
+				for (ContentManager other : contentManagers.subList(0, m)) {
+					if (!(other instanceof DependentContentManager) || other.getPriority() < manager.getPriority()) {
+						dependsOn.add(other);
+					}
+				}
+			}
+
+			dependencies.put(manager, dependsOn);
+		}
+		return dependencies;
+	}
+
+	/**
+	 * Gets whether any of the given content managers declare their dependencies
+	 * @param contentManagers the content managers
+	 * @return true if any manager declares dependencies
+	 */
+	protected static boolean isAnyDependent(List<? extends ContentManager> contentManagers) {
+		for (ContentManager manager : contentManagers) {
+			if (manager instanceof DependentContentManager) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Executor which refreshes content managers according to their dependency graph
+	 */
+	protected static class RefreshExecutor extends DependencyGraphExecutor<ContentManager> {
+
+		public RefreshExecutor(int poolSize) {
+			super(poolSize, "content-refresh-");
+		}
+
+		/**
+		 * @see DependencyGraphExecutor#perform(Object)
+		 */
+		@Override
+		protected void perform(ContentManager manager) {
+			log.info("Refreshing: " + manager.getClass() + " with priority: " + manager.getPriority());
+			Context.getService(DistroToolsService.class).refreshManager(manager);
+		}
+
+		/**
+		 * @see DependencyGraphExecutor#isParallel(Object)
+		 */
+		@Override
+		protected boolean isParallel(ContentManager manager) {
+			return true; // Ordering is entirely determined by dependencies
+		}
+
+		/**
+		 * @see DependencyGraphExecutor#createFailure(Object, Throwable)
+		 */
+		@Override
+		protected APIException createFailure(ContentManager manager, Throwable cause) {
+			return new APIException("Unable to refresh content manager: " + manager.getClass().getSimpleName(), cause);
+		}
+
+		/**
+		 * @see DependencyGraphExecutor#describe(Object)
+		 */
+		@Override
+		protected String describe(ContentManager manager) {
+			return "Content manager " + manager.getClass().getSimpleName();
+		}
+	}
 }
\ No newline at end of file
@@ -0,0 +1,328 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+package org.openmrs.module.distrotools;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.api.APIException;
+import org.openmrs.api.context.Context;
+import org.openmrs.api.context.UserContext;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Performs items (e.g. chores) according to their dependency graph on a bounded pool of worker threads, each item in
+ * its own session and transaction so that its changes are committed before any item which requires it is started.
+ * Parallel items are started as soon as all the items they require have been performed. Other items are only started
+ * when nothing else is running, and nothing else is started until they finish.
+ *
+ * If an item fails, no further items are started and the executor waits for running items to finish. It then throws
+ * an exception for the failed item which comes first in the given order, regardless of which failed first in time.
+ */
+public abstract class DependencyGraphExecutor<T> {
+
+	protected static final Log log = LogFactory.getLog(DependencyGraphExecutor.class);
+
+	private final int poolSize;
+
+	private final String threadNamePrefix;
+
+	/**
+	 * Creates a new executor
+	 * @param poolSize the maximum number of items to be performed at once
+	 * @param threadNamePrefix the prefix of worker thread names
+	 */
+	public DependencyGraphExecutor(int poolSize, String threadNamePrefix) {
+		this.poolSize = poolSize;
+		this.threadNamePrefix = threadNamePrefix;
+	}
+
+	/**
+	 * Performs an item. Called on a worker thread with a new session.
+	 * @param item the item
+	 */
+	protected abstract void perform(T item);
+
+	/**
+	 * Gets whether the given item can be performed in parallel with others
+	 * @param item the item
+	 * @return true if parallel
+	 */
+	protected abstract boolean isParallel(T item);
+
+	/**
+	 * Creates the exception thrown when an item fails
+	 * @param item the item
+	 * @param cause the cause of the failure
+	 * @return the exception
+	 */
+	protected abstract APIException createFailure(T item, Throwable cause);
+
+	/**
+	 * Describes an item for logging
+	 * @param item the item
+	 * @return the description
+	 */
+	protected String describe(T item) {
+		return String.valueOf(item);
+	}
+
+	/**
+	 * Performs the given items
+	 * @param items the items in dependency order, i.e. each item after the items it requires
+	 * @param requires the map of each item to the items it requires. Required items not in the list of items are
+	 *                 assumed to have been performed already
+	 * @throws APIException if an item fails
+	 */
+	public void execute(List<T> items, Map<T, ? extends Collection<T>> requires) throws APIException {
+		int count = items.size();
+
+		Map<T, Integer> indexes = new HashMap<T, Integer>();
+		for (int c = 0; c < count; c++) {
+			indexes.put(items.get(c), c);
+		}
+
+		// Count the unperformed requirements of each item, and record the items which require each item
+		int[] unperformed = new int[count];
+		List<List<Integer>> dependents = new ArrayList<List<Integer>>();
+		for (int c = 0; c < count; c++) {
+			dependents.add(new ArrayList<Integer>());
+		}
+		for (int c = 0; c < count; c++) {
+			Collection<T> required = requires.get(items.get(c));
+			if (required != null) {
+				for (T requiredItem : required) {
+					Integer r = indexes.get(requiredItem);
+					if (r != null) {
+						unperformed[c]++;
+						dependents.get(r).add(c);
+					}
+				}
+			}
+		}
+
+		// Items are started in the given order whenever more than one is ready
+		TreeSet<Integer> ready = new TreeSet<Integer>();
+		for (int c = 0; c < count; c++) {
+			if (unperformed[c] == 0) {
+				ready.add(c);
+			}
+		}
+
+		SortedMap<Integer, Throwable> failures = new TreeMap<Integer, Throwable>();
+		UserContext userContext = Context.getUserContext();
+		ExecutorService pool = Executors.newFixedThreadPool(poolSize, new WorkerThreadFactory(threadNamePrefix, Thread.NORM_PRIORITY));
+		CompletionService<Integer> completion = new ExecutorCompletionService<Integer>(pool);
+		int running = 0;
+		int performed = 0;
+		boolean exclusiveRunning = false;
+
+		try {
+			while (failures.isEmpty() && (!ready.isEmpty() || running > 0)) {
+				if (!exclusiveRunning) {
+					// Start all parallel items which are ready
+					for (Iterator<Integer> r = ready.iterator(); r.hasNext(); ) {
+						int c = r.next();
+						if (isParallel(items.get(c))) {
+							r.remove();
+							completion.submit(new WorkerTask(items.get(c), c, userContext));
+							running++;
+						}
+					}
+
+					// If nothing else is running then the next exclusive item can be started
+					if (running == 0) {
+						int c = ready.pollFirst();
+						completion.submit(new WorkerTask(items.get(c), c, userContext));
+						running++;
+						exclusiveRunning = true;
+					}
+				}
+
+				// Wait for a running item to finish
+				int c = waitForNext(completion);
+				running--;
+				exclusiveRunning = false;
+				performed++;
+				markPerformed(c, unperformed, dependents, ready);
+			}
+		}
+		catch (WorkerFailure failure) {
+			failures.put(failure.index, failure.getCause());
+			running--;
+		}
+		finally {
+			// Let running items finish, but don't start any more
+			try {
+				while (running > 0) {
+					try {
+						waitForNext(completion);
+					}
+					catch (WorkerFailure failure) {
+						failures.put(failure.index, failure.getCause());
+					}
+					running--;
+				}
+			}
+			finally {
+				pool.shutdown();
+			}
+		}
+
+		if (!failures.isEmpty()) {
+			T failed = items.get(failures.firstKey());
+			for (Map.Entry<Integer, Throwable> other : failures.tailMap(failures.firstKey() + 1).entrySet()) {
+				log.error(describe(items.get(other.getKey())) + " also failed", other.getValue());
+			}
+			throw createFailure(failed, failures.get(failures.firstKey()));
+		}
+		else if (performed < count) {
+			throw new APIException("Unable to perform " + (count - performed) + " items with circular dependencies");
+		}
+	}
+
+	/**
+	 * Performs an item in a new session on the current thread
+	 * @param item the item
+	 * @param userContext the user context of the thread which started the executor
+	 */
+	protected void performInNewSession(T item, UserContext userContext) {
+		Context.openSession();
+		try {
+			Context.setUserContext(userContext);
+			perform(item);
+		}
+		finally {
+			Context.closeSession();
+		}
+	}
+
+	/**
+	 * Waits for the next worker task to complete
+	 * @param completion the completion service
+	 * @return the index of the performed item
+	 * @throws WorkerFailure if the item failed
+	 */
+	protected int waitForNext(CompletionService<Integer> completion) throws WorkerFailure {
+		try {
+			return completion.take().get();
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new APIException("Interrupted whilst waiting for worker threads", ex);
+		}
+		catch (ExecutionException ex) {
+			throw (WorkerFailure) ex.getCause();
+		}
+	}
+
+	/**
+	 * Marks the given item as performed, making any items which were waiting only on it ready
+	 * @param c the item index
+	 * @param unperformed the counts of unperformed requirements
+	 * @param dependents the dependents of each item
+	 * @param ready the ready item indexes
+	 */
+	protected static void markPerformed(int c, int[] unperformed, List<List<Integer>> dependents, TreeSet<Integer> ready) {
+		for (int d : dependents.get(c)) {
+			if (--unperformed[d] == 0) {
+				ready.add(d);
+			}
+		}
+	}
+
+	/**
+	 * Task which performs an item in a new session on a worker thread
+	 */
+	protected class WorkerTask implements Callable<Integer> {
+
+		private final T item;
+
+		private final int index;
+
+		private final UserContext userContext;
+
+		public WorkerTask(T item, int index, UserContext userContext) {
+			this.item = item;
+			this.index = index;
+			this.userContext = userContext;
+		}
+
+		@Override
+		public Integer call() throws WorkerFailure {
+			try {
+				performInNewSession(item, userContext);
+				return index;
+			}
+			catch (Exception ex) {
+				throw new WorkerFailure(index, ex);
+			}
+		}
+	}
+
+	/**
+	 * Exception which wraps the failure of an item on a worker thread
+	 */
+	protected static class WorkerFailure extends Exception {
+
+		private final int index;
+
+		public WorkerFailure(int index, Throwable cause) {
+			super(cause);
+			this.index = index;
+		}
+	}
+
+	/**
+	 * Factory for named daemon worker threads
+	 */
+	public static class WorkerThreadFactory implements ThreadFactory {
+
+		private final String namePrefix;
+
+		private final int priority;
+
+		private final AtomicInteger count = new AtomicInteger();
+
+		public WorkerThreadFactory(String namePrefix, int priority) {
+			this.namePrefix = namePrefix;
+			this.priority = priority;
+		}
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, namePrefix + count.incrementAndGet());
+			thread.setDaemon(true);
+			thread.setPriority(priority);
+			return thread;
+		}
+	}
+}
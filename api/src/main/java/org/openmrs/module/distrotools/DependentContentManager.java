@@ -0,0 +1,31 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+package org.openmrs.module.distrotools;
+
+import java.util.Collection;
+
+/**
+ * Interface for content managers which declare the other managers they depend on. Such managers are refreshed as soon
+ * as those managers have been refreshed, possibly at the same time as other managers, rather than in priority order.
+ */
+public interface DependentContentManager extends ContentManager {
+
+	/**
+	 * Gets the classes of the managers which must be refreshed before this one. Classes with no registered manager of
+	 * the type being refreshed are ignored.
+	 * @return the manager classes
+	 */
+	Collection<Class<? extends ContentManager>> dependsOn();
+}
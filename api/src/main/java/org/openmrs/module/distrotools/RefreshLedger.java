@@ -0,0 +1,157 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+package org.openmrs.module.distrotools;
+
+import org.openmrs.GlobalProperty;
+import org.openmrs.api.APIException;
+import org.openmrs.api.AdministrationService;
+import org.openmrs.module.Module;
+import org.openmrs.module.ModuleFactory;
+import org.openmrs.util.OpenmrsConstants;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Ledger of successful content manager refreshes. Each refresh is recorded as a global property holding a fingerprint
+ * of the inputs to the refresh, i.e. the OpenMRS version and the version and module file of each started module (the
+ * module file covering any bundle classes or content resources it contains). A manager whose inputs haven't changed
+ * since its last successful refresh doesn't need to be refreshed again, unless the forceContentRefresh system property
+ * is set. The database isn't an input, so changes made to it since the last refresh (e.g. deleted metadata) are only
+ * repaired by a forced refresh.
+ */
+@Component
+public class RefreshLedger {
+
+	protected static final String GP_PREFIX = "distrotools.refresh.";
+
+	protected static final String SYSTEM_PROPERTY_FORCE_REFRESH = "forceContentRefresh";
+
+	@Autowired
+	@Qualifier("adminService")
+	private AdministrationService adminService;
+
+	/**
+	 * Gets whether refreshes are being forced by the system property
+	 * @return true if refreshes are forced
+	 */
+	public boolean isForced() {
+		return Boolean.parseBoolean(System.getProperty(SYSTEM_PROPERTY_FORCE_REFRESH));
+	}
+
+	/**
+	 * Gets whether the given manager has been refreshed with the given inputs
+	 * @param manager the manager
+	 * @param fingerprint the fingerprint of the current inputs
+	 * @return true if manager is up to date
+	 */
+	public boolean isUpToDate(ContentManager manager, String fingerprint) {
+		return fingerprint.equals(adminService.getGlobalProperty(getPropertyName(manager.getClass())));
+	}
+
+	/**
+	 * Records a refresh of the given manager
+	 * @param manager the manager
+	 * @param fingerprint the fingerprint of the inputs
+	 */
+	public void recordRefresh(ContentManager manager, String fingerprint) {
+		String property = getPropertyName(manager.getClass());
+		GlobalProperty gp = adminService.getGlobalPropertyObject(property);
+		if (gp == null) {
+			gp = new GlobalProperty();
+			gp.setProperty(property);
+			gp.setDescription("Fingerprint of the inputs to the last successful refresh");
+		}
+		gp.setPropertyValue(fingerprint);
+		adminService.saveGlobalProperty(gp);
+	}
+
+	/**
+	 * Invalidates the last recorded refresh of a manager, e.g. because it has work outstanding, so that it will be
+	 * refreshed again next time
+	 * @param managerClass the manager class
+	 */
+	public void invalidate(Class<? extends ContentManager> managerClass) {
+		GlobalProperty gp = adminService.getGlobalPropertyObject(getPropertyName(managerClass));
+		if (gp != null) {
+			adminService.purgeGlobalProperty(gp);
+		}
+	}
+
+	/**
+	 * Gets a fingerprint of the current inputs to content refreshes
+	 * @return the fingerprint
+	 */
+	public String getInputsFingerprint() {
+		List<String> inputs = new ArrayList<String>();
+		for (Module module : ModuleFactory.getStartedModules()) {
+			StringBuilder sb = new StringBuilder(module.getModuleId() + ":" + module.getVersion());
+
+			File file = module.getFile();
+			if (file != null) {
+				sb.append(":").append(file.length()).append(":").append(file.lastModified());
+			}
+			inputs.add(sb.toString());
+		}
+		Collections.sort(inputs);
+		inputs.add(0, "openmrs:" + OpenmrsConstants.OPENMRS_VERSION_SHORT);
+
+		return digest(inputs);
+	}
+
+	/**
+	 * Gets the name of the global property which records refreshes of the given manager class
+	 * @param managerClass the manager class
+	 * @return the property name
+	 */
+	protected static String getPropertyName(Class<? extends ContentManager> managerClass) {
+		return GP_PREFIX + managerClass.getName();
+	}
+
+	/**
+	 * Digests the given inputs as a hexadecimal string
+	 * @param inputs the inputs
+	 * @return the digest
+	 */
+	protected static String digest(List<String> inputs) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			for (String input : inputs) {
+				digest.update(input.getBytes("UTF-8"));
+				digest.update((byte) '\n');
+			}
+
+			StringBuilder hex = new StringBuilder();
+			for (byte b : digest.digest()) {
+				hex.append(String.format("%02x", b));
+			}
+			return hex.toString();
+		}
+		catch (NoSuchAlgorithmException ex) {
+			throw new APIException("Unable to create digest", ex);
+		}
+		catch (UnsupportedEncodingException ex) {
+			throw new APIException("Unable to create digest", ex);
+		}
+	}
+}
@@ -0,0 +1,29 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+package org.openmrs.module.distrotools;
+
+/**
+ * Marker interface for content managers whose only inputs are the classes and resources of the started modules, e.g.
+ * metadata bundles. Such a manager isn't refreshed again until those modules change (see {@link RefreshLedger}).
+ * Managers which check anything else, e.g. the state of the database or the environment, shouldn't implement this.
+ *
+ * As the database isn't an input, a skipped refresh doesn't repair changes made to the database since the last
+ * refresh, e.g. deleted metadata which a bundle installs, or a chore's .done property being reset. To repair these,
+ * restart with the forceContentRefresh system property set to true. A manager which doesn't fully refresh (e.g. because
+ * refreshes are disabled or work is outstanding) should invalidate its entry in the ledger so that it isn't skipped
+ * next time.
+ */
+public interface ResourceContentManager extends ContentManager {
+}
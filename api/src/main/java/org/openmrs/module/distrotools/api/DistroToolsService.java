@@ -18,13 +18,20 @@ import org.openmrs.OpenmrsObject;
 import org.openmrs.api.APIException;
 import org.openmrs.api.OpenmrsService;
 import org.openmrs.module.distrotools.ContentManager;
+import org.openmrs.module.distrotools.chore.AbstractBatchChore;
 import org.openmrs.module.distrotools.chore.Chore;
+import org.openmrs.module.distrotools.chore.ChoreLedger;
 import org.openmrs.module.distrotools.metadata.bundle.MetadataBundle;
 import org.openmrs.module.distrotools.metadata.source.ObjectSource;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.PrintWriter;
+import java.io.Serializable;
 import java.util.Collection;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Service for distribution content and installation management
@@ -57,7 +64,14 @@ public interface DistroToolsService extends OpenmrsService {
 	<T extends OpenmrsObject> T installObject(T incoming);
 
 	/**
-	 * Installs all objects from the given source
+	 * Installs a collection of incoming objects. Where the objects' handler supports it, this is done in bulk.
+	 * @param incoming the incoming objects
+	 * @return the installed objects
+	 */
+	<T extends OpenmrsObject> List<T> installObjects(Collection<T> incoming);
+
+	/**
+	 * Installs all objects from the given source, closing it afterwards if it can be closed
 	 * @param source the object source
 	 * @param <T> the object type
 	 * @return the list of installed objects
@@ -80,6 +94,25 @@ public interface DistroToolsService extends OpenmrsService {
 	@Transactional(readOnly = true)
 	<T extends OpenmrsObject> T fetchObject(Class<T> clazz, String identifier);
 
+	/**
+	 * Fetches a reference to an existing object by primary key. This doesn't necessarily hit the database and may
+	 * return an uninitialized proxy, so it should only be used with primary keys known to exist.
+	 * @param clazz the object's class
+	 * @param id the object's primary key
+	 * @return the object reference
+	 */
+	@Transactional(readOnly = true)
+	<T extends OpenmrsObject> T fetchObjectReference(Class<T> clazz, Serializable id);
+
+	/**
+	 * Fetches the primary keys of existing objects by UUID using a single query
+	 * @param clazz the objects' class
+	 * @param uuids the objects' UUIDs
+	 * @return the map of UUIDs to primary keys, containing only the UUIDs which were found
+	 */
+	@Transactional(readOnly = true)
+	Map<String, Integer> fetchObjectIds(Class<? extends OpenmrsObject> clazz, Collection<String> uuids);
+
 	/**
 	 * Saves the given object
 	 * @param obj the object
@@ -105,4 +138,37 @@ public interface DistroToolsService extends OpenmrsService {
 	 * @param chore the chore
 	 */
 	void performChore(Chore chore) throws APIException;
+
+	/**
+	 * Performs the given batch chore. This must be called outside of any transaction, as each batch is committed in
+	 * its own transaction which would otherwise be nested inside, and possibly blocked by, the enclosing one.
+	 * @param chore the chore
+	 * @throws org.springframework.transaction.IllegalTransactionStateException if a transaction is active
+	 */
+	@Transactional(propagation = Propagation.NEVER)
+	void performBatchChore(AbstractBatchChore chore) throws APIException;
+
+	/**
+	 * Records that a chore was performed successfully. Used for chores which are performed outside of any transaction
+	 * (see {@link #performBatchChore(AbstractBatchChore)}) so that the record is saved in a transaction of its own.
+	 * @param chore the chore
+	 * @param started the time the chore started
+	 * @param ended the time the chore ended
+	 * @return the ledger entry
+	 */
+	@Transactional(propagation = Propagation.REQUIRES_NEW)
+	ChoreLedger.Entry recordChoreSuccess(Chore chore, Date started, Date ended);
+
+	/**
+	 * Performs a batch of a batch chore in a new transaction, which is committed when this returns. Batch chores are
+	 * performed outside of any transaction (see {@link #performBatchChore(AbstractBatchChore)}), so this is never
+	 * nested inside another transaction.
+	 * @param chore the chore
+	 * @param fromKey the first key of the batch
+	 * @param toKey the last key of the batch
+	 * @param checkpoint the checkpoint to save with the batch (may be null)
+	 * @param output the writer for console output
+	 */
+	@Transactional(propagation = Propagation.REQUIRES_NEW)
+	void performChoreBatch(AbstractBatchChore chore, int fromKey, int toKey, Integer checkpoint, PrintWriter output) throws APIException;
 }
\ No newline at end of file
@@ -0,0 +1,134 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+package org.openmrs.module.distrotools.api.db;
+
+import org.openmrs.GlobalProperty;
+import org.openmrs.Program;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Data access object for queries which aren't provided by the core services
+ */
+public interface DistroToolsDAO {
+
+	/**
+	 * Gets a reference to an object by primary key without necessarily hitting the database. The returned object may be
+	 * an uninitialized proxy, which will only be loaded when a non-identifier property is accessed.
+	 * @param clazz the object class
+	 * @param id the primary key
+	 * @return the object reference
+	 */
+	<T> T load(Class<T> clazz, Serializable id);
+
+	/**
+	 * Gets the primary keys of objects by UUID
+	 * @param clazz the object class
+	 * @param uuids the UUIDs
+	 * @return the map of UUIDs to primary keys, which only contains the UUIDs that were found
+	 */
+	Map<String, Integer> getIdsByUuid(Class<?> clazz, Collection<String> uuids);
+
+	/**
+	 * Gets the primary keys of all objects of the given class by UUID
+	 * @param clazz the object class
+	 * @return the map of UUIDs to primary keys
+	 */
+	Map<String, Integer> getAllIdsByUuid(Class<?> clazz);
+
+	/**
+	 * Gets the primary keys of all objects of the given class, without loading the objects themselves
+	 * @param clazz the object class
+	 * @return the primary keys
+	 */
+	List<Serializable> getAllIds(Class<?> clazz);
+
+	/**
+	 * Gets which of the given primary keys exist, without loading the objects themselves
+	 * @param clazz the object class
+	 * @param ids the primary keys
+	 * @return the primary keys that were found
+	 */
+	List<Serializable> getExistingIds(Class<?> clazz, Collection<? extends Serializable> ids);
+
+	/**
+	 * Gets objects by primary key, loading them in a single query
+	 * @param clazz the object class
+	 * @param ids the primary keys
+	 * @return the map of primary keys to objects, which only contains the primary keys that were found
+	 */
+	<T> Map<Serializable, T> getByIds(Class<T> clazz, Collection<? extends Serializable> ids);
+
+	/**
+	 * Gets objects by UUID, loading them in a single query
+	 * @param clazz the object class
+	 * @param uuids the UUIDs
+	 * @return the map of UUIDs to objects, which only contains the UUIDs that were found
+	 */
+	<T> Map<String, T> getByUuids(Class<T> clazz, Collection<String> uuids);
+
+	/**
+	 * Gets the type of the primary key of the given class, e.g. Integer for most objects but String for roles,
+	 * privileges and global properties which are keyed by name
+	 * @param clazz the object class
+	 * @return the primary key type
+	 */
+	Class<?> getIdentifierType(Class<?> clazz);
+
+	/**
+	 * Gets the primary key of an object, which needn't be persistent in the current session
+	 * @param clazz the object class
+	 * @param obj the object
+	 * @return the primary key
+	 */
+	Serializable getIdentifier(Class<?> clazz, Object obj);
+
+	/**
+	 * Gets all programs with their workflows, states and the concepts of each, with the names of the workflow and state
+	 * concepts. Programs are fetched with one query and the concept names with another.
+	 * @return the programs
+	 */
+	List<Program> getProgramsWithWorkflowsAndStates();
+
+	/**
+	 * Gets all concept set memberships as pairs of set concept id and member concept id, ordered by set and then by
+	 * the sort weight of each member
+	 * @return the list of [set id, member id] pairs
+	 */
+	List<Object[]> getConceptSetMemberships();
+
+	/**
+	 * Gets the hierarchy of all locations (including retired) as rows of location id, parent location id (or null)
+	 * and retired flag
+	 * @return the list of [location id, parent id, retired] rows
+	 */
+	List<Object[]> getLocationHierarchy();
+
+	/**
+	 * Gets all location tag assignments as pairs of location id and location tag id
+	 * @return the list of [location id, tag id] pairs
+	 */
+	List<Object[]> getLocationTagMemberships();
+
+	/**
+	 * Gets all global properties whose names end with the given suffix, in a single query
+	 * @param suffix the suffix
+	 * @return the global properties
+	 */
+	List<GlobalProperty> getGlobalPropertiesBySuffix(String suffix);
+}
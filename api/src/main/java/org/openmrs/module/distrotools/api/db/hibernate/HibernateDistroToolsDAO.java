@@ -0,0 +1,275 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+package org.openmrs.module.distrotools.api.db.hibernate;
+
+import org.hibernate.EntityMode;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.openmrs.GlobalProperty;
+import org.openmrs.OpenmrsObject;
+import org.openmrs.Program;
+import org.openmrs.module.distrotools.api.db.DistroToolsDAO;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hibernate implementation of the data access object
+ */
+public class HibernateDistroToolsDAO implements DistroToolsDAO {
+
+	/**
+	 * Maximum number of values in a single IN clause, as some databases have limits
+	 */
+	protected static final int MAX_IN_CLAUSE_SIZE = 1000;
+
+	private SessionFactory sessionFactory;
+
+	/**
+	 * Sets the session factory
+	 * @param sessionFactory the session factory
+	 */
+	public void setSessionFactory(SessionFactory sessionFactory) {
+		this.sessionFactory = sessionFactory;
+	}
+
+	/**
+	 * @see DistroToolsDAO#load(Class, java.io.Serializable)
+	 */
+	@Override
+	public <T> T load(Class<T> clazz, Serializable id) {
+		return (T) getSession().load(clazz, id);
+	}
+
+	/**
+	 * @see DistroToolsDAO#getIdsByUuid(Class, java.util.Collection)
+	 */
+	@Override
+	public Map<String, Integer> getIdsByUuid(Class<?> clazz, Collection<String> uuids) {
+		Map<String, Integer> ids = new HashMap<String, Integer>();
+		if (uuids.isEmpty()) {
+			return ids;
+		}
+
+		String idProperty = sessionFactory.getClassMetadata(clazz).getIdentifierPropertyName();
+		String hql = "select o.uuid, o." + idProperty + " from " + clazz.getName() + " o where o.uuid in (:uuids)";
+
+		List<String> all = new ArrayList<String>(uuids);
+		for (int from = 0; from < all.size(); from += MAX_IN_CLAUSE_SIZE) {
+			List<String> chunk = all.subList(from, Math.min(all.size(), from + MAX_IN_CLAUSE_SIZE));
+			List<Object[]> rows = getSession().createQuery(hql).setParameterList("uuids", chunk).list();
+
+			for (Object[] row : rows) {
+				ids.put((String) row[0], (Integer) row[1]);
+			}
+		}
+		return ids;
+	}
+
+	/**
+	 * @see DistroToolsDAO#getAllIdsByUuid(Class)
+	 */
+	@Override
+	public Map<String, Integer> getAllIdsByUuid(Class<?> clazz) {
+		String idProperty = sessionFactory.getClassMetadata(clazz).getIdentifierPropertyName();
+		List<Object[]> rows = getSession().createQuery("select o.uuid, o." + idProperty + " from " + clazz.getName() + " o").list();
+
+		Map<String, Integer> ids = new HashMap<String, Integer>();
+		for (Object[] row : rows) {
+			ids.put((String) row[0], (Integer) row[1]);
+		}
+		return ids;
+	}
+
+	/**
+	 * @see DistroToolsDAO#getAllIds(Class)
+	 */
+	@Override
+	public List<Serializable> getAllIds(Class<?> clazz) {
+		String idProperty = sessionFactory.getClassMetadata(clazz).getIdentifierPropertyName();
+		return (List<Serializable>) getSession().createQuery("select o." + idProperty + " from " + clazz.getName() + " o").list();
+	}
+
+	/**
+	 * @see DistroToolsDAO#getExistingIds(Class, java.util.Collection)
+	 */
+	@Override
+	public List<Serializable> getExistingIds(Class<?> clazz, Collection<? extends Serializable> ids) {
+		List<Serializable> existing = new ArrayList<Serializable>();
+		if (ids.isEmpty()) {
+			return existing;
+		}
+
+		String idProperty = sessionFactory.getClassMetadata(clazz).getIdentifierPropertyName();
+		String hql = "select o." + idProperty + " from " + clazz.getName() + " o where o." + idProperty + " in (:ids)";
+
+		List<Serializable> all = new ArrayList<Serializable>(ids);
+		for (int from = 0; from < all.size(); from += MAX_IN_CLAUSE_SIZE) {
+			List<Serializable> chunk = all.subList(from, Math.min(all.size(), from + MAX_IN_CLAUSE_SIZE));
+			existing.addAll(getSession().createQuery(hql).setParameterList("ids", chunk).list());
+		}
+		return existing;
+	}
+
+	/**
+	 * @see DistroToolsDAO#getByIds(Class, java.util.Collection)
+	 */
+	@Override
+	public <T> Map<Serializable, T> getByIds(Class<T> clazz, Collection<? extends Serializable> ids) {
+		List<T> objects = new ArrayList<T>();
+		if (ids.isEmpty()) {
+			return mapById(objects);
+		}
+
+		String idProperty = sessionFactory.getClassMetadata(clazz).getIdentifierPropertyName();
+		String hql = "from " + clazz.getName() + " o where o." + idProperty + " in (:ids)";
+
+		List<Serializable> all = new ArrayList<Serializable>(ids);
+		for (int from = 0; from < all.size(); from += MAX_IN_CLAUSE_SIZE) {
+			List<Serializable> chunk = all.subList(from, Math.min(all.size(), from + MAX_IN_CLAUSE_SIZE));
+			objects.addAll(getSession().createQuery(hql).setParameterList("ids", chunk).list());
+		}
+		return mapById(objects);
+	}
+
+	/**
+	 * @see DistroToolsDAO#getByUuids(Class, java.util.Collection)
+	 */
+	@Override
+	public <T> Map<String, T> getByUuids(Class<T> clazz, Collection<String> uuids) {
+		Map<String, T> byUuid = new HashMap<String, T>();
+		if (uuids.isEmpty()) {
+			return byUuid;
+		}
+
+		String hql = "from " + clazz.getName() + " o where o.uuid in (:uuids)";
+
+		List<String> all = new ArrayList<String>(uuids);
+		for (int from = 0; from < all.size(); from += MAX_IN_CLAUSE_SIZE) {
+			List<String> chunk = all.subList(from, Math.min(all.size(), from + MAX_IN_CLAUSE_SIZE));
+			for (T obj : (List<T>) getSession().createQuery(hql).setParameterList("uuids", chunk).list()) {
+				byUuid.put(((OpenmrsObject) obj).getUuid(), obj);
+			}
+		}
+		return byUuid;
+	}
+
+	/**
+	 * @see DistroToolsDAO#getIdentifierType(Class)
+	 */
+	@Override
+	public Class<?> getIdentifierType(Class<?> clazz) {
+		return sessionFactory.getClassMetadata(clazz).getIdentifierType().getReturnedClass();
+	}
+
+	/**
+	 * @see DistroToolsDAO#getIdentifier(Class, Object)
+	 */
+	@Override
+	public Serializable getIdentifier(Class<?> clazz, Object obj) {
+		return sessionFactory.getClassMetadata(clazz).getIdentifier(obj, EntityMode.POJO);
+	}
+
+	/**
+	 * @see DistroToolsDAO#getProgramsWithWorkflowsAndStates()
+	 */
+	@Override
+	public List<Program> getProgramsWithWorkflowsAndStates() {
+		List<Program> programs = (List<Program>) getSession().createQuery(
+				"select distinct p from Program p " +
+				"left join fetch p.concept " +
+				"left join fetch p.allWorkflows w " +
+				"left join fetch w.concept " +
+				"left join fetch w.states s " +
+				"left join fetch s.concept"
+		).list();
+
+		// Names are fetched separately, as fetching them in the same query would return a row for every combination of
+		// workflow and state concept names. The concepts are already in the session so this initializes their names.
+		getSession().createQuery(
+				"select distinct c from Concept c " +
+				"left join fetch c.names " +
+				"where c in (select w.concept from ProgramWorkflow w) or c in (select s.concept from ProgramWorkflowState s)"
+		).list();
+
+		return programs;
+	}
+
+	/**
+	 * @see DistroToolsDAO#getConceptSetMemberships()
+	 */
+	@Override
+	public List<Object[]> getConceptSetMemberships() {
+		return (List<Object[]>) getSession().createQuery(
+				"select cs.conceptSet.conceptId, cs.concept.conceptId from ConceptSet cs " +
+				"order by cs.conceptSet.conceptId, cs.sortWeight, cs.conceptSetId"
+		).list();
+	}
+
+	/**
+	 * @see DistroToolsDAO#getLocationHierarchy()
+	 */
+	@Override
+	public List<Object[]> getLocationHierarchy() {
+		return (List<Object[]>) getSession().createQuery(
+				"select l.locationId, p.locationId, l.retired from Location l left join l.parentLocation p"
+		).list();
+	}
+
+	/**
+	 * @see DistroToolsDAO#getLocationTagMemberships()
+	 */
+	@Override
+	public List<Object[]> getLocationTagMemberships() {
+		return (List<Object[]>) getSession().createQuery(
+				"select l.locationId, t.locationTagId from Location l join l.tags t"
+		).list();
+	}
+
+	/**
+	 * @see DistroToolsDAO#getGlobalPropertiesBySuffix(String)
+	 */
+	@Override
+	public List<GlobalProperty> getGlobalPropertiesBySuffix(String suffix) {
+		return (List<GlobalProperty>) getSession().createQuery(
+				"from GlobalProperty gp where gp.property like :pattern"
+		).setString("pattern", "%" + suffix).list();
+	}
+
+	/**
+	 * Organizes persistent objects into a map by primary key
+	 * @param objects the objects
+	 * @return the map of primary keys to objects
+	 */
+	protected <T> Map<Serializable, T> mapById(List<T> objects) {
+		Map<Serializable, T> byId = new HashMap<Serializable, T>();
+		for (T obj : objects) {
+			byId.put(getSession().getIdentifier(obj), obj);
+		}
+		return byId;
+	}
+
+	/**
+	 * Convenience method to get the current session
+	 * @return the session
+	 */
+	protected Session getSession() {
+		return sessionFactory.getCurrentSession();
+	}
+}
@@ -16,19 +16,28 @@ package org.openmrs.module.distrotools.api.impl;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.openmrs.GlobalProperty;
 import org.openmrs.OpenmrsObject;
 import org.openmrs.annotation.Handler;
 import org.openmrs.api.APIException;
 import org.openmrs.api.context.Context;
 import org.openmrs.api.impl.BaseOpenmrsService;
 import org.openmrs.module.distrotools.ContentManager;
+import org.openmrs.module.distrotools.RefreshLedger;
+import org.openmrs.module.distrotools.ResourceContentManager;
 import org.openmrs.module.distrotools.api.DistroToolsService;
+import org.openmrs.module.distrotools.api.db.DistroToolsDAO;
+import org.openmrs.module.distrotools.chore.AbstractBatchChore;
 import org.openmrs.module.distrotools.chore.Chore;
+import org.openmrs.module.distrotools.chore.ChoreLedger;
+import org.openmrs.module.distrotools.chore.ChoreProgress;
+import org.openmrs.module.distrotools.chore.ProgressReportingChore;
+import org.openmrs.module.distrotools.metadata.MetadataReferenceResolver;
 import org.openmrs.module.distrotools.metadata.bundle.MetadataBundle;
 import org.openmrs.module.distrotools.metadata.bundle.Requires;
+import org.openmrs.module.distrotools.metadata.handler.BulkObjectDeployHandler;
 import org.openmrs.module.distrotools.metadata.handler.ObjectDeployHandler;
 import org.openmrs.module.distrotools.metadata.source.ObjectSource;
+import org.openmrs.module.distrotools.metadata.source.ObjectSourceUtils;
 import org.openmrs.module.metadatasharing.ImportConfig;
 import org.openmrs.module.metadatasharing.ImportMode;
 import org.openmrs.module.metadatasharing.ImportedPackage;
@@ -37,9 +46,12 @@ import org.openmrs.module.metadatasharing.api.MetadataSharingService;
 import org.openmrs.module.metadatasharing.wrapper.PackageImporter;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.io.IOException;
 import java.io.PrintWriter;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -57,6 +69,22 @@ public class DistroToolsServiceImpl extends BaseOpenmrsService implements Distro
 
 	private Map<Class<? extends OpenmrsObject>, ObjectDeployHandler> handlers;
 
+	private DistroToolsDAO dao;
+
+	@Autowired
+	private ChoreLedger choreLedger;
+
+	@Autowired
+	private RefreshLedger refreshLedger;
+
+	/**
+	 * Sets the data access object
+	 * @param dao the data access object
+	 */
+	public void setDao(DistroToolsDAO dao) {
+		this.dao = dao;
+	}
+
 	/**
 	 * Sets the object handlers, reorganising them into a map
 	 * @param handlers the handler components
@@ -125,7 +153,15 @@ public class DistroToolsServiceImpl extends BaseOpenmrsService implements Distro
 				}
 			}
 
-			bundle.install();
+			// References to existing metadata are resolved once per type for the whole bundle
+			MetadataReferenceResolver resolver = MetadataReferenceResolver.getInstance();
+			resolver.beginScope();
+			try {
+				bundle.install();
+			}
+			finally {
+				resolver.endScope();
+			}
 			installed.add(bundle);
 
 			Context.flushSession();
@@ -202,6 +238,33 @@ public class DistroToolsServiceImpl extends BaseOpenmrsService implements Distro
 		}
 	}
 
+	/**
+	 * @see DistroToolsService#installObjects(java.util.Collection)
+	 */
+	@Override
+	public <T extends OpenmrsObject> List<T> installObjects(Collection<T> incoming) {
+		// Objects can only be installed in bulk if they all have the same handler
+		ObjectDeployHandler<T> handler = null;
+		for (T obj : incoming) {
+			ObjectDeployHandler<T> objHandler = getHandler(obj);
+			if (handler != null && handler != objHandler) {
+				handler = null;
+				break;
+			}
+			handler = objHandler;
+		}
+
+		if (handler instanceof BulkObjectDeployHandler) {
+			return ((BulkObjectDeployHandler<T>) handler).installAll(incoming);
+		}
+
+		List<T> installed = new ArrayList<T>();
+		for (T obj : incoming) {
+			installed.add(installObject(obj));
+		}
+		return installed;
+	}
+
 	/**
 	 * @see DistroToolsService#installFromSource(org.openmrs.module.distrotools.metadata.source.ObjectSource)
 	 */
@@ -217,7 +280,15 @@ public class DistroToolsServiceImpl extends BaseOpenmrsService implements Distro
 			return installed;
 		}
 		catch (Exception ex) {
-			throw new APIException("Unable to install objects from " + source.getClass().getSimpleName());
+			throw new APIException("Unable to install objects from " + source.getClass().getSimpleName(), ex);
+		}
+		finally {
+			try {
+				ObjectSourceUtils.close(source);
+			}
+			catch (IOException ex) {
+				log.warn("Unable to close source", ex);
+			}
 		}
 	}
 
@@ -229,6 +300,9 @@ public class DistroToolsServiceImpl extends BaseOpenmrsService implements Distro
 		ObjectDeployHandler<T> handler = getHandler(outgoing);
 
 		handler.uninstall(outgoing, reason);
+
+		// Uninstalling may delete the object, so it can no longer be resolved by key
+		MetadataReferenceResolver.getInstance().evict(outgoing);
 	}
 
 	/**
@@ -240,6 +314,22 @@ public class DistroToolsServiceImpl extends BaseOpenmrsService implements Distro
 		return handler.fetch(identifier);
 	}
 
+	/**
+	 * @see DistroToolsService#fetchObjectReference(Class, java.io.Serializable)
+	 */
+	@Override
+	public <T extends OpenmrsObject> T fetchObjectReference(Class<T> clazz, Serializable id) {
+		return dao.load(clazz, id);
+	}
+
+	/**
+	 * @see DistroToolsService#fetchObjectIds(Class, java.util.Collection)
+	 */
+	@Override
+	public Map<String, Integer> fetchObjectIds(Class<? extends OpenmrsObject> clazz, Collection<String> uuids) {
+		return dao.getIdsByUuid(clazz, uuids);
+	}
+
 	/**
 	 * @see DistroToolsService#saveObject(org.openmrs.OpenmrsObject)
 	 */
@@ -265,9 +355,22 @@ public class DistroToolsServiceImpl extends BaseOpenmrsService implements Distro
 	 */
 	@Override
 	public void refreshManager(ContentManager manager) {
+		// Skip managers which only depend on module resources, and have already been refreshed with the current modules
+		boolean skippable = manager instanceof ResourceContentManager;
+		String fingerprint = skippable ? refreshLedger.getInputsFingerprint() : null;
+		if (skippable && !refreshLedger.isForced() && refreshLedger.isUpToDate(manager, fingerprint)) {
+			log.info("Skipping refresh of " + manager.getClass().getName() + " as its inputs are unchanged");
+			return;
+		}
+
 		log.info("Refreshing " + manager.getClass().getName() + "...");
 
 		long start = System.currentTimeMillis();
+
+		// Recorded first so that the manager can invalidate it, and rolled back if the refresh fails
+		if (skippable) {
+			refreshLedger.recordRefresh(manager, fingerprint);
+		}
 		manager.refresh();
 
 		// A content manager might load a lot of stuff into Hibernate's cache
@@ -284,33 +387,74 @@ public class DistroToolsServiceImpl extends BaseOpenmrsService implements Distro
 	 */
 	@Override
 	public void performChore(Chore chore) {
+		performChore(chore, this);
+	}
+
+	/**
+	 * Performs the given chore
+	 * @param chore the chore
+	 * @param recorder the service through which to record the chore's success
+	 */
+	protected void performChore(Chore chore, DistroToolsService recorder) {
 		log.info("Performing chore '" + chore.getId() + "'...");
 
-		PrintWriter writer = new PrintWriter(System.out);
+		ChoreProgress progress = new ChoreProgress(chore);
 
-		long start = System.currentTimeMillis();
-		chore.perform(writer);
+		Date start = new Date();
+		try {
+			if (chore instanceof ProgressReportingChore) {
+				((ProgressReportingChore) chore).perform(progress);
+			}
+			else {
+				chore.perform(progress.getOutput());
+			}
 
-		writer.flush();
+			progress.complete();
 
-		Context.flushSession();
-		Context.clearSession();
+			Context.flushSession();
+			Context.clearSession();
+		}
+		catch (RuntimeException ex) {
+			progress.getOutput().flush();
+			choreLedger.recordFailure(chore, start, new Date(), ex);
+			throw ex;
+		}
 
-		long time = System.currentTimeMillis() - start;
+		ChoreLedger.Entry entry = recorder.recordChoreSuccess(chore, start, new Date());
 
-		log.info("Performed chore '" + chore.getId() + "' in " + time + "ms");
+		log.info("Performed chore '" + chore.getId() + "' in " + entry.getDuration() + "ms");
+	}
 
-		setGlobalProperty(chore.getId() + ".done", "true");
+	/**
+	 * @see DistroToolsService#performBatchChore(org.openmrs.module.distrotools.chore.AbstractBatchChore)
+	 */
+	@Override
+	public void performBatchChore(AbstractBatchChore chore) {
+		// This has no transaction, so the success is recorded through the service proxy which starts one
+		performChore(chore, Context.getService(DistroToolsService.class));
+	}
+
+	/**
+	 * @see DistroToolsService#recordChoreSuccess(org.openmrs.module.distrotools.chore.Chore, java.util.Date, java.util.Date)
+	 */
+	@Override
+	public ChoreLedger.Entry recordChoreSuccess(Chore chore, Date started, Date ended) {
+		return choreLedger.recordSuccess(chore, started, ended);
 	}
 
-	protected void setGlobalProperty(String property, String value) {
-		GlobalProperty gp = Context.getAdministrationService().getGlobalPropertyObject(property);
-		if (gp == null) {
-			gp = new GlobalProperty();
-			gp.setProperty(property);
+	/**
+	 * @see DistroToolsService#performChoreBatch(org.openmrs.module.distrotools.chore.AbstractBatchChore, int, int, Integer, java.io.PrintWriter)
+	 */
+	@Override
+	public void performChoreBatch(AbstractBatchChore chore, int fromKey, int toKey, Integer checkpoint, PrintWriter output) {
+		chore.performBatch(fromKey, toKey, output);
+
+		if (checkpoint != null) {
+			choreLedger.saveCheckpoint(chore, checkpoint);
 		}
-		gp.setPropertyValue(value);
-		Context.getAdministrationService().saveGlobalProperty(gp);
+
+		Context.flushSession();
+		Context.clearSession();
 	}
 
 	/**
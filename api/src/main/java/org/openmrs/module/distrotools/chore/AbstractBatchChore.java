@@ -0,0 +1,416 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+package org.openmrs.module.distrotools.chore;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.api.APIException;
+import org.openmrs.api.context.Context;
+import org.openmrs.api.context.UserContext;
+import org.openmrs.module.distrotools.DependencyGraphExecutor;
+import org.openmrs.module.distrotools.api.DistroToolsService;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.PrintWriter;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Abstract base class for chores which process a range of integer keys (e.g. patient ids) in batches. Each batch is
+ * performed and committed in its own transaction, after which the session is cleared, and the last key known to have
+ * been processed is saved as a checkpoint. If the chore fails, it resumes from that checkpoint the next time it is
+ * performed.
+ *
+ * Batches can be performed on several threads at once, each with its own session. In that case the checkpoint can lag
+ * behind the batches which have actually been committed, so batches should be safe to perform more than once.
+ *
+ * To limit the load on the database, e.g. for a chore deferred until after startup, the rate at which keys are
+ * processed can be limited.
+ *
+ * Progress is reported in keys, with the total being the size of the remaining key range.
+ *
+ * As each batch is committed in its own transaction, batch chores must be performed outside of any transaction, and
+ * fail immediately otherwise. The chore manager does this for deferred chores, so batch chores are deferrable by
+ * default, and the chore manager refuses to refresh if a batch chore isn't deferrable or is required by a chore which
+ * isn't.
+ */
+public abstract class AbstractBatchChore extends AbstractChore implements ProgressReportingChore {
+
+	protected static final Log log = LogFactory.getLog(AbstractBatchChore.class);
+
+	protected int batchSize = 1000;
+
+	protected int threads = 1;
+
+	protected int maxKeysPerSecond = 0;
+
+	/**
+	 * Creates a new batch chore
+	 */
+	public AbstractBatchChore() {
+		deferrable = true;
+	}
+
+	/**
+	 * Gets the first key to be processed
+	 * @return the key or null if there is nothing to process
+	 */
+	protected abstract Integer getMinKey();
+
+	/**
+	 * Gets the last key to be processed
+	 * @return the key or null if there is nothing to process
+	 */
+	protected abstract Integer getMaxKey();
+
+	/**
+	 * Performs a batch. Keys in the range may not exist.
+	 * @param fromKey the first key of the batch
+	 * @param toKey the last key of the batch
+	 * @param output the writer for console output
+	 */
+	public abstract void performBatch(int fromKey, int toKey, PrintWriter output);
+
+	/**
+	 * @see Chore#perform(java.io.PrintWriter)
+	 */
+	@Override
+	public void perform(PrintWriter output) throws APIException {
+		perform(new ChoreProgress(this, output));
+	}
+
+	/**
+	 * @see ProgressReportingChore#perform(ChoreProgress)
+	 */
+	@Override
+	public void perform(ChoreProgress progress) throws APIException {
+		PrintWriter output = progress.getOutput();
+
+		Integer minKey = getMinKey();
+		Integer maxKey = getMaxKey();
+		if (minKey == null || maxKey == null) {
+			return;
+		}
+
+		int fromKey = minKey;
+		Integer checkpoint = ChoreLedger.getInstance().getCheckpoint(this);
+		if (checkpoint != null && checkpoint >= fromKey) {
+			output.println("Resuming chore '" + getId() + "' after key " + checkpoint);
+			fromKey = checkpoint + 1;
+		}
+
+		if (fromKey > maxKey) {
+			return;
+		}
+
+		progress.setTotal((long) maxKey - fromKey + 1);
+
+		if (threads > 1) {
+			performBatchesInParallel(fromKey, maxKey, progress);
+		}
+		else {
+			performBatches(fromKey, maxKey, progress);
+		}
+	}
+
+	/**
+	 * Performs batches one after the other on the current thread
+	 * @param fromKey the first key
+	 * @param maxKey the last key
+	 * @param progress the progress
+	 */
+	protected void performBatches(int fromKey, int maxKey, ChoreProgress progress) {
+		PrintWriter output = progress.getOutput();
+		long started = System.currentTimeMillis();
+		int from = fromKey;
+		while (true) {
+			int to = batchEnd(from, maxKey);
+
+			// Each batch commits its own end as the checkpoint
+			performBatchInTransaction(from, to, to, output);
+			progress.increment((long) to - from + 1);
+
+			log.debug("Performed batch " + from + "-" + to + " of chore '" + getId() + "'");
+
+			if (to >= maxKey) {
+				break;
+			}
+			from = to + 1;
+
+			throttle(started, (long) from - fromKey);
+		}
+	}
+
+	/**
+	 * Performs batches on a pool of worker threads. Each batch carries the checkpoint up to which all previous batches
+	 * were known to be complete when it was started.
+	 * @param fromKey the first key
+	 * @param maxKey the last key
+	 * @param progress the progress
+	 */
+	protected void performBatchesInParallel(int fromKey, int maxKey, ChoreProgress progress) {
+		PrintWriter output = progress.getOutput();
+		UserContext userContext = Context.getUserContext();
+		ExecutorService pool = Executors.newFixedThreadPool(threads, new DependencyGraphExecutor.WorkerThreadFactory("batch-worker-", Thread.NORM_PRIORITY));
+		CompletionService<Integer> completion = new ExecutorCompletionService<Integer>(pool);
+
+		TreeSet<Integer> completed = new TreeSet<Integer>();
+		SortedMap<Integer, Throwable> failures = new TreeMap<Integer, Throwable>();
+		Integer checkpoint = null;
+		Integer next = fromKey;
+		int running = 0;
+		long started = System.currentTimeMillis();
+
+		try {
+			while (failures.isEmpty() && (next != null || running > 0)) {
+				while (running < threads && next != null) {
+					throttle(started, (long) next - fromKey);
+
+					int to = batchEnd(next, maxKey);
+					completion.submit(new BatchTask(next, to, checkpoint, output, userContext));
+					next = (to < maxKey) ? to + 1 : null;
+					running++;
+				}
+
+				int from = waitForNext(completion, failures);
+				running--;
+
+				if (failures.isEmpty()) {
+					progress.increment((long) batchEnd(from, maxKey) - from + 1);
+
+					// Advance the checkpoint past every contiguous completed batch
+					completed.add(from);
+					int expected = (checkpoint != null) ? checkpoint + 1 : fromKey;
+					while (!completed.isEmpty() && completed.first() == expected) {
+						checkpoint = batchEnd(completed.pollFirst(), maxKey);
+						expected = checkpoint + 1;
+					}
+				}
+			}
+		}
+		finally {
+			// Let running batches finish, but don't start any more
+			try {
+				while (running > 0) {
+					waitForNext(completion, failures);
+					running--;
+				}
+			}
+			finally {
+				pool.shutdown();
+			}
+		}
+
+		if (!failures.isEmpty()) {
+			throw new APIException("Unable to perform batch starting at key " + failures.firstKey() + " of chore '" + getId() + "'", failures.get(failures.firstKey()));
+		}
+	}
+
+	/**
+	 * Performs a batch in a new transaction, which fails if there's already an active transaction
+	 * @param fromKey the first key of the batch
+	 * @param toKey the last key of the batch
+	 * @param checkpoint the checkpoint to save with the batch (may be null)
+	 * @param output the writer for console output
+	 */
+	protected void performBatchInTransaction(int fromKey, int toKey, Integer checkpoint, PrintWriter output) {
+		if (TransactionSynchronizationManager.isActualTransactionActive()) {
+			throw new APIException("Batch chore '" + getId() + "' can't be performed inside a transaction");
+		}
+
+		Context.getService(DistroToolsService.class).performChoreBatch(this, fromKey, toKey, checkpoint, output);
+	}
+
+	/**
+	 * Performs a batch in a new session on the current thread
+	 * @param fromKey the first key of the batch
+	 * @param toKey the last key of the batch
+	 * @param checkpoint the checkpoint to save with the batch (may be null)
+	 * @param output the writer for console output
+	 * @param userContext the user context of the thread which started the chore
+	 */
+	protected void performBatchInNewSession(int fromKey, int toKey, Integer checkpoint, PrintWriter output, UserContext userContext) {
+		Context.openSession();
+		try {
+			Context.setUserContext(userContext);
+			performBatchInTransaction(fromKey, toKey, checkpoint, output);
+		}
+		finally {
+			Context.closeSession();
+		}
+	}
+
+	/**
+	 * Waits for the next batch task to complete, recording it if it failed
+	 * @param completion the completion service
+	 * @param failures the failures by first key
+	 * @return the first key of the batch
+	 */
+	protected int waitForNext(CompletionService<Integer> completion, SortedMap<Integer, Throwable> failures) {
+		try {
+			return completion.take().get();
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new APIException("Interrupted whilst waiting for batches", ex);
+		}
+		catch (ExecutionException ex) {
+			BatchFailure failure = (BatchFailure) ex.getCause();
+			failures.put(failure.fromKey, failure.getCause());
+			return failure.fromKey;
+		}
+	}
+
+	/**
+	 * Sleeps for as long as is necessary to keep the rate at which keys are processed within the maximum
+	 * @param started the time processing started
+	 * @param keys the number of keys processed so far
+	 */
+	protected void throttle(long started, long keys) {
+		if (maxKeysPerSecond <= 0) {
+			return;
+		}
+
+		long wait = started + (keys * 1000 / maxKeysPerSecond) - System.currentTimeMillis();
+		if (wait > 0) {
+			try {
+				Thread.sleep(wait);
+			}
+			catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				throw new APIException("Interrupted whilst throttling chore '" + getId() + "'", ex);
+			}
+		}
+	}
+
+	/**
+	 * Gets the last key of the batch starting at the given key
+	 * @param fromKey the first key of the batch
+	 * @param maxKey the last key
+	 * @return the last key of the batch
+	 */
+	protected int batchEnd(int fromKey, int maxKey) {
+		return (int) Math.min((long) fromKey + batchSize - 1, maxKey);
+	}
+
+	/**
+	 * Gets the number of keys in each batch
+	 * @return the batch size
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * Sets the number of keys in each batch
+	 * @param batchSize the batch size
+	 */
+	public void setBatchSize(int batchSize) {
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("Batch size must be positive");
+		}
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Gets the number of threads on which batches are performed
+	 * @return the number of threads
+	 */
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * Sets the number of threads on which batches are performed
+	 * @param threads the number of threads
+	 */
+	public void setThreads(int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("Number of threads must be positive");
+		}
+		this.threads = threads;
+	}
+
+	/**
+	 * Gets the maximum number of keys processed per second
+	 * @return the maximum or zero if unlimited
+	 */
+	public int getMaxKeysPerSecond() {
+		return maxKeysPerSecond;
+	}
+
+	/**
+	 * Sets the maximum number of keys processed per second
+	 * @param maxKeysPerSecond the maximum or zero if unlimited
+	 */
+	public void setMaxKeysPerSecond(int maxKeysPerSecond) {
+		this.maxKeysPerSecond = maxKeysPerSecond;
+	}
+
+	/**
+	 * Task which performs a batch on a worker thread
+	 */
+	protected class BatchTask implements Callable<Integer> {
+
+		private final int fromKey;
+
+		private final int toKey;
+
+		private final Integer checkpoint;
+
+		private final PrintWriter output;
+
+		private final UserContext userContext;
+
+		public BatchTask(int fromKey, int toKey, Integer checkpoint, PrintWriter output, UserContext userContext) {
+			this.fromKey = fromKey;
+			this.toKey = toKey;
+			this.checkpoint = checkpoint;
+			this.output = output;
+			this.userContext = userContext;
+		}
+
+		@Override
+		public Integer call() throws BatchFailure {
+			try {
+				performBatchInNewSession(fromKey, toKey, checkpoint, output, userContext);
+				return fromKey;
+			}
+			catch (Exception ex) {
+				throw new BatchFailure(fromKey, ex);
+			}
+		}
+	}
+
+	/**
+	 * Exception which wraps the failure of a batch on a worker thread
+	 */
+	protected static class BatchFailure extends Exception {
+
+		private final int fromKey;
+
+		public BatchFailure(int fromKey, Throwable cause) {
+			super(cause);
+			this.fromKey = fromKey;
+		}
+	}
+}
@@ -20,4 +20,43 @@ import org.openmrs.module.distrotools.AbstractDescriptor;
  * Abstract base class for chores
  */
 public abstract class AbstractChore extends AbstractDescriptor implements Chore {
+
+	protected boolean parallel = false;
+
+	protected boolean deferrable = false;
+
+	/**
+	 * Gets whether this chore can be performed in parallel with other parallel chores which it doesn't require, and
+	 * which don't require it. Such chores are performed on a worker thread with their own session and transaction.
+	 * @return true if chore can be performed in parallel
+	 */
+	public boolean isParallel() {
+		return parallel;
+	}
+
+	/**
+	 * Sets whether this chore can be performed in parallel
+	 * @param parallel true if chore can be performed in parallel
+	 */
+	public void setParallel(boolean parallel) {
+		this.parallel = parallel;
+	}
+
+	/**
+	 * Gets whether this chore can be deferred until after startup, in which case it's performed on a low priority
+	 * background thread once the content refresh has been committed. Chores which are required by chores that can't be
+	 * deferred are never deferred.
+	 * @return true if chore can be deferred
+	 */
+	public boolean isDeferrable() {
+		return deferrable;
+	}
+
+	/**
+	 * Sets whether this chore can be deferred until after startup
+	 * @param deferrable true if chore can be deferred
+	 */
+	public void setDeferrable(boolean deferrable) {
+		this.deferrable = deferrable;
+	}
 }
\ No newline at end of file
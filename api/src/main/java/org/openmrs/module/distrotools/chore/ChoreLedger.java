@@ -0,0 +1,321 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+package org.openmrs.module.distrotools.chore;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.GlobalProperty;
+import org.openmrs.api.AdministrationService;
+import org.openmrs.module.distrotools.api.db.DistroToolsDAO;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Ledger of performed chores. Each successfully performed chore is recorded as a global property named with the chore
+ * id and the suffix .done, and the timing of the chore is recorded in that property's description. All records are
+ * loaded with a single query. Failures are only recorded in memory, as they roll back the chore's transaction.
+ *
+ * Batch chores also record a checkpoint as a global property with the suffix .checkpoint, which is removed when the
+ * chore succeeds.
+ */
+@Component
+public class ChoreLedger implements InitializingBean {
+
+	protected static final Log log = LogFactory.getLog(ChoreLedger.class);
+
+	protected static final String DONE_SUFFIX = ".done";
+
+	protected static final String CHECKPOINT_SUFFIX = ".checkpoint";
+
+	protected static final String DATE_FORMAT = "yyyy-MM-dd'T'HH:mm:ss.SSSZ";
+
+	protected static final Pattern DESCRIPTION_PATTERN = Pattern.compile("started=(\\S+), ended=(\\S+), outcome=(\\w+)");
+
+	@Autowired
+	@Qualifier("adminService")
+	private AdministrationService adminService;
+
+	@Autowired
+	private DistroToolsDAO dao;
+
+	private volatile Map<String, Entry> entries;
+
+	private static ChoreLedger instance;
+
+	/**
+	 * Gets the instance of this component in the current application context
+	 * @return the instance
+	 */
+	public static ChoreLedger getInstance() {
+		return instance;
+	}
+
+	/**
+	 * @see InitializingBean#afterPropertiesSet()
+	 */
+	@Override
+	public void afterPropertiesSet() {
+		instance = this;
+	}
+
+	/**
+	 * Reloads all entries from the database
+	 */
+	public void reload() {
+		Map<String, Entry> loaded = new ConcurrentHashMap<String, Entry>();
+
+		for (GlobalProperty gp : dao.getGlobalPropertiesBySuffix(DONE_SUFFIX)) {
+			if ("false".equals(gp.getPropertyValue())) {
+				continue;
+			}
+
+			String choreId = gp.getProperty().substring(0, gp.getProperty().length() - DONE_SUFFIX.length());
+			loaded.put(choreId, parseEntry(choreId, gp.getDescription()));
+		}
+
+		entries = loaded;
+	}
+
+	/**
+	 * Gets whether the given chore has been performed successfully
+	 * @param choreId the chore id
+	 * @return true if chore has been performed
+	 */
+	public boolean isPerformed(String choreId) {
+		Entry entry = getEntry(choreId);
+		return entry != null && entry.getOutcome() == Outcome.SUCCEEDED;
+	}
+
+	/**
+	 * Gets the entry for the given chore
+	 * @param choreId the chore id
+	 * @return the entry or null if chore has not been attempted
+	 */
+	public Entry getEntry(String choreId) {
+		return getEntries().get(choreId);
+	}
+
+	/**
+	 * Gets all entries, loading them if necessary
+	 * @return the entries by chore id
+	 */
+	public Map<String, Entry> getEntries() {
+		if (entries == null) {
+			reload();
+		}
+		return Collections.unmodifiableMap(entries);
+	}
+
+	/**
+	 * Records that a chore was performed successfully
+	 * @param chore the chore
+	 * @param started the start time
+	 * @param ended the end time
+	 * @return the entry
+	 */
+	public Entry recordSuccess(Chore chore, Date started, Date ended) {
+		Entry entry = new Entry(chore.getId(), started, ended, Outcome.SUCCEEDED, null);
+
+		String property = chore.getId() + DONE_SUFFIX;
+		GlobalProperty gp = adminService.getGlobalPropertyObject(property);
+		if (gp == null) {
+			gp = new GlobalProperty();
+			gp.setProperty(property);
+		}
+		gp.setPropertyValue("true");
+		gp.setDescription(formatDescription(entry));
+		adminService.saveGlobalProperty(gp);
+
+		GlobalProperty checkpoint = adminService.getGlobalPropertyObject(chore.getId() + CHECKPOINT_SUFFIX);
+		if (checkpoint != null) {
+			adminService.purgeGlobalProperty(checkpoint);
+		}
+
+		getEntries();
+		entries.put(chore.getId(), entry);
+		return entry;
+	}
+
+	/**
+	 * Records that a chore failed
+	 * @param chore the chore
+	 * @param started the start time
+	 * @param ended the end time
+	 * @param cause the cause of the failure
+	 * @return the entry
+	 */
+	public Entry recordFailure(Chore chore, Date started, Date ended, Throwable cause) {
+		Entry entry = new Entry(chore.getId(), started, ended, Outcome.FAILED, cause.toString());
+
+		getEntries();
+		entries.put(chore.getId(), entry);
+		return entry;
+	}
+
+	/**
+	 * Gets the checkpoint of a partially performed chore
+	 * @param chore the chore
+	 * @return the checkpoint key or null if chore has no checkpoint
+	 */
+	public Integer getCheckpoint(Chore chore) {
+		GlobalProperty gp = adminService.getGlobalPropertyObject(chore.getId() + CHECKPOINT_SUFFIX);
+		if (gp == null || gp.getPropertyValue() == null) {
+			return null;
+		}
+
+		try {
+			return Integer.valueOf(gp.getPropertyValue());
+		}
+		catch (NumberFormatException ex) {
+			log.warn("Ignoring invalid checkpoint of chore '" + chore.getId() + "'");
+			return null;
+		}
+	}
+
+	/**
+	 * Saves the checkpoint of a partially performed chore. Checkpoints only move forward, so if a later checkpoint has
+	 * already been saved then this does nothing.
+	 * @param chore the chore
+	 * @param checkpoint the checkpoint key
+	 */
+	public void saveCheckpoint(Chore chore, int checkpoint) {
+		Integer existing = getCheckpoint(chore);
+		if (existing != null && existing >= checkpoint) {
+			return;
+		}
+
+		String property = chore.getId() + CHECKPOINT_SUFFIX;
+		GlobalProperty gp = adminService.getGlobalPropertyObject(property);
+		if (gp == null) {
+			gp = new GlobalProperty();
+			gp.setProperty(property);
+			gp.setDescription("Last key processed by a partially performed chore");
+		}
+		gp.setPropertyValue(String.valueOf(checkpoint));
+		adminService.saveGlobalProperty(gp);
+	}
+
+	/**
+	 * Formats an entry as a global property description
+	 * @param entry the entry
+	 * @return the description
+	 */
+	protected static String formatDescription(Entry entry) {
+		SimpleDateFormat format = new SimpleDateFormat(DATE_FORMAT);
+		return "Chore performed in " + entry.getDuration() + "ms: started=" + format.format(entry.getStarted())
+				+ ", ended=" + format.format(entry.getEnded()) + ", outcome=" + entry.getOutcome();
+	}
+
+	/**
+	 * Parses an entry from a global property description. Chores recorded before timings were recorded will have
+	 * entries with no start or end time.
+	 * @param choreId the chore id
+	 * @param description the description
+	 * @return the entry
+	 */
+	protected static Entry parseEntry(String choreId, String description) {
+		if (description != null) {
+			Matcher matcher = DESCRIPTION_PATTERN.matcher(description);
+			if (matcher.find()) {
+				try {
+					SimpleDateFormat format = new SimpleDateFormat(DATE_FORMAT);
+					return new Entry(choreId, format.parse(matcher.group(1)), format.parse(matcher.group(2)), Outcome.valueOf(matcher.group(3)), null);
+				}
+				catch (ParseException ex) {
+					log.warn("Unable to parse timings of chore '" + choreId + "'");
+				}
+				catch (IllegalArgumentException ex) {
+					log.warn("Unable to parse outcome of chore '" + choreId + "'");
+				}
+			}
+		}
+		return new Entry(choreId, null, null, Outcome.SUCCEEDED, null);
+	}
+
+	/**
+	 * Possible outcomes of performing a chore
+	 */
+	public enum Outcome {
+		SUCCEEDED,
+		FAILED
+	}
+
+	/**
+	 * A ledger entry
+	 */
+	public static class Entry {
+
+		private final String choreId;
+
+		private final Date started;
+
+		private final Date ended;
+
+		private final Outcome outcome;
+
+		private final String message;
+
+		public Entry(String choreId, Date started, Date ended, Outcome outcome, String message) {
+			this.choreId = choreId;
+			this.started = started;
+			this.ended = ended;
+			this.outcome = outcome;
+			this.message = message;
+		}
+
+		public String getChoreId() {
+			return choreId;
+		}
+
+		public Date getStarted() {
+			return started;
+		}
+
+		public Date getEnded() {
+			return ended;
+		}
+
+		/**
+		 * Gets the duration of the chore
+		 * @return the duration in milliseconds or null if unknown
+		 */
+		public Long getDuration() {
+			return (started != null && ended != null) ? ended.getTime() - started.getTime() : null;
+		}
+
+		public Outcome getOutcome() {
+			return outcome;
+		}
+
+		/**
+		 * Gets the failure message
+		 * @return the message or null
+		 */
+		public String getMessage() {
+			return message;
+		}
+	}
+}
@@ -0,0 +1,83 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+package org.openmrs.module.distrotools.chore;
+
+import org.apache.commons.logging.Log;
+
+import java.io.Writer;
+
+/**
+ * Writer which buffers output and writes each complete line as a separate log message, so that output from chores
+ * running on different threads doesn't interleave. Any incomplete line is written when the writer is flushed.
+ *
+ * Lines are logged at INFO level. OpenMRS only logs WARN and above for org.openmrs by default, so to see chore output
+ * enable INFO for the chore's logger, e.g. org.openmrs.module.distrotools.chore.
+ */
+public class ChoreLogWriter extends Writer {
+
+	private final Log log;
+
+	private final StringBuilder buffer = new StringBuilder();
+
+	/**
+	 * Creates a new writer
+	 * @param log the log to write to
+	 */
+	public ChoreLogWriter(Log log) {
+		this.log = log;
+	}
+
+	/**
+	 * @see Writer#write(char[], int, int)
+	 */
+	@Override
+	public synchronized void write(char[] chars, int offset, int length) {
+		for (int c = offset; c < offset + length; c++) {
+			char ch = chars[c];
+			if (ch == '\n') {
+				writeLine();
+			}
+			else if (ch != '\r') {
+				buffer.append(ch);
+			}
+		}
+	}
+
+	/**
+	 * @see java.io.Writer#flush()
+	 */
+	@Override
+	public synchronized void flush() {
+		if (buffer.length() > 0) {
+			writeLine();
+		}
+	}
+
+	/**
+	 * @see java.io.Writer#close()
+	 */
+	@Override
+	public void close() {
+		flush();
+	}
+
+	/**
+	 * Writes the buffered line to the log
+	 */
+	protected void writeLine() {
+		log.info(buffer.toString());
+		buffer.setLength(0);
+	}
+}
@@ -16,18 +16,22 @@ package org.openmrs.module.distrotools.chore;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.openmrs.GlobalProperty;
 import org.openmrs.api.APIException;
-import org.openmrs.api.AdministrationService;
 import org.openmrs.api.context.Context;
 import org.openmrs.module.distrotools.ContentManager;
+import org.openmrs.module.distrotools.RefreshLedger;
+import org.openmrs.module.distrotools.ResourceContentManager;
 import org.openmrs.module.distrotools.api.DistroToolsService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -35,16 +39,27 @@ import java.util.Set;
  * Chore manager
  */
 @Component
-public class ChoreManager implements ContentManager {
+public class ChoreManager implements ResourceContentManager {
 
 	protected static final Log log = LogFactory.getLog(ChoreManager.class);
 
+	/**
+	 * The maximum number of parallel chores which can be performed at once
+	 */
+	protected static final int MAX_PARALLEL_CHORES = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
 	@Autowired
-	private AdministrationService adminService;
+	private ChoreLedger choreLedger;
 
 	@Autowired
 	private DistroToolsService distroToolsService;
 
+	@Autowired
+	private DeferredChoreExecutor deferredChoreExecutor;
+
+	@Autowired
+	private RefreshLedger refreshLedger;
+
 	@Autowired(required = false)
 	private Collection<Chore> allChores;
 
@@ -61,8 +76,55 @@ public class ChoreManager implements ContentManager {
 	 */
 	@Override
 	public synchronized void refresh() {
+		if (allChores == null) {
+			return;
+		}
+
+		// Chores which can't be deferred, and the chores which they require, are performed now
+		Map<Class<? extends Chore>, Chore> all = getAllChoresByClass();
+		Set<Chore> immediate = new LinkedHashSet<Chore>();
+		for (Chore chore : allChores) {
+			if (!isDeferrable(chore)) {
+				collectRequiredChores(chore, all, immediate);
+			}
+		}
+		checkImmediateChores(immediate);
+
 		// Perform all registered chore components (that haven't already been run)
-		performChores(allChores);
+		performChores(immediate);
+
+		// Everything else is performed in the background once this refresh has been committed, unless it's already
+		// been scheduled by a previous refresh and is still waiting or running
+		List<Chore> pending = deferredChoreExecutor.getPendingChores();
+		List<Chore> deferred = new ArrayList<Chore>();
+		for (Chore chore : allChores) {
+			if (!immediate.contains(chore) && !pending.contains(chore) && !isChorePerformed(chore)) {
+				deferred.add(chore);
+			}
+		}
+		if (!deferred.isEmpty()) {
+			log.info("Deferring " + deferred.size() + " chores until after startup");
+
+			deferredChoreExecutor.schedule(deferred);
+		}
+		if (!deferred.isEmpty() || !pending.isEmpty()) {
+			// Deferred chores may not be performed before shutdown, so the next startup shouldn't skip this manager
+			refreshLedger.invalidate(ChoreManager.class);
+		}
+	}
+
+	/**
+	 * Checks that the chores to be performed during the refresh can be performed inside its transaction
+	 * @param immediate the chores which can't be deferred and the chores which they require
+	 * @throws APIException if any is a batch chore, as those must be performed outside of any transaction
+	 */
+	protected void checkImmediateChores(Collection<Chore> immediate) {
+		for (Chore chore : immediate) {
+			if (chore instanceof AbstractBatchChore) {
+				throw new APIException("Batch chore '" + chore.getId() + "' can't be performed during startup as it "
+						+ "isn't deferrable or is required by a chore which isn't deferrable");
+			}
+		}
 	}
 
 	/**
@@ -70,10 +132,15 @@ public class ChoreManager implements ContentManager {
 	 * @param chores the chores
 	 */
 	public void performChores(Collection<Chore> chores) {
+		// Load the records of all previously performed chores in one go
+		choreLedger.reload();
+
 		// Organize all available chores into map by class
-		Map<Class<? extends Chore>, Chore> all = new HashMap<Class<? extends Chore>, Chore>();
-		for (Chore chore : allChores) {
-			all.put(chore.getClass(), chore);
+		Map<Class<? extends Chore>, Chore> all = getAllChoresByClass();
+
+		if (isAnyParallel(chores, all)) {
+			performChoresInParallel(chores, all);
+			return;
 		}
 
 		// Begin recursive processing
@@ -83,6 +150,104 @@ public class ChoreManager implements ContentManager {
 		}
 	}
 
+	/**
+	 * Performs the given chores and their required chores using the parallel executor, ignoring those which have been
+	 * performed previously
+	 * @param chores the chores
+	 * @param all the map of all chores and their classes
+	 */
+	protected void performChoresInParallel(Collection<Chore> chores, Map<Class<? extends Chore>, Chore> all) {
+		// Organize chores into dependency order, and record what each requires
+		Map<Chore, List<Chore>> requires = new LinkedHashMap<Chore, List<Chore>>();
+		for (Chore chore : chores) {
+			collectChore(chore, all, requires);
+		}
+
+		List<Chore> unperformed = new ArrayList<Chore>();
+		for (Chore chore : requires.keySet()) {
+			if (!isChorePerformed(chore)) {
+				unperformed.add(chore);
+			}
+			else {
+				log.info("Skipping previously performed chore '" + chore.getId() + "'");
+			}
+		}
+
+		new ParallelChoreExecutor(MAX_PARALLEL_CHORES).execute(unperformed, requires);
+	}
+
+	/**
+	 * Collects a chore and its required chores, with required chores added first
+	 * @param chore the chore
+	 * @param all the map of all chores and their classes
+	 * @param requires the map of collected chores to their required chores
+	 */
+	protected void collectChore(Chore chore, Map<Class<? extends Chore>, Chore> all, Map<Chore, List<Chore>> requires) {
+		if (requires.containsKey(chore)) {
+			return;
+		}
+
+		List<Chore> required = getRequiredChores(chore, all);
+		for (Chore requiredChore : required) {
+			collectChore(requiredChore, all, requires);
+		}
+
+		requires.put(chore, required);
+	}
+
+	/**
+	 * Collects a chore and all the chores it requires
+	 * @param chore the chore
+	 * @param all the map of all chores and their classes
+	 * @param collected the collected chores
+	 */
+	protected void collectRequiredChores(Chore chore, Map<Class<? extends Chore>, Chore> all, Set<Chore> collected) {
+		if (collected.add(chore)) {
+			for (Chore requiredChore : getRequiredChores(chore, all)) {
+				collectRequiredChores(requiredChore, all, collected);
+			}
+		}
+	}
+
+	/**
+	 * Gets whether any of the given chores, or the chores they require, can be performed in parallel
+	 * @param chores the chores
+	 * @param all the map of all chores and their classes
+	 * @return true if any chore is parallel
+	 */
+	protected boolean isAnyParallel(Collection<Chore> chores, Map<Class<? extends Chore>, Chore> all) {
+		for (Chore chore : chores) {
+			if ((chore instanceof AbstractChore && ((AbstractChore) chore).isParallel()) || isAnyParallel(getRequiredChores(chore, all), all)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Gets the chores required by the given chore
+	 * @param chore the chore
+	 * @param all the map of all chores and their classes
+	 * @return the required chores
+	 */
+	protected List<Chore> getRequiredChores(Chore chore, Map<Class<? extends Chore>, Chore> all) {
+		List<Chore> required = new ArrayList<Chore>();
+
+		Requires requires = chore.getClass().getAnnotation(Requires.class);
+		if (requires != null) {
+			for (Class<? extends Chore> requiredClass : requires.value()) {
+				Chore requiredChore = all.get(requiredClass);
+
+				if (requiredChore == null) {
+					throw new APIException("Can't find required chore class " + requiredClass + " for " + chore.getClass());
+				}
+
+				required.add(requiredChore);
+			}
+		}
+		return required;
+	}
+
 	/**
 	 * Performs a chore by recursively performing it's required chores
 	 * @param chore the chore
@@ -111,7 +276,7 @@ public class ChoreManager implements ContentManager {
 			}
 
 			if (!isChorePerformed(chore)) {
-				distroToolsService.performChore(chore);
+				performChore(distroToolsService, chore);
 			}
 			else {
 				log.info("Skipping previously performed chore '" + chore.getId() + "'");
@@ -126,13 +291,49 @@ public class ChoreManager implements ContentManager {
 		}
 	}
 
+	/**
+	 * Performs a chore using the service, with batch chores performed outside of any transaction
+	 * @param service the service
+	 * @param chore the chore
+	 */
+	protected static void performChore(DistroToolsService service, Chore chore) {
+		if (chore instanceof AbstractBatchChore) {
+			service.performBatchChore((AbstractBatchChore) chore);
+		}
+		else {
+			service.performChore(chore);
+		}
+	}
+
+	/**
+	 * Organizes all available chores into map by class
+	 * @return the map of all chores and their classes
+	 */
+	protected Map<Class<? extends Chore>, Chore> getAllChoresByClass() {
+		Map<Class<? extends Chore>, Chore> all = new HashMap<Class<? extends Chore>, Chore>();
+		if (allChores != null) {
+			for (Chore chore : allChores) {
+				all.put(chore.getClass(), chore);
+			}
+		}
+		return all;
+	}
+
+	/**
+	 * Gets whether the given chore can be deferred until after startup
+	 * @param chore the chore
+	 * @return true if chore can be deferred
+	 */
+	protected boolean isDeferrable(Chore chore) {
+		return chore instanceof AbstractChore && ((AbstractChore) chore).isDeferrable();
+	}
+
 	/**
 	 * Checks whether a chore has been performed
 	 * @param chore the chore
 	 * @return true if chore has been performed
 	 */
 	public boolean isChorePerformed(Chore chore) {
-		GlobalProperty gp = adminService.getGlobalPropertyObject(chore.getId() + ".done");
-		return !(gp == null || gp.getPropertyValue().equals("false"));
+		return choreLedger.isPerformed(chore.getId());
 	}
-}
\ No newline at end of file
+}
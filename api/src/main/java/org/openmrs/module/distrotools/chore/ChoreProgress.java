@@ -0,0 +1,266 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+package org.openmrs.module.distrotools.chore;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress of a chore which processes a known or unknown number of items. Progress can be updated from several threads
+ * at once. A summary of the progress is written to the chore's log at regular intervals, and listeners are notified
+ * each time the percentage done increases.
+ *
+ * Each chore has its own log, named with the chore id under this package, so that its output can be configured
+ * separately. Console output written to {@link #getOutput()} is also sent to that log, a line at a time.
+ */
+public class ChoreProgress {
+
+	protected static final long DEFAULT_SUMMARY_INTERVAL = 10000;
+
+	private final Chore chore;
+
+	private final Log log;
+
+	private final PrintWriter output;
+
+	private final long started;
+
+	private volatile long total = 0;
+
+	private final AtomicLong completed = new AtomicLong();
+
+	private long summaryInterval = DEFAULT_SUMMARY_INTERVAL;
+
+	private volatile long lastSummary;
+
+	private int lastPercentDone = -1;
+
+	private final List<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+
+	/**
+	 * Creates progress for the given chore, with console output written to its log
+	 * @param chore the chore
+	 */
+	public ChoreProgress(Chore chore) {
+		this(chore, null);
+	}
+
+	/**
+	 * Creates progress for the given chore, with console output written to the given writer
+	 * @param chore the chore
+	 * @param output the writer for console output (null to write to the chore's log)
+	 */
+	public ChoreProgress(Chore chore, PrintWriter output) {
+		this.chore = chore;
+		this.log = getLog(chore);
+		this.output = (output != null) ? output : new PrintWriter(new ChoreLogWriter(log));
+		this.started = System.currentTimeMillis();
+		this.lastSummary = started;
+	}
+
+	/**
+	 * Gets the log of the given chore
+	 * @param chore the chore
+	 * @return the log
+	 */
+	public static Log getLog(Chore chore) {
+		return LogFactory.getLog(ChoreProgress.class.getPackage().getName() + "." + chore.getId());
+	}
+
+	/**
+	 * Gets the chore
+	 * @return the chore
+	 */
+	public Chore getChore() {
+		return chore;
+	}
+
+	/**
+	 * Gets the writer for console output
+	 * @return the writer
+	 */
+	public PrintWriter getOutput() {
+		return output;
+	}
+
+	/**
+	 * Gets the total number of items
+	 * @return the total or zero if unknown
+	 */
+	public long getTotal() {
+		return total;
+	}
+
+	/**
+	 * Sets the total number of items
+	 * @param total the total
+	 */
+	public void setTotal(long total) {
+		this.total = total;
+	}
+
+	/**
+	 * Gets the number of completed items
+	 * @return the number of items
+	 */
+	public long getCompleted() {
+		return completed.get();
+	}
+
+	/**
+	 * Records the completion of an item
+	 */
+	public void increment() {
+		increment(1);
+	}
+
+	/**
+	 * Records the completion of several items
+	 * @param count the number of items
+	 */
+	public void increment(long count) {
+		completed.addAndGet(count);
+
+		Integer percentDone = getPercentDone();
+		if (percentDone != null) {
+			notifyListeners(percentDone);
+		}
+
+		long now = System.currentTimeMillis();
+		if (now - lastSummary >= summaryInterval) {
+			lastSummary = now;
+			log.info(getSummary());
+		}
+	}
+
+	/**
+	 * Gets the time elapsed since the chore started
+	 * @return the time in milliseconds
+	 */
+	public long getElapsed() {
+		return System.currentTimeMillis() - started;
+	}
+
+	/**
+	 * Gets the average number of items completed per second
+	 * @return the throughput
+	 */
+	public double getThroughput() {
+		long elapsed = getElapsed();
+		return elapsed > 0 ? completed.get() * 1000.0 / elapsed : 0.0;
+	}
+
+	/**
+	 * Gets the percentage of items completed
+	 * @return the percentage or null if total is unknown
+	 */
+	public Integer getPercentDone() {
+		long total = this.total;
+		return total > 0 ? (int) Math.min(100, completed.get() * 100 / total) : null;
+	}
+
+	/**
+	 * Gets the estimated time until all items are completed, based on the throughput so far
+	 * @return the time in milliseconds or null if unknown
+	 */
+	public Long getEstimatedRemaining() {
+		long total = this.total;
+		long done = completed.get();
+		if (total <= 0 || done <= 0) {
+			return null;
+		}
+		return Math.max(0, (total - done) * getElapsed() / done);
+	}
+
+	/**
+	 * Gets a summary of the progress
+	 * @return the summary
+	 */
+	public String getSummary() {
+		StringBuilder sb = new StringBuilder("Chore '" + chore.getId() + "': " + completed.get());
+		if (total > 0) {
+			sb.append("/").append(total).append(" (").append(getPercentDone()).append("%)");
+		}
+		sb.append(" items, ").append(String.format("%.1f", getThroughput())).append(" items/sec");
+
+		Long remaining = getEstimatedRemaining();
+		if (remaining != null) {
+			sb.append(", ETA ").append(remaining / 1000).append("s");
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Completes the progress by flushing console output and writing a final summary
+	 */
+	public void complete() {
+		output.flush();
+
+		if (completed.get() > 0) {
+			log.info(getSummary());
+		}
+	}
+
+	/**
+	 * Sets the interval between summaries written to the log
+	 * @param summaryInterval the interval in milliseconds
+	 */
+	public void setSummaryInterval(long summaryInterval) {
+		this.summaryInterval = summaryInterval;
+	}
+
+	/**
+	 * Adds a listener
+	 * @param listener the listener
+	 */
+	public void addListener(Listener listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * Notifies listeners if the percentage done has increased
+	 * @param percentDone the percentage done
+	 */
+	protected void notifyListeners(int percentDone) {
+		synchronized (this) {
+			if (percentDone <= lastPercentDone) {
+				return;
+			}
+			lastPercentDone = percentDone;
+		}
+
+		for (Listener listener : listeners) {
+			listener.percentDone(this, percentDone);
+		}
+	}
+
+	/**
+	 * Interface for progress listeners
+	 */
+	public interface Listener {
+
+		/**
+		 * Called when the percentage done increases
+		 * @param progress the progress
+		 * @param percentDone the percentage done
+		 */
+		void percentDone(ChoreProgress progress, int percentDone);
+	}
+}
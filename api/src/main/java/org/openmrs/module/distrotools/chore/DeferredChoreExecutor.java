@@ -0,0 +1,159 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+package org.openmrs.module.distrotools.chore;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.api.context.Context;
+import org.openmrs.api.context.UserContext;
+import org.openmrs.module.distrotools.DependencyGraphExecutor;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Performs deferred chores on a single low priority background thread, so that they don't hold up startup. Chores are
+ * only started once the transaction which scheduled them has been committed, so that the chores they require have
+ * been recorded as performed. The background thread is stopped when the application context is closed or refreshed,
+ * and unperformed chores are picked up again by the next refresh. Chores which are still pending, i.e. waiting or
+ * running, aren't scheduled again by later refreshes.
+ */
+@Component
+public class DeferredChoreExecutor implements DisposableBean {
+
+	protected static final Log log = LogFactory.getLog(DeferredChoreExecutor.class);
+
+	/**
+	 * The number of seconds to wait for a running chore to stop when the executor is destroyed
+	 */
+	protected static final int SHUTDOWN_TIMEOUT = 60;
+
+	@Autowired
+	private ChoreManager choreManager;
+
+	private final List<Chore> pending = new CopyOnWriteArrayList<Chore>();
+
+	private ExecutorService executor;
+
+	/**
+	 * Schedules the given chores to be performed in the background, after the current transaction (if any) commits
+	 * @param chores the chores
+	 */
+	public void schedule(Collection<Chore> chores) {
+		final List<Chore> scheduled = new ArrayList<Chore>(chores);
+		final UserContext userContext = Context.getUserContext();
+
+		pending.addAll(scheduled);
+
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCompletion(int status) {
+					if (status == STATUS_COMMITTED) {
+						submit(scheduled, userContext);
+					}
+					else {
+						pending.removeAll(scheduled);
+					}
+				}
+			});
+		}
+		else {
+			submit(scheduled, userContext);
+		}
+	}
+
+	/**
+	 * Gets the chores which have been scheduled but not yet performed
+	 * @return the chores
+	 */
+	public List<Chore> getPendingChores() {
+		return new ArrayList<Chore>(pending);
+	}
+
+	/**
+	 * @see DisposableBean#destroy()
+	 */
+	@Override
+	public synchronized void destroy() {
+		if (executor != null) {
+			executor.shutdownNow();
+
+			// Wait for the running chore to stop, so that it isn't still running when the next refresh schedules it
+			try {
+				if (!executor.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.SECONDS)) {
+					log.warn("Deferred chores didn't stop within " + SHUTDOWN_TIMEOUT + " seconds");
+				}
+			}
+			catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+			executor = null;
+		}
+		pending.clear();
+	}
+
+	/**
+	 * Submits chores to the background thread
+	 * @param chores the chores
+	 * @param userContext the user context of the thread which scheduled them
+	 */
+	protected synchronized void submit(final List<Chore> chores, final UserContext userContext) {
+		if (executor == null) {
+			executor = Executors.newSingleThreadExecutor(new DependencyGraphExecutor.WorkerThreadFactory("deferred-chore-", Thread.MIN_PRIORITY));
+		}
+
+		executor.submit(new Runnable() {
+			@Override
+			public void run() {
+				performInNewSession(chores, userContext);
+			}
+		});
+	}
+
+	/**
+	 * Performs chores in a new session on the current thread
+	 * @param chores the chores
+	 * @param userContext the user context of the thread which scheduled them
+	 */
+	protected void performInNewSession(List<Chore> chores, UserContext userContext) {
+		log.info("Performing " + chores.size() + " deferred chores");
+
+		Context.openSession();
+		try {
+			Context.setUserContext(userContext);
+			choreManager.performChores(chores);
+
+			log.info("Performed deferred chores");
+		}
+		catch (Exception ex) {
+			log.error("Unable to perform deferred chores", ex);
+		}
+		finally {
+			pending.removeAll(chores);
+			Context.closeSession();
+		}
+	}
+}
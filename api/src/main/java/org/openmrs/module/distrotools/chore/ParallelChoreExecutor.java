@@ -0,0 +1,67 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+package org.openmrs.module.distrotools.chore;
+
+import org.openmrs.api.APIException;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.distrotools.DependencyGraphExecutor;
+import org.openmrs.module.distrotools.api.DistroToolsService;
+
+/**
+ * Performs chores according to their dependency graph on a bounded pool of worker threads. Chores marked as parallel
+ * are started as soon as all the chores they require have been performed. Other chores are performed alone.
+ */
+public class ParallelChoreExecutor extends DependencyGraphExecutor<Chore> {
+
+	/**
+	 * Creates a new executor
+	 * @param poolSize the maximum number of chores to be performed at once
+	 */
+	public ParallelChoreExecutor(int poolSize) {
+		super(poolSize, "chore-worker-");
+	}
+
+	/**
+	 * @see DependencyGraphExecutor#perform(Object)
+	 */
+	@Override
+	protected void perform(Chore chore) {
+		ChoreManager.performChore(Context.getService(DistroToolsService.class), chore);
+	}
+
+	/**
+	 * @see DependencyGraphExecutor#isParallel(Object)
+	 */
+	@Override
+	protected boolean isParallel(Chore chore) {
+		return chore instanceof AbstractChore && ((AbstractChore) chore).isParallel();
+	}
+
+	/**
+	 * @see DependencyGraphExecutor#createFailure(Object, Throwable)
+	 */
+	@Override
+	protected APIException createFailure(Chore chore, Throwable cause) {
+		return new APIException("Unable to perform chore: " + chore.getClass().getSimpleName(), cause);
+	}
+
+	/**
+	 * @see DependencyGraphExecutor#describe(Object)
+	 */
+	@Override
+	protected String describe(Chore chore) {
+		return "Chore '" + chore.getId() + "'";
+	}
+}
@@ -29,6 +29,10 @@ import org.openmrs.ProgramWorkflow;
 import org.openmrs.ProgramWorkflowState;
 import org.openmrs.RelationshipType;
 import org.openmrs.api.context.Context;
+import org.openmrs.module.distrotools.metadata.index.ConceptSetIndex;
+import org.openmrs.module.distrotools.metadata.index.GlobalPropertyCache;
+import org.openmrs.module.distrotools.metadata.index.LocationIndex;
+import org.openmrs.module.distrotools.metadata.index.ProgramIndex;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -44,7 +48,12 @@ public class MetadataLookup {
 	 * @return the Program that matches the passed uuid, concept name, name, or primary key id
 	 */
 	public static Program getProgram(String lookup) {
-		Program program = Context.getProgramWorkflowService().getProgramByUuid(lookup);
+		Program program = getProgramIndex().getProgram(lookup);
+		if (program != null) {
+			return program;
+		}
+
+		program = Context.getProgramWorkflowService().getProgramByUuid(lookup);
 		if (program == null) {
 			program = Context.getProgramWorkflowService().getProgramByName(lookup);
 		}
@@ -65,6 +74,12 @@ public class MetadataLookup {
 			throw new IllegalArgumentException("Unable to find program using key: " + lookup);
 		}
 
+		// Index must be out of date if it doesn't contain the program. If it does then the key was one it can't resolve,
+		// e.g. an ambiguous key or a differently formatted id.
+		if (!getProgramIndex().containsProgram(program.getProgramId())) {
+			getProgramIndex().invalidate();
+		}
+
 		return program;
 	}
 
@@ -72,6 +87,11 @@ public class MetadataLookup {
 	 * @return the ProgramWorkflow matching the given programLookup and workflowLookup
 	 */
 	public static ProgramWorkflow getProgramWorkflow(String programLookup, String workflowLookup) {
+		ProgramWorkflow indexed = getProgramIndex().getWorkflow(programLookup, workflowLookup);
+		if (indexed != null) {
+			return indexed;
+		}
+
 		Program p = getProgram(programLookup);
 		ProgramWorkflow wf = p.getWorkflowByName(workflowLookup);
 
@@ -91,6 +111,11 @@ public class MetadataLookup {
 		if (wf == null) {
 			throw new IllegalArgumentException("Unable to find workflow using " + programLookup + " - " + workflowLookup);
 		}
+
+		if (!getProgramIndex().containsWorkflow(wf.getProgramWorkflowId())) {
+			getProgramIndex().invalidate();
+		}
+
 		return wf;
 	}
 
@@ -98,6 +123,11 @@ public class MetadataLookup {
 	 * @return the ProgramWorkflowState matching the given programLookup and workflowLookup and stateLookup
 	 */
 	public static ProgramWorkflowState getProgramWorkflowState(String programLookup, String workflowLookup, String stateLookup) {
+		ProgramWorkflowState indexed = getProgramIndex().getState(programLookup, workflowLookup, stateLookup);
+		if (indexed != null) {
+			return indexed;
+		}
+
 		ProgramWorkflow wf = getProgramWorkflow(programLookup, workflowLookup);
 		ProgramWorkflowState s = wf.getStateByName(stateLookup);
 		if (s == null) {
@@ -122,9 +152,39 @@ public class MetadataLookup {
 		if (s == null) {
 			throw new IllegalArgumentException("Unable to find state using " + programLookup + " - " + workflowLookup + " - " + stateLookup);
 		}
+
+		if (!getProgramIndex().containsState(s.getProgramWorkflowStateId())) {
+			getProgramIndex().invalidate();
+		}
+
 		return s;
 	}
 
+	/**
+	 * Gets the program index. Lookups use this first and only fall back to the slower service based lookups if it
+	 * doesn't contain the key, e.g. because a program was changed without going through the deploy handler.
+	 * @return the program index
+	 */
+	protected static ProgramIndex getProgramIndex() {
+		return ProgramIndex.getInstance();
+	}
+
+	/**
+	 * Gets the concept set index
+	 * @return the concept set index
+	 */
+	protected static ConceptSetIndex getConceptSetIndex() {
+		return ConceptSetIndex.getInstance();
+	}
+
+	/**
+	 * Gets the location index
+	 * @return the location index
+	 */
+	protected static LocationIndex getLocationIndex() {
+		return LocationIndex.getInstance();
+	}
+
 	/**
 	 * @return the PatientIdentifier that matches the passed uuid, name, or primary key id
 	 */
@@ -207,15 +267,28 @@ public class MetadataLookup {
 	}
 
 	/**
-	 * @return the List of Concepts that matches the passed comma-separated list of concept lookups
+	 * @return the List of Concepts that are direct members of the set concept which matches the passed lookup
 	 */
 	public static List<Concept> getConceptsInSet(String lookup) {
-		List<Concept> ret = new ArrayList<Concept>();
+		return getConceptsInSet(lookup, false);
+	}
+
+	/**
+	 * @return the List of Concepts that are members of the set concept which matches the passed lookup, optionally
+	 * including the members of nested sets
+	 */
+	public static List<Concept> getConceptsInSet(String lookup, boolean transitive) {
 		Concept set = getConcept(lookup);
-		for (Concept c : set.getSetMembers()) {
-			ret.add(c);
-		}
-		return ret;
+		return getConceptSetIndex().getMembers(set.getConceptId(), transitive);
+	}
+
+	/**
+	 * @return whether the given concept is a member of the set concept which matches the passed lookup, optionally
+	 * including the members of nested sets
+	 */
+	public static boolean isConceptInSet(String setLookup, Concept concept, boolean transitive) {
+		Concept set = getConcept(setLookup);
+		return getConceptSetIndex().isMember(set.getConceptId(), concept.getConceptId(), transitive);
 	}
 
 	/**
@@ -410,11 +483,52 @@ public class MetadataLookup {
 		return et;
 	}
 
+	/**
+	 * @return the List of non-retired Locations which have the Location Tag that matches the passed uuid, name, or
+	 * primary key id
+	 */
 	public static List<Location> getLocationsForTag(String lookup) {
+		List<Location> locations = getLocationIndex().getLocationsByTag(lookup);
+		if (locations != null) {
+			return locations;
+		}
+
 		LocationTag tag = getLocationTag(lookup);
+
+		// Index must be out of date if it doesn't contain the tag
+		if (!getLocationIndex().containsTag(tag.getLocationTagId())) {
+			getLocationIndex().invalidate();
+		}
+
 		return Context.getLocationService().getLocationsByTag(tag);
 	}
 
+	/**
+	 * @return the List of non-retired Locations which are descendants of the Location that matches the passed
+	 * ancestorLookup, and have the Location Tag that matches the passed tagLookup
+	 */
+	public static List<Location> getLocationsForTag(String tagLookup, String ancestorLookup) {
+		Location ancestor = getLocation(ancestorLookup);
+		Integer tagId = getLocationIndex().getTagId(tagLookup);
+		if (tagId == null) {
+			tagId = getLocationTag(tagLookup).getLocationTagId();
+			if (!getLocationIndex().containsTag(tagId)) {
+				getLocationIndex().invalidate();
+			}
+		}
+
+		return getLocationIndex().getDescendantsByTag(ancestor.getLocationId(), tagId);
+	}
+
+	/**
+	 * @return the List of non-retired Locations which are descendants of the Location that matches the passed uuid,
+	 * name, or primary key id
+	 */
+	public static List<Location> getDescendantLocations(String lookup) {
+		Location location = getLocation(lookup);
+		return getLocationIndex().getDescendants(location.getLocationId());
+	}
+
 	/**
 	 * @return the PersonAttributeType that matches the passed uuid, name, or primary key id
 	 */
@@ -440,7 +554,7 @@ public class MetadataLookup {
 	 * @return the global property with the passed name, or the default value if not found
 	 */
 	public static String getGlobalProperty(String propertyName, String defaultValue) {
-		String s = Context.getAdministrationService().getGlobalProperty(propertyName);
+		String s = GlobalPropertyCache.getInstance().getValue(propertyName);
 		return StringUtils.isNotEmpty(s) ? s : defaultValue;
 	}
 }
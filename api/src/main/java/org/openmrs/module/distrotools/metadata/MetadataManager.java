@@ -18,6 +18,8 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.openmrs.api.context.Context;
 import org.openmrs.module.distrotools.ContentManager;
+import org.openmrs.module.distrotools.RefreshLedger;
+import org.openmrs.module.distrotools.ResourceContentManager;
 import org.openmrs.module.distrotools.api.DistroToolsService;
 import org.openmrs.module.distrotools.metadata.bundle.MetadataBundle;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -27,7 +29,7 @@ import org.springframework.stereotype.Component;
  * Metadata package manager
  */
 @Component
-public class MetadataManager implements ContentManager {
+public class MetadataManager implements ResourceContentManager {
 
 	protected static final Log log = LogFactory.getLog(MetadataManager.class);
 
@@ -36,6 +38,9 @@ public class MetadataManager implements ContentManager {
 	@Autowired
 	private DistroToolsService distroToolsService;
 
+	@Autowired
+	private RefreshLedger refreshLedger;
+
 	/**
 	 * @see ContentManager#getPriority()
 	 */
@@ -52,6 +57,9 @@ public class MetadataManager implements ContentManager {
 		// Allow skipping of metadata refresh - useful for developers
 		if (Boolean.parseBoolean(System.getProperty(SYSTEM_PROPERTY_SKIP_REFRESH))) {
 			log.warn("Skipping metadata refresh");
+
+			// Nothing was installed, so the next startup shouldn't skip this manager
+			refreshLedger.invalidate(MetadataManager.class);
 			return;
 		}
 
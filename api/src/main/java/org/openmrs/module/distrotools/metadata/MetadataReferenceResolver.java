@@ -0,0 +1,234 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+package org.openmrs.module.distrotools.metadata;
+
+import org.openmrs.Concept;
+import org.openmrs.OpenmrsObject;
+import org.openmrs.module.distrotools.api.db.DistroToolsDAO;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Resolves references to existing objects as uninitialized proxies, by looking up only their primary keys. Objects
+ * identified by UUID are resolved by UUID, and objects with a string primary key (e.g. roles and privileges) are
+ * resolved by that key.
+ *
+ * Within a scope (e.g. the installation of a bundle) resolved keys are remembered, and the first reference to a type
+ * fetches the keys of all objects of that type in one query. Only keys are fetched, including for objects keyed by name,
+ * so the objects themselves are loaded only if they are used. Concepts are the exception as dictionaries can be very
+ * large, so they are resolved as they are referenced. Objects which are uninstalled are evicted from every scope on the
+ * current thread, so that references to them aren't resolved after they are deleted.
+ */
+@Component
+public class MetadataReferenceResolver implements InitializingBean {
+
+	private static MetadataReferenceResolver instance;
+
+	@Autowired
+	private DistroToolsDAO dao;
+
+	private final ThreadLocal<Scope> currentScope = new ThreadLocal<Scope>();
+
+	/**
+	 * Gets the instance of this component in the current application context
+	 * @return the instance
+	 */
+	public static MetadataReferenceResolver getInstance() {
+		return instance;
+	}
+
+	/**
+	 * @see InitializingBean#afterPropertiesSet()
+	 */
+	@Override
+	public void afterPropertiesSet() {
+		instance = this;
+	}
+
+	/**
+	 * Begins a new resolution scope on the current thread. Scopes may be nested, in which case the inner scope doesn't
+	 * share the keys resolved by the outer scope.
+	 */
+	public void beginScope() {
+		currentScope.set(new Scope(currentScope.get()));
+	}
+
+	/**
+	 * Ends the current resolution scope on the current thread, restoring the outer scope if there is one
+	 */
+	public void endScope() {
+		Scope scope = currentScope.get();
+		if (scope == null || scope.outer == null) {
+			currentScope.remove();
+		}
+		else {
+			currentScope.set(scope.outer);
+		}
+	}
+
+	/**
+	 * Resolves a reference to an existing object
+	 * @param clazz the object's class
+	 * @param identifier the object's identifier
+	 * @return the object reference
+	 * @throws MissingMetadataException if object doesn't exist
+	 */
+	public <T extends OpenmrsObject> T resolve(Class<T> clazz, String identifier) {
+		Map<String, Serializable> ids = resolveIds(clazz, Collections.singleton(identifier));
+		Serializable id = ids.get(identifier);
+		if (id == null) {
+			throw new MissingMetadataException(clazz, identifier);
+		}
+		return dao.load(clazz, id);
+	}
+
+	/**
+	 * Resolves references to several existing objects of the same class
+	 * @param clazz the objects' class
+	 * @param identifiers the objects' identifiers
+	 * @return the object references
+	 * @throws MissingMetadataException if any object doesn't exist
+	 */
+	public <T extends OpenmrsObject> Set<T> resolveAll(Class<T> clazz, Collection<String> identifiers) {
+		Map<String, Serializable> ids = resolveIds(clazz, identifiers);
+
+		Set<T> references = new LinkedHashSet<T>();
+		for (String identifier : identifiers) {
+			Serializable id = ids.get(identifier);
+			if (id == null) {
+				throw new MissingMetadataException(clazz, identifier);
+			}
+			references.add(dao.load(clazz, id));
+		}
+		return references;
+	}
+
+	/**
+	 * Evicts an object from all scopes on the current thread, e.g. because it has been uninstalled and may have been
+	 * deleted. Other objects remain resolved.
+	 * @param obj the object
+	 */
+	public void evict(OpenmrsObject obj) {
+		for (Scope scope = currentScope.get(); scope != null; scope = scope.outer) {
+			for (Map.Entry<Class<?>, Map<String, Serializable>> entry : scope.ids.entrySet()) {
+				Class<?> clazz = entry.getKey();
+
+				if (clazz.isInstance(obj)) {
+					if (isKeyedByName(clazz)) {
+						entry.getValue().remove((String) dao.getIdentifier(clazz, obj));
+					}
+					else {
+						entry.getValue().remove(obj.getUuid());
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Resolves the primary keys of the given identifiers, using the current scope if there is one
+	 * @param clazz the objects' class
+	 * @param identifiers the objects' identifiers
+	 * @return the map of identifiers to primary keys, containing only those which were found
+	 */
+	protected Map<String, Serializable> resolveIds(Class<?> clazz, Collection<String> identifiers) {
+		Scope scope = currentScope.get();
+		if (scope == null) {
+			return fetchIds(clazz, identifiers);
+		}
+
+		Map<String, Serializable> known = scope.ids.get(clazz);
+		if (known == null) {
+			known = new HashMap<String, Serializable>();
+			if (isKeyedByName(clazz)) {
+				for (Serializable id : dao.getAllIds(clazz)) {
+					known.put((String) id, id);
+				}
+			}
+			else if (!Concept.class.isAssignableFrom(clazz)) {
+				known.putAll(dao.getAllIdsByUuid(clazz));
+			}
+			scope.ids.put(clazz, known);
+		}
+
+		// Anything not already known may have been created since the scope began
+		List<String> unknown = new ArrayList<String>();
+		for (String identifier : identifiers) {
+			if (!known.containsKey(identifier)) {
+				unknown.add(identifier);
+			}
+		}
+		if (!unknown.isEmpty()) {
+			known.putAll(fetchIds(clazz, unknown));
+		}
+
+		return known;
+	}
+
+	/**
+	 * Fetches the primary keys of the given identifiers
+	 * @param clazz the objects' class
+	 * @param identifiers the objects' identifiers
+	 * @return the map of identifiers to primary keys, containing only those which were found
+	 */
+	protected Map<String, Serializable> fetchIds(Class<?> clazz, Collection<String> identifiers) {
+		Map<String, Serializable> ids = new HashMap<String, Serializable>();
+
+		if (isKeyedByName(clazz)) {
+			for (Serializable id : dao.getExistingIds(clazz, new HashSet<String>(identifiers))) {
+				ids.put((String) id, id);
+			}
+		}
+		else {
+			ids.putAll(dao.getIdsByUuid(clazz, new HashSet<String>(identifiers)));
+		}
+		return ids;
+	}
+
+	/**
+	 * Gets whether the given class uses its string primary key as its identifier rather than its UUID
+	 * @param clazz the class
+	 * @return true if class is identified by primary key
+	 */
+	protected boolean isKeyedByName(Class<?> clazz) {
+		return String.class.equals(dao.getIdentifierType(clazz));
+	}
+
+	/**
+	 * Resolved primary keys by class and identifier
+	 */
+	protected static class Scope {
+
+		private final Scope outer;
+
+		private final Map<Class<?>, Map<String, Serializable>> ids = new HashMap<Class<?>, Map<String, Serializable>>();
+
+		public Scope(Scope outer) {
+			this.outer = outer;
+		}
+	}
+}
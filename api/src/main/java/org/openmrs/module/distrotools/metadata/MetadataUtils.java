@@ -17,6 +17,16 @@ package org.openmrs.module.distrotools.metadata;
 import org.openmrs.OpenmrsObject;
 import org.openmrs.api.context.Context;
 import org.openmrs.module.distrotools.api.DistroToolsService;
+import org.openmrs.module.distrotools.metadata.reference.AbstractMetadataReference;
+import org.openmrs.module.distrotools.metadata.reference.MetadataReference;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Utility methods for fetching of metadata outside of a bundle.
@@ -48,6 +58,68 @@ public class MetadataUtils {
 		return Context.getService(DistroToolsService.class).fetchObject(clazz, identifier);
 	}
 
+	/**
+	 * Fetches a reference to an object which is assumed to exist. Only the primary key is looked up, so the returned
+	 * object may be an uninitialized proxy. This is intended for setting foreign keys of transient objects.
+	 * @param clazz the object class
+	 * @param identifier the object identifier
+	 * @return the object reference
+	 * @throws org.openmrs.module.distrotools.metadata.MissingMetadataException if object doesn't exist
+	 */
+	public static <T extends OpenmrsObject> T reference(Class<T> clazz, String identifier) {
+		return MetadataReferenceResolver.getInstance().resolve(clazz, identifier);
+	}
+
+	/**
+	 * Fetches references to several objects of the same class which are assumed to exist, using a single query
+	 * @param clazz the object class
+	 * @param identifiers the object identifiers
+	 * @return the object references
+	 * @throws org.openmrs.module.distrotools.metadata.MissingMetadataException if any object doesn't exist
+	 */
+	public static <T extends OpenmrsObject> Set<T> references(Class<T> clazz, Collection<String> identifiers) {
+		return MetadataReferenceResolver.getInstance().resolveAll(clazz, identifiers);
+	}
+
+	/**
+	 * Resolves the primary keys of many references at once, using one query per type of referenced object, so that
+	 * subsequent calls to getTarget on those references don't need to look them up individually. References which
+	 * are already resolved, or can't be resolved, are left unchanged.
+	 * @param references the references
+	 */
+	public static void resolveAll(Collection<? extends MetadataReference<?>> references) {
+		Map<Class<? extends OpenmrsObject>, List<AbstractMetadataReference<?>>> byType = new HashMap<Class<? extends OpenmrsObject>, List<AbstractMetadataReference<?>>>();
+
+		for (MetadataReference<?> reference : references) {
+			if (reference instanceof AbstractMetadataReference && ((AbstractMetadataReference<?>) reference).getTargetId() == null) {
+				List<AbstractMetadataReference<?>> unresolved = byType.get(reference.getType());
+				if (unresolved == null) {
+					unresolved = new ArrayList<AbstractMetadataReference<?>>();
+					byType.put(reference.getType(), unresolved);
+				}
+				unresolved.add((AbstractMetadataReference<?>) reference);
+			}
+		}
+
+		DistroToolsService service = Context.getService(DistroToolsService.class);
+
+		for (Map.Entry<Class<? extends OpenmrsObject>, List<AbstractMetadataReference<?>>> entry : byType.entrySet()) {
+			Set<String> uuids = new HashSet<String>();
+			for (AbstractMetadataReference<?> reference : entry.getValue()) {
+				uuids.add(reference.getReference());
+			}
+
+			Map<String, Integer> ids = service.fetchObjectIds(entry.getKey(), uuids);
+
+			for (AbstractMetadataReference<?> reference : entry.getValue()) {
+				Integer id = ids.get(reference.getReference());
+				if (id != null) {
+					reference.setTargetId(id);
+				}
+			}
+		}
+	}
+
 	/**
 	 * Determines if the passed string is in valid UUID format By OpenMRS standards, a UUID must be
 	 * 36 characters in length and not contain whitespace, but we do not enforce that a uuid be in
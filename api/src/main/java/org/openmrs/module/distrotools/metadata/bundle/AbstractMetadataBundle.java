@@ -24,6 +24,7 @@ import org.openmrs.module.distrotools.metadata.sync.ObjectSynchronization;
 import org.openmrs.module.distrotools.metadata.sync.SyncResult;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -53,6 +54,15 @@ public abstract class AbstractMetadataBundle implements MetadataBundle {
 		return distroToolsService.installObject(incoming);
 	}
 
+	/**
+	 * Installs the given objects
+	 * @param incoming the incoming objects
+	 * @return the installed objects
+	 */
+	protected <T extends OpenmrsObject> List<T> install(Collection<T> incoming) {
+		return distroToolsService.installObjects(incoming);
+	}
+
 	/**
 	 * Installs all objects from the given source
 	 * @param source the object source
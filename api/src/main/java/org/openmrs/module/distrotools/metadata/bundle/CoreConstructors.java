@@ -15,7 +15,6 @@
 package org.openmrs.module.distrotools.metadata.bundle;
 
 import org.apache.commons.collections.CollectionUtils;
-import org.apache.commons.collections.Transformer;
 import org.openmrs.Concept;
 import org.openmrs.ConceptSource;
 import org.openmrs.EncounterRole;
@@ -108,7 +107,7 @@ public class CoreConstructors {
 		Form obj = new Form();
 		obj.setName(name);
 		obj.setDescription(description);
-		obj.setEncounterType(MetadataUtils.existing(EncounterType.class, encTypeUuid));
+		obj.setEncounterType(MetadataUtils.reference(EncounterType.class, encTypeUuid));
 		obj.setVersion(version);
 		obj.setUuid(uuid);
 		return obj;
@@ -126,7 +125,7 @@ public class CoreConstructors {
 	public static <T, H extends CustomDatatype<T>> FormResource formResource(String name, String formUuid, Class<H> datatype, String datatypeConfig, T value) {
 		FormResource obj = new FormResource();
 		obj.setName(name);
-		obj.setForm(MetadataUtils.existing(Form.class, formUuid));
+		obj.setForm(MetadataUtils.reference(Form.class, formUuid));
 		obj.setDatatypeClassname(datatype.getName());
 		obj.setDatatypeConfig(datatypeConfig);
 		obj.setValue(value);
@@ -320,7 +319,7 @@ public class CoreConstructors {
 		Program obj = new Program();
 		obj.setName(name);
 		obj.setDescription(description);
-		obj.setConcept(MetadataUtils.existing(Concept.class, conceptUuid));
+		obj.setConcept(MetadataUtils.reference(Concept.class, conceptUuid));
 		obj.setUuid(uuid);
 		return obj;
 	}
@@ -362,20 +361,10 @@ public class CoreConstructors {
 		obj.setDescription(description);
 
 		if (CollectionUtils.isNotEmpty(inherited)) {
-			obj.setInheritedRoles((Set) CollectionUtils.collect(inherited, new Transformer() {
-				@Override
-				public Object transform(Object o) {
-					return MetadataUtils.existing(Role.class, (String) o);
-				}
-			}, new HashSet()));
+			obj.setInheritedRoles(new HashSet<Role>(MetadataUtils.references(Role.class, inherited)));
 		}
 		if (CollectionUtils.isNotEmpty(privileges)) {
-			obj.setPrivileges((Set) CollectionUtils.collect(privileges, new Transformer() {
-				@Override
-				public Object transform(Object o) {
-					return MetadataUtils.existing(Privilege.class, (String) o);
-				}
-			}, new HashSet()));
+			obj.setPrivileges(new HashSet<Privilege>(MetadataUtils.references(Privilege.class, privileges)));
 		}
 
 		return obj;
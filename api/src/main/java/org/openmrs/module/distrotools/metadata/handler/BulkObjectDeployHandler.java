@@ -0,0 +1,34 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+package org.openmrs.module.distrotools.metadata.handler;
+
+import org.openmrs.OpenmrsObject;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Interface for object deployment handlers which can install many objects more efficiently than one at a time
+ */
+public interface BulkObjectDeployHandler<T extends OpenmrsObject> extends ObjectDeployHandler<T> {
+
+	/**
+	 * Installs the incoming objects, with the same result as installing each individually, except that existing objects
+	 * which wouldn't be changed by an incoming object needn't be saved
+	 * @param incoming the incoming objects
+	 * @return the installed objects (can be incoming or existing)
+	 */
+	List<T> installAll(Collection<T> incoming);
+}
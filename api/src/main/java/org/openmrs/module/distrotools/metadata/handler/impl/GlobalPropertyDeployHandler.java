@@ -17,22 +17,40 @@ package org.openmrs.module.distrotools.metadata.handler.impl;
 import org.apache.commons.lang3.StringUtils;
 import org.openmrs.GlobalProperty;
 import org.openmrs.annotation.Handler;
+import org.openmrs.api.APIException;
 import org.openmrs.api.AdministrationService;
+import org.openmrs.module.distrotools.api.db.DistroToolsDAO;
 import org.openmrs.module.distrotools.metadata.handler.AbstractObjectDeployHandler;
+import org.openmrs.module.distrotools.metadata.handler.BulkObjectDeployHandler;
+import org.openmrs.module.distrotools.metadata.index.GlobalPropertyCache;
 import org.openmrs.util.OpenmrsUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 /**
  * Deployment handler for global properties
  */
 @Handler(supports = { GlobalProperty.class })
-public class GlobalPropertyDeployHandler extends AbstractObjectDeployHandler<GlobalProperty> {
+public class GlobalPropertyDeployHandler extends AbstractObjectDeployHandler<GlobalProperty> implements BulkObjectDeployHandler<GlobalProperty> {
 
 	@Autowired
 	@Qualifier("adminService")
 	private AdministrationService adminService;
 
+	@Autowired
+	private GlobalPropertyCache globalPropertyCache;
+
+	@Autowired
+	private DistroToolsDAO dao;
+
 	/**
 	 * @see org.openmrs.module.distrotools.metadata.handler.ObjectDeployHandler#getIdentifier(org.openmrs.OpenmrsObject)
 	 */
@@ -54,7 +72,11 @@ public class GlobalPropertyDeployHandler extends AbstractObjectDeployHandler<Glo
 	 */
 	@Override
 	public GlobalProperty save(GlobalProperty obj) {
-		return adminService.saveGlobalProperty(obj);
+		GlobalProperty saved = adminService.saveGlobalProperty(obj);
+
+		globalPropertyCache.invalidate(obj.getProperty());
+
+		return saved;
 	}
 
 	/**
@@ -72,6 +94,82 @@ public class GlobalPropertyDeployHandler extends AbstractObjectDeployHandler<Glo
 	@Override
 	public void uninstall(GlobalProperty obj, String reason) {
 		adminService.purgeGlobalProperty(obj);
+
+		globalPropertyCache.invalidate(obj.getProperty());
+	}
+
+	/**
+	 * Installs many global properties, loading the existing properties in a single query and only saving those which
+	 * are new or would actually be changed. Properties are installed in order, so a property which appears more than once
+	 * is installed each time. UUIDs aren't compared as properties are matched by name, and incoming properties usually
+	 * have random UUIDs, so an existing property only takes the UUID of the incoming property if it is otherwise changed.
+	 * @see BulkObjectDeployHandler#installAll(java.util.Collection)
+	 */
+	@Override
+	public List<GlobalProperty> installAll(Collection<GlobalProperty> incoming) {
+		Set<String> properties = new HashSet<String>();
+		Set<String> uuids = new HashSet<String>();
+		for (GlobalProperty gp : incoming) {
+			if (gp.getProperty() == null) {
+				throw new APIException("Can't install object with no identifier");
+			}
+			properties.add(gp.getProperty());
+			if (gp.getUuid() != null) {
+				uuids.add(gp.getUuid());
+			}
+		}
+
+		// Existing properties by name and UUID, kept up to date as properties are installed
+		Map<String, GlobalProperty> byProperty = new HashMap<String, GlobalProperty>();
+		Map<String, GlobalProperty> byUuid = new HashMap<String, GlobalProperty>();
+		for (GlobalProperty existing : dao.getByIds(GlobalProperty.class, properties).values()) {
+			track(existing, byProperty, byUuid);
+		}
+		for (GlobalProperty existing : dao.getByUuids(GlobalProperty.class, uuids).values()) {
+			track(existing, byProperty, byUuid);
+		}
+
+		List<GlobalProperty> installed = new ArrayList<GlobalProperty>();
+
+		for (GlobalProperty gp : incoming) {
+			GlobalProperty existing = byProperty.get(gp.getProperty());
+			if (existing == null && gp.getUuid() != null) {
+				existing = byUuid.get(gp.getUuid());
+			}
+
+			GlobalProperty result;
+			if (existing == null) {
+				result = save(gp);
+			}
+			else if (isChangedBy(gp, existing)) {
+				byProperty.remove(existing.getProperty());
+				byUuid.remove(existing.getUuid());
+
+				overwrite(gp, existing);
+				result = save(existing);
+			}
+			else {
+				result = existing;
+			}
+
+			track(result, byProperty, byUuid);
+			installed.add(result);
+		}
+
+		return installed;
+	}
+
+	/**
+	 * Adds a property to the maps of existing properties
+	 * @param gp the property
+	 * @param byProperty the map by property name
+	 * @param byUuid the map by UUID
+	 */
+	private void track(GlobalProperty gp, Map<String, GlobalProperty> byProperty, Map<String, GlobalProperty> byUuid) {
+		byProperty.put(gp.getProperty(), gp);
+		if (gp.getUuid() != null) {
+			byUuid.put(gp.getUuid(), gp);
+		}
 	}
 
 	/**
@@ -97,6 +195,28 @@ public class GlobalPropertyDeployHandler extends AbstractObjectDeployHandler<Glo
 		}
 	}
 
+	/**
+	 * Determines whether overwriting an existing property with an incoming property would change it, ignoring the UUID.
+	 * A property matched by UUID has a different name so is always changed.
+	 * @param incoming the incoming property
+	 * @param existing the existing property
+	 * @return true if existing property would be changed
+	 */
+	protected boolean isChangedBy(GlobalProperty incoming, GlobalProperty existing) {
+		boolean datatypeMatches = OpenmrsUtil.nullSafeEquals(incoming.getDatatypeClassname(), existing.getDatatypeClassname());
+
+		// Same rule as overwrite for whether the existing value is kept
+		boolean preserveValue = !hasValue(incoming) && datatypeMatches;
+
+		return !datatypeMatches
+				|| !OpenmrsUtil.nullSafeEquals(incoming.getProperty(), existing.getProperty())
+				|| !OpenmrsUtil.nullSafeEquals(incoming.getDescription(), existing.getDescription())
+				|| !OpenmrsUtil.nullSafeEquals(incoming.getDatatypeConfig(), existing.getDatatypeConfig())
+				|| !OpenmrsUtil.nullSafeEquals(incoming.getPreferredHandlerClassname(), existing.getPreferredHandlerClassname())
+				|| !OpenmrsUtil.nullSafeEquals(incoming.getHandlerConfig(), existing.getHandlerConfig())
+				|| (!preserveValue && !OpenmrsUtil.nullSafeEquals(incoming.getValue(), existing.getValue()));
+	}
+
 	/**
 	 * Global properties don't really distinguish between blank and null values since the UI doesn't let a user
 	 * distinguish between the two. This method determines if a global property has a value.
@@ -18,6 +18,7 @@ import org.openmrs.Location;
 import org.openmrs.annotation.Handler;
 import org.openmrs.api.LocationService;
 import org.openmrs.module.distrotools.metadata.handler.AbstractObjectDeployHandler;
+import org.openmrs.module.distrotools.metadata.index.LocationIndex;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 
@@ -31,6 +32,9 @@ public class LocationDeployHandler extends AbstractObjectDeployHandler<Location>
 	@Qualifier("locationService")
 	private LocationService locationService;
 
+	@Autowired
+	private LocationIndex locationIndex;
+
 	/**
 	 * @see org.openmrs.module.distrotools.metadata.handler.ObjectDeployHandler#fetch(String)
 	 */
@@ -44,7 +48,11 @@ public class LocationDeployHandler extends AbstractObjectDeployHandler<Location>
 	 */
 	@Override
 	public Location save(Location obj) {
-		return locationService.saveLocation(obj);
+		Location saved = locationService.saveLocation(obj);
+
+		locationIndex.update(saved);
+
+		return saved;
 	}
 
 	/**
@@ -53,5 +61,7 @@ public class LocationDeployHandler extends AbstractObjectDeployHandler<Location>
 	@Override
 	public void uninstall(Location obj, String reason) {
 		locationService.retireLocation(obj, reason);
+
+		locationIndex.update(obj);
 	}
 }
\ No newline at end of file
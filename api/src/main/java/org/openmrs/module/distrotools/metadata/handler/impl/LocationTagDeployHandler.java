@@ -18,6 +18,7 @@ import org.openmrs.LocationTag;
 import org.openmrs.annotation.Handler;
 import org.openmrs.api.LocationService;
 import org.openmrs.module.distrotools.metadata.handler.AbstractObjectDeployHandler;
+import org.openmrs.module.distrotools.metadata.index.LocationIndex;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 
@@ -31,6 +32,9 @@ public class LocationTagDeployHandler extends AbstractObjectDeployHandler<Locati
 	@Qualifier("locationService")
 	private LocationService locationService;
 
+	@Autowired
+	private LocationIndex locationIndex;
+
 	/**
 	 * @see org.openmrs.module.distrotools.metadata.handler.ObjectDeployHandler#fetch(String)
 	 */
@@ -44,7 +48,11 @@ public class LocationTagDeployHandler extends AbstractObjectDeployHandler<Locati
 	 */
 	@Override
 	public LocationTag save(LocationTag obj) {
-		return locationService.saveLocationTag(obj);
+		LocationTag saved = locationService.saveLocationTag(obj);
+
+		locationIndex.invalidateOnCompletion();
+
+		return saved;
 	}
 
 	/**
@@ -53,5 +61,7 @@ public class LocationTagDeployHandler extends AbstractObjectDeployHandler<Locati
 	@Override
 	public void uninstall(LocationTag obj, String reason) {
 		locationService.purgeLocationTag(obj);
+
+		locationIndex.invalidateOnCompletion();
 	}
 }
\ No newline at end of file
@@ -21,6 +21,7 @@ import org.openmrs.annotation.Handler;
 import org.openmrs.api.ProgramWorkflowService;
 import org.openmrs.api.context.Context;
 import org.openmrs.module.distrotools.metadata.handler.AbstractObjectDeployHandler;
+import org.openmrs.module.distrotools.metadata.index.ProgramIndex;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 
@@ -36,6 +37,9 @@ public class ProgramDeployHandler extends AbstractObjectDeployHandler<Program> {
 	@Qualifier("programWorkflowService")
 	private ProgramWorkflowService programService;
 
+	@Autowired
+	private ProgramIndex programIndex;
+
 	/**
 	 * @see org.openmrs.module.distrotools.metadata.handler.ObjectDeployHandler#fetch(String)
 	 */
@@ -49,7 +53,11 @@ public class ProgramDeployHandler extends AbstractObjectDeployHandler<Program> {
 	 */
 	@Override
 	public Program save(Program obj) {
-		return programService.saveProgram(obj);
+		Program saved = programService.saveProgram(obj);
+
+		programIndex.invalidateOnCompletion();
+
+		return saved;
 	}
 
 	/**
@@ -86,5 +94,7 @@ public class ProgramDeployHandler extends AbstractObjectDeployHandler<Program> {
 		}
 
 		programService.saveProgram(obj);
+
+		programIndex.invalidateOnCompletion();
 	}
 }
\ No newline at end of file
@@ -14,6 +14,7 @@
 
 package org.openmrs.module.distrotools.metadata.handler.impl;
 
+import org.openmrs.Privilege;
 import org.openmrs.Role;
 import org.openmrs.annotation.Handler;
 import org.openmrs.api.UserService;
@@ -23,7 +24,10 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
 
 /**
  * Deployment handler for roles
@@ -81,7 +85,40 @@ public class RoleDeployHandler extends AbstractObjectDeployHandler<Role> {
 	 */
 	@Override
 	public void overwrite(Role incoming, Role existing) {
-		// Do per-field copy of incoming to existing, excluding UUID
-		ObjectUtils.overwrite(incoming, existing, new HashSet<String>(Arrays.asList("childRoles", "uuid")));
+		// Do per-field copy of incoming to existing, excluding UUID and the collections which are merged below
+		ObjectUtils.overwrite(incoming, existing, new HashSet<String>(Arrays.asList("childRoles", "uuid", "privileges", "inheritedRoles")));
+
+		// Only add and remove the privileges and inherited roles which have changed
+		Map<String, Privilege> incomingPrivileges = new HashMap<String, Privilege>();
+		if (incoming.getPrivileges() != null) {
+			for (Privilege privilege : incoming.getPrivileges()) {
+				incomingPrivileges.put(privilege.getPrivilege(), privilege);
+			}
+		}
+		if (existing.getPrivileges() == null) {
+			existing.setPrivileges(new HashSet<Privilege>());
+		}
+		for (Iterator<Privilege> i = existing.getPrivileges().iterator(); i.hasNext(); ) {
+			if (incomingPrivileges.remove(i.next().getPrivilege()) == null) {
+				i.remove();
+			}
+		}
+		existing.getPrivileges().addAll(incomingPrivileges.values());
+
+		Map<String, Role> incomingInherited = new HashMap<String, Role>();
+		if (incoming.getInheritedRoles() != null) {
+			for (Role role : incoming.getInheritedRoles()) {
+				incomingInherited.put(role.getRole(), role);
+			}
+		}
+		if (existing.getInheritedRoles() == null) {
+			existing.setInheritedRoles(new HashSet<Role>());
+		}
+		for (Iterator<Role> i = existing.getInheritedRoles().iterator(); i.hasNext(); ) {
+			if (incomingInherited.remove(i.next().getRole()) == null) {
+				i.remove();
+			}
+		}
+		existing.getInheritedRoles().addAll(incomingInherited.values());
 	}
 }
\ No newline at end of file
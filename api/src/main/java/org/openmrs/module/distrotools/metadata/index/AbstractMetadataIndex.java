@@ -0,0 +1,176 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+package org.openmrs.module.distrotools.metadata.index;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+
+/**
+ * Abstract base class for in-memory indexes of metadata. An index is built lazily as an immutable snapshot on first
+ * use, and is discarded when invalidated so that the next use rebuilds it.
+ * @param <S> the snapshot class
+ */
+public abstract class AbstractMetadataIndex<S> {
+
+	protected final Log log = LogFactory.getLog(getClass());
+
+	private static final Integer AMBIGUOUS = -1;
+
+	private volatile S snapshot;
+
+	private volatile long version = 0;
+
+	/**
+	 * Gets the current snapshot, building it if necessary
+	 * @return the snapshot
+	 */
+	protected S getSnapshot() {
+		S current = snapshot;
+		if (current != null) {
+			return current;
+		}
+
+		synchronized (this) {
+			if (snapshot != null) {
+				return snapshot;
+			}
+
+			long buildVersion = version;
+			long start = System.currentTimeMillis();
+
+			current = buildSnapshot();
+
+			// Only keep the snapshot if nothing invalidated the index while we were building it
+			if (buildVersion == version) {
+				snapshot = current;
+			}
+
+			log.debug("Built " + getClass().getSimpleName() + " in " + (System.currentTimeMillis() - start) + "ms");
+
+			return current;
+		}
+	}
+
+	/**
+	 * Replaces the current snapshot with an updated copy, unless the index has been invalidated or updated since the
+	 * expected snapshot was obtained
+	 * @param expected the snapshot which the replacement was derived from
+	 * @param replacement the replacement snapshot
+	 * @return true if snapshot was replaced
+	 */
+	protected synchronized boolean replaceSnapshot(S expected, S replacement) {
+		if (snapshot != expected) {
+			return false;
+		}
+		snapshot = replacement;
+		return true;
+	}
+
+	/**
+	 * Invalidates the index so that it will be rebuilt on next use
+	 */
+	public void invalidate() {
+		version++;
+		snapshot = null;
+	}
+
+	/**
+	 * Invalidates the index now, and again when the current transaction completes if there is one. Changes made in a
+	 * transaction aren't visible to other threads until it commits, so another thread could otherwise rebuild the
+	 * index from the old data in the meantime and keep it indefinitely.
+	 */
+	public void invalidateOnCompletion() {
+		invalidate();
+
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new InvalidationSynchronization());
+		}
+	}
+
+	/**
+	 * Gets whether the index currently holds a snapshot
+	 * @return true if built
+	 */
+	public boolean isBuilt() {
+		return snapshot != null;
+	}
+
+	/**
+	 * Builds a new snapshot from the database
+	 * @return the snapshot
+	 */
+	protected abstract S buildSnapshot();
+
+	/**
+	 * Normalizes a lookup key. Lookups are case-insensitive.
+	 * @param key the key
+	 * @return the normalized key
+	 */
+	protected static String normalizeKey(String key) {
+		return key != null ? key.toLowerCase() : null;
+	}
+
+	/**
+	 * Adds a lookup key for an object. A key which matches more than one object is marked as ambiguous rather than
+	 * resolved by precedence, as the service based lookups resolve such keys in ways (e.g. last match wins) which the
+	 * index doesn't reproduce. Lookups by ambiguous keys find nothing so that callers fall back to those lookups.
+	 * @param keys the key map
+	 * @param key the key (may be null)
+	 * @param id the object id
+	 */
+	protected static void putKey(Map<String, Integer> keys, String key, Integer id) {
+		String normalized = normalizeKey(key);
+		if (normalized == null) {
+			return;
+		}
+
+		Integer existing = keys.get(normalized);
+		if (existing == null) {
+			keys.put(normalized, id);
+		}
+		else if (!existing.equals(id)) {
+			keys.put(normalized, AMBIGUOUS);
+		}
+	}
+
+	/**
+	 * Gets the object id for a lookup key
+	 * @param keys the key map
+	 * @param key the key
+	 * @return the object id or null if key is unknown or ambiguous
+	 */
+	protected static Integer getKey(Map<String, Integer> keys, String key) {
+		Integer id = keys.get(normalizeKey(key));
+		return AMBIGUOUS.equals(id) ? null : id;
+	}
+
+	/**
+	 * Transaction synchronization which invalidates the index once a change is committed or rolled back
+	 */
+	protected class InvalidationSynchronization extends TransactionSynchronizationAdapter {
+
+		/**
+		 * @see TransactionSynchronizationAdapter#afterCompletion(int)
+		 */
+		@Override
+		public void afterCompletion(int status) {
+			invalidate();
+		}
+	}
+}
@@ -0,0 +1,42 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+package org.openmrs.module.distrotools.metadata.index;
+
+import org.springframework.aop.AfterReturningAdvice;
+
+import java.lang.reflect.Method;
+
+/**
+ * AOP advice for the concept service which invalidates the concept set index whenever a concept is saved or purged,
+ * as either can change set memberships. The index is invalidated again when the transaction completes, so that it
+ * isn't rebuilt from data which was about to change.
+ */
+public class ConceptServiceAdvice implements AfterReturningAdvice {
+
+	/**
+	 * @see AfterReturningAdvice#afterReturning(Object, java.lang.reflect.Method, Object[], Object)
+	 */
+	@Override
+	public void afterReturning(Object returnValue, Method method, Object[] args, Object target) throws Throwable {
+		String name = method.getName();
+
+		if (name.equals("saveConcept") || name.equals("purgeConcept")) {
+			ConceptSetIndex index = ConceptSetIndex.getInstance();
+			if (index != null) {
+				index.invalidateOnCompletion();
+			}
+		}
+	}
+}
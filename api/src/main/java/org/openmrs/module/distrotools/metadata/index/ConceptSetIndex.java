@@ -0,0 +1,231 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+package org.openmrs.module.distrotools.metadata.index;
+
+import org.openmrs.Concept;
+import org.openmrs.module.distrotools.api.db.DistroToolsDAO;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Index of concept set memberships. The direct membership graph of all sets is loaded with one query, and the direct
+ * or transitive (i.e. including members of nested sets) membership of each set is then flattened on demand into an
+ * array of concept ids and a membership bitmap, which are cached until the index is invalidated.
+ */
+@Component
+public class ConceptSetIndex extends AbstractMetadataIndex<ConceptSetIndex.Snapshot> implements InitializingBean {
+
+	private static ConceptSetIndex instance;
+
+	@Autowired
+	private DistroToolsDAO dao;
+
+	/**
+	 * Gets the instance of this component in the current application context
+	 * @return the instance
+	 */
+	public static ConceptSetIndex getInstance() {
+		return instance;
+	}
+
+	/**
+	 * @see InitializingBean#afterPropertiesSet()
+	 */
+	@Override
+	public void afterPropertiesSet() {
+		instance = this;
+	}
+
+	/**
+	 * Gets the ids of the members of a set. The returned array should not be modified.
+	 * @param setConceptId the set concept id
+	 * @param transitive whether to include members of nested sets
+	 * @return the member concept ids (empty if concept isn't a set)
+	 */
+	public int[] getMemberIds(int setConceptId, boolean transitive) {
+		return getSnapshot().getMembership(setConceptId, transitive).memberIds;
+	}
+
+	/**
+	 * Gets the members of a set
+	 * @param setConceptId the set concept id
+	 * @param transitive whether to include members of nested sets
+	 * @return the member concepts (these may be uninitialized proxies)
+	 */
+	public List<Concept> getMembers(int setConceptId, boolean transitive) {
+		int[] memberIds = getMemberIds(setConceptId, transitive);
+		List<Concept> members = new ArrayList<Concept>(memberIds.length);
+		for (int memberId : memberIds) {
+			members.add(dao.load(Concept.class, memberId));
+		}
+		return members;
+	}
+
+	/**
+	 * Checks whether a concept is a member of a set
+	 * @param setConceptId the set concept id
+	 * @param conceptId the concept id
+	 * @param transitive whether to include members of nested sets
+	 * @return true if concept is a member
+	 */
+	public boolean isMember(int setConceptId, int conceptId, boolean transitive) {
+		return getSnapshot().getMembership(setConceptId, transitive).bitmap.get(conceptId);
+	}
+
+	/**
+	 * @see AbstractMetadataIndex#buildSnapshot()
+	 */
+	@Override
+	protected Snapshot buildSnapshot() {
+		Map<Integer, List<Integer>> grouped = new HashMap<Integer, List<Integer>>();
+
+		for (Object[] row : dao.getConceptSetMemberships()) {
+			Integer setId = (Integer) row[0];
+			List<Integer> members = grouped.get(setId);
+			if (members == null) {
+				members = new ArrayList<Integer>();
+				grouped.put(setId, members);
+			}
+			members.add((Integer) row[1]);
+		}
+
+		Map<Integer, int[]> directMembers = new HashMap<Integer, int[]>(grouped.size() * 2);
+		for (Map.Entry<Integer, List<Integer>> entry : grouped.entrySet()) {
+			List<Integer> members = entry.getValue();
+			int[] ids = new int[members.size()];
+			for (int m = 0; m < ids.length; ++m) {
+				ids[m] = members.get(m);
+			}
+			directMembers.put(entry.getKey(), ids);
+		}
+
+		return new Snapshot(directMembers);
+	}
+
+	/**
+	 * Flattened membership of a single set
+	 */
+	protected static class Membership {
+
+		private final int[] memberIds;
+
+		private final BitSet bitmap;
+
+		Membership(int[] memberIds, BitSet bitmap) {
+			this.memberIds = memberIds;
+			this.bitmap = bitmap;
+		}
+	}
+
+	/**
+	 * Snapshot of the index. The direct membership graph is immutable and flattened memberships are cached as they
+	 * are requested.
+	 */
+	protected static class Snapshot {
+
+		private static final Membership EMPTY = new Membership(new int[0], new BitSet());
+
+		private final Map<Integer, int[]> directMembers;
+
+		private final ConcurrentMap<Integer, Membership> direct = new ConcurrentHashMap<Integer, Membership>();
+
+		private final ConcurrentMap<Integer, Membership> transitive = new ConcurrentHashMap<Integer, Membership>();
+
+		Snapshot(Map<Integer, int[]> directMembers) {
+			this.directMembers = directMembers;
+		}
+
+		Membership getMembership(int setConceptId, boolean includeNested) {
+			ConcurrentMap<Integer, Membership> cache = includeNested ? transitive : direct;
+			Membership membership = cache.get(setConceptId);
+			if (membership == null) {
+				membership = flatten(setConceptId, includeNested);
+
+				// Another thread may have got here first, but the result will be the same
+				cache.put(setConceptId, membership);
+			}
+			return membership;
+		}
+
+		/**
+		 * Flattens the membership of a set in depth-first order without duplicates
+		 * @param setConceptId the set concept id
+		 * @param includeNested whether to include members of nested sets
+		 * @return the membership
+		 */
+		Membership flatten(int setConceptId, boolean includeNested) {
+			int[] members = directMembers.get(setConceptId);
+			if (members == null) {
+				return EMPTY;
+			}
+
+			BitSet bitmap = new BitSet();
+			int[] ids = new int[members.length];
+			int count = 0;
+
+			// Explicit stack so deeply nested sets can't overflow the call stack. Visited bits also guard against cycles.
+			BitSet visitedSets = new BitSet();
+			visitedSets.set(setConceptId);
+			List<int[]> stack = new ArrayList<int[]>();
+			List<Integer> positions = new ArrayList<Integer>();
+			stack.add(members);
+			positions.add(0);
+
+			while (!stack.isEmpty()) {
+				int top = stack.size() - 1;
+				int[] current = stack.get(top);
+				int position = positions.get(top);
+
+				if (position >= current.length) {
+					stack.remove(top);
+					positions.remove(top);
+					continue;
+				}
+
+				positions.set(top, position + 1);
+				int memberId = current[position];
+
+				if (!bitmap.get(memberId)) {
+					bitmap.set(memberId);
+					if (count == ids.length) {
+						ids = Arrays.copyOf(ids, ids.length * 2);
+					}
+					ids[count++] = memberId;
+				}
+
+				if (includeNested && !visitedSets.get(memberId)) {
+					int[] nested = directMembers.get(memberId);
+					if (nested != null) {
+						visitedSets.set(memberId);
+						stack.add(nested);
+						positions.add(0);
+					}
+				}
+			}
+
+			return new Membership(count == ids.length ? ids : Arrays.copyOf(ids, count), bitmap);
+		}
+	}
+}
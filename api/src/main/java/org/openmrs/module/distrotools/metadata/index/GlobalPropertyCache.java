@@ -0,0 +1,213 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+package org.openmrs.module.distrotools.metadata.index;
+
+import org.openmrs.GlobalProperty;
+import org.openmrs.api.AdministrationService;
+import org.openmrs.api.GlobalPropertyListener;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Read-through cache of global property values by property name. Properties which don't exist are also cached. The
+ * cache registers itself as a global property listener so that changes made through the administration service evict
+ * the changed property.
+ *
+ * Listeners are notified before the change is committed, so a changed property is evicted again when the transaction
+ * completes. This discards any value cached in the meantime, i.e. the old value read by another transaction, or the
+ * new value if the change is rolled back.
+ */
+@Component
+public class GlobalPropertyCache implements GlobalPropertyListener, InitializingBean, DisposableBean {
+
+	private static GlobalPropertyCache instance;
+
+	/**
+	 * Marker for cached properties which don't exist
+	 */
+	private static final String NO_VALUE = new String();
+
+	@Autowired
+	@Qualifier("adminService")
+	private AdministrationService adminService;
+
+	private final ConcurrentMap<String, String> values = new ConcurrentHashMap<String, String>();
+
+	private final AtomicLong generation = new AtomicLong();
+
+	private final AtomicLong hits = new AtomicLong();
+
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * Gets the instance of this component in the current application context
+	 * @return the instance
+	 */
+	public static GlobalPropertyCache getInstance() {
+		return instance;
+	}
+
+	/**
+	 * @see InitializingBean#afterPropertiesSet()
+	 */
+	@Override
+	public void afterPropertiesSet() {
+		adminService.addGlobalPropertyListener(this);
+
+		instance = this;
+	}
+
+	/**
+	 * @see DisposableBean#destroy()
+	 */
+	@Override
+	public void destroy() {
+		adminService.removeGlobalPropertyListener(this);
+
+		if (instance == this) {
+			instance = null;
+		}
+	}
+
+	/**
+	 * Gets the value of a global property
+	 * @param property the property name
+	 * @return the value or null if property doesn't exist
+	 */
+	public String getValue(String property) {
+		String value = values.get(property);
+		if (value != null) {
+			hits.incrementAndGet();
+			return value != NO_VALUE ? value : null;
+		}
+
+		misses.incrementAndGet();
+
+		long loadGeneration = generation.get();
+		value = adminService.getGlobalProperty(property);
+
+		// Don't cache the loaded value if the cache was invalidated while we were loading it, as it could be stale
+		if (loadGeneration == generation.get()) {
+			values.put(property, value != null ? value : NO_VALUE);
+		}
+		return value;
+	}
+
+	/**
+	 * Evicts a single property from the cache
+	 * @param property the property name
+	 */
+	public void invalidate(String property) {
+		generation.incrementAndGet();
+		values.remove(property);
+	}
+
+	/**
+	 * Evicts all properties from the cache
+	 */
+	public void invalidateAll() {
+		generation.incrementAndGet();
+		values.clear();
+	}
+
+	/**
+	 * Gets the number of cache hits since the cache was created or statistics were reset
+	 * @return the number of hits
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * Gets the number of cache misses since the cache was created or statistics were reset
+	 * @return the number of misses
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * Resets the hit and miss counters
+	 */
+	public void resetStatistics() {
+		hits.set(0);
+		misses.set(0);
+	}
+
+	/**
+	 * @see GlobalPropertyListener#supportsPropertyName(String)
+	 */
+	@Override
+	public boolean supportsPropertyName(String propertyName) {
+		return true;
+	}
+
+	/**
+	 * @see GlobalPropertyListener#globalPropertyChanged(org.openmrs.GlobalProperty)
+	 */
+	@Override
+	public void globalPropertyChanged(GlobalProperty newValue) {
+		invalidateOnCompletion(newValue.getProperty());
+	}
+
+	/**
+	 * @see GlobalPropertyListener#globalPropertyDeleted(String)
+	 */
+	@Override
+	public void globalPropertyDeleted(String propertyName) {
+		invalidateOnCompletion(propertyName);
+	}
+
+	/**
+	 * Evicts a property now, and again when the current transaction completes if there is one
+	 * @param property the property name
+	 */
+	protected void invalidateOnCompletion(String property) {
+		invalidate(property);
+
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new EvictionSynchronization(property));
+		}
+	}
+
+	/**
+	 * Transaction synchronization which evicts a changed property once the change is committed or rolled back
+	 */
+	protected class EvictionSynchronization extends TransactionSynchronizationAdapter {
+
+		private final String property;
+
+		protected EvictionSynchronization(String property) {
+			this.property = property;
+		}
+
+		/**
+		 * @see TransactionSynchronizationAdapter#afterCompletion(int)
+		 */
+		@Override
+		public void afterCompletion(int status) {
+			invalidate(property);
+		}
+	}
+}
@@ -0,0 +1,563 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+package org.openmrs.module.distrotools.metadata.index;
+
+import org.openmrs.Location;
+import org.openmrs.LocationTag;
+import org.openmrs.api.LocationService;
+import org.openmrs.module.distrotools.api.db.DistroToolsDAO;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index of the location hierarchy and of location tag assignments. The hierarchy is held as arrays indexed by location
+ * id along with a pre-order traversal of the location tree, so that all descendants of a location are a contiguous
+ * range of that traversal. Tag assignments are held as a bitmap per tag.
+ *
+ * Changes to individual locations can be applied without reloading the index from the database, using
+ * {@link #update(Location)}. Updates are queued once the transaction which made them commits, and queued updates are
+ * applied in one pass the next time the index is used, so a sync of many locations only recomputes the traversal once.
+ * Changes made through the location service are applied by {@link LocationServiceAdvice}.
+ */
+@Component
+public class LocationIndex extends AbstractMetadataIndex<LocationIndex.Snapshot> implements InitializingBean {
+
+	private static LocationIndex instance;
+
+	@Autowired
+	private DistroToolsDAO dao;
+
+	@Autowired
+	@Qualifier("locationService")
+	private LocationService locationService;
+
+	private final List<LocationState> pending = new ArrayList<LocationState>();
+
+	/**
+	 * Gets the instance of this component in the current application context
+	 * @return the instance
+	 */
+	public static LocationIndex getInstance() {
+		return instance;
+	}
+
+	/**
+	 * @see InitializingBean#afterPropertiesSet()
+	 */
+	@Override
+	public void afterPropertiesSet() {
+		instance = this;
+	}
+
+	/**
+	 * Gets the id of a location tag
+	 * @param tagLookup the tag UUID, name or id
+	 * @return the tag id or null if not found
+	 */
+	public Integer getTagId(String tagLookup) {
+		return getKey(current().tagKeys, tagLookup);
+	}
+
+	/**
+	 * Checks whether the index contains a location tag
+	 * @param tagId the tag id
+	 * @return true if tag is indexed
+	 */
+	public boolean containsTag(Integer tagId) {
+		return current().tagIds.contains(tagId);
+	}
+
+	/**
+	 * Gets the ids of all non-retired locations with the given tag
+	 * @param tagId the tag id
+	 * @return the location ids
+	 */
+	public int[] getLocationIdsByTag(int tagId) {
+		Snapshot snapshot = current();
+		BitSet members = snapshot.tagMembers.get(tagId);
+		if (members == null) {
+			return new int[0];
+		}
+
+		BitSet active = (BitSet) members.clone();
+		active.andNot(snapshot.retired);
+		return toArray(active);
+	}
+
+	/**
+	 * Gets all non-retired locations with the given tag
+	 * @param tagLookup the tag UUID, name or id
+	 * @return the locations or null if tag not found
+	 */
+	public List<Location> getLocationsByTag(String tagLookup) {
+		Integer tagId = getTagId(tagLookup);
+		return tagId != null ? load(getLocationIdsByTag(tagId)) : null;
+	}
+
+	/**
+	 * Gets the ids of all non-retired descendants of a location, in pre-order
+	 * @param locationId the location id
+	 * @return the descendant location ids
+	 */
+	public int[] getDescendantIds(int locationId) {
+		return current().getDescendantIds(locationId, null);
+	}
+
+	/**
+	 * Gets the ids of all non-retired descendants of a location that have the given tag, in pre-order
+	 * @param locationId the location id
+	 * @param tagId the tag id
+	 * @return the descendant location ids
+	 */
+	public int[] getDescendantIdsByTag(int locationId, int tagId) {
+		Snapshot snapshot = current();
+		BitSet members = snapshot.tagMembers.get(tagId);
+		return members != null ? snapshot.getDescendantIds(locationId, members) : new int[0];
+	}
+
+	/**
+	 * Gets all non-retired descendants of a location
+	 * @param locationId the location id
+	 * @return the descendant locations
+	 */
+	public List<Location> getDescendants(int locationId) {
+		return load(getDescendantIds(locationId));
+	}
+
+	/**
+	 * Gets all non-retired descendants of a location that have the given tag
+	 * @param locationId the location id
+	 * @param tagId the tag id
+	 * @return the descendant locations
+	 */
+	public List<Location> getDescendantsByTag(int locationId, int tagId) {
+		return load(getDescendantIdsByTag(locationId, tagId));
+	}
+
+	/**
+	 * Checks whether a location is a descendant of another
+	 * @param locationId the location id
+	 * @param ancestorId the possible ancestor location id
+	 * @return true if location is a descendant
+	 */
+	public boolean isDescendant(int locationId, int ancestorId) {
+		return current().isDescendant(locationId, ancestorId);
+	}
+
+	/**
+	 * Updates the index for a location which has been created or modified. If there is a transaction then the update
+	 * is only queued once it commits, and the index is invalidated if it rolls back.
+	 * @param location the location
+	 */
+	public void update(Location location) {
+		if (location.getLocationId() == null) {
+			return;
+		}
+
+		LocationState state = new LocationState(location);
+
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new UpdateSynchronization(state));
+		}
+		else {
+			queue(state);
+		}
+	}
+
+	/**
+	 * Queues a committed update to the index. If the index isn't built then it may be being rebuilt from data which
+	 * doesn't include the update, so it's invalidated instead.
+	 * @param state the location state
+	 */
+	protected void queue(LocationState state) {
+		if (!isBuilt()) {
+			invalidate();
+			return;
+		}
+
+		synchronized (pending) {
+			pending.add(state);
+		}
+	}
+
+	/**
+	 * @see AbstractMetadataIndex#invalidate()
+	 */
+	@Override
+	public void invalidate() {
+		synchronized (pending) {
+			pending.clear();
+		}
+		super.invalidate();
+	}
+
+	/**
+	 * Gets the current snapshot with any queued updates applied
+	 * @return the snapshot
+	 */
+	protected Snapshot current() {
+		Snapshot snapshot = getSnapshot();
+
+		List<LocationState> updates;
+		synchronized (pending) {
+			if (pending.isEmpty()) {
+				return snapshot;
+			}
+			updates = new ArrayList<LocationState>(pending);
+			pending.clear();
+		}
+
+		Snapshot updated = snapshot.apply(updates);
+		if (!replaceSnapshot(snapshot, updated)) {
+			// Another thread replaced or invalidated the snapshot, so we can't be sure these updates are included
+			invalidate();
+		}
+		return updated;
+	}
+
+	/**
+	 * @see AbstractMetadataIndex#buildSnapshot()
+	 */
+	@Override
+	protected Snapshot buildSnapshot() {
+		List<Object[]> hierarchy = dao.getLocationHierarchy();
+
+		int size = 1;
+		for (Object[] row : hierarchy) {
+			size = Math.max(size, (Integer) row[0] + 1);
+		}
+
+		int[] parents = new int[size];
+		BitSet present = new BitSet(size);
+		BitSet retired = new BitSet(size);
+
+		for (Object[] row : hierarchy) {
+			int locationId = (Integer) row[0];
+			present.set(locationId);
+			parents[locationId] = row[1] != null ? (Integer) row[1] : 0;
+			if (Boolean.TRUE.equals(row[2])) {
+				retired.set(locationId);
+			}
+		}
+
+		Map<Integer, BitSet> tagMembers = new HashMap<Integer, BitSet>();
+		for (Object[] row : dao.getLocationTagMemberships()) {
+			Integer tagId = (Integer) row[1];
+			BitSet members = tagMembers.get(tagId);
+			if (members == null) {
+				members = new BitSet(size);
+				tagMembers.put(tagId, members);
+			}
+			members.set((Integer) row[0]);
+		}
+
+		Set<Integer> tagIds = new HashSet<Integer>();
+		Map<String, Integer> tagKeys = new HashMap<String, Integer>();
+		for (LocationTag tag : locationService.getAllLocationTags(true)) {
+			tagIds.add(tag.getLocationTagId());
+			putKey(tagKeys, tag.getUuid(), tag.getLocationTagId());
+			putKey(tagKeys, tag.getName(), tag.getLocationTagId());
+			putKey(tagKeys, String.valueOf(tag.getLocationTagId()), tag.getLocationTagId());
+		}
+
+		return new Snapshot(parents, present, retired, tagMembers, tagIds, tagKeys);
+	}
+
+	/**
+	 * Loads locations by id
+	 * @param locationIds the location ids
+	 * @return the locations (these may be uninitialized proxies)
+	 */
+	protected List<Location> load(int[] locationIds) {
+		List<Location> locations = new ArrayList<Location>(locationIds.length);
+		for (int locationId : locationIds) {
+			locations.add(dao.load(Location.class, locationId));
+		}
+		return locations;
+	}
+
+	/**
+	 * Converts the set bits of a bitmap to an array
+	 * @param bitmap the bitmap
+	 * @return the array of set bit indexes
+	 */
+	protected static int[] toArray(BitSet bitmap) {
+		int[] ids = new int[bitmap.cardinality()];
+		int i = 0;
+		for (int id = bitmap.nextSetBit(0); id >= 0; id = bitmap.nextSetBit(id + 1)) {
+			ids[i++] = id;
+		}
+		return ids;
+	}
+
+	/**
+	 * Transaction synchronization which queues an update once it's committed
+	 */
+	protected class UpdateSynchronization extends TransactionSynchronizationAdapter {
+
+		private LocationState state;
+
+		protected UpdateSynchronization(LocationState state) {
+			this.state = state;
+		}
+
+		/**
+		 * @see TransactionSynchronizationAdapter#afterCompletion(int)
+		 */
+		@Override
+		public void afterCompletion(int status) {
+			if (state == null) {
+				return;
+			}
+
+			if (status == TransactionSynchronization.STATUS_COMMITTED) {
+				queue(state);
+			}
+			else {
+				// The index may have been built in this transaction from changes which have now been rolled back
+				invalidate();
+			}
+			state = null;
+		}
+	}
+
+	/**
+	 * The indexed state of a single location, captured when it is updated
+	 */
+	protected static class LocationState {
+
+		private final int locationId;
+
+		private final int parentId;
+
+		private final boolean retired;
+
+		private final int[] tagIds;
+
+		LocationState(Location location) {
+			this.locationId = location.getLocationId();
+			this.parentId = location.getParentLocation() != null ? location.getParentLocation().getLocationId() : 0;
+			this.retired = location.isRetired();
+
+			List<Integer> ids = new ArrayList<Integer>();
+			if (location.getTags() != null) {
+				for (LocationTag tag : location.getTags()) {
+					if (tag.getLocationTagId() != null) {
+						ids.add(tag.getLocationTagId());
+					}
+				}
+			}
+			this.tagIds = new int[ids.size()];
+			for (int t = 0; t < tagIds.length; ++t) {
+				tagIds[t] = ids.get(t);
+			}
+		}
+	}
+
+	/**
+	 * Immutable snapshot of the index
+	 */
+	protected static class Snapshot {
+
+		private final int[] parents;
+
+		private final BitSet present;
+
+		private final BitSet retired;
+
+		private final Map<Integer, BitSet> tagMembers;
+
+		private final Set<Integer> tagIds;
+
+		private final Map<String, Integer> tagKeys;
+
+		private final int[] preorder;
+
+		private final int[] start;
+
+		private final int[] end;
+
+		Snapshot(int[] parents, BitSet present, BitSet retired, Map<Integer, BitSet> tagMembers, Set<Integer> tagIds, Map<String, Integer> tagKeys) {
+			this.parents = parents;
+			this.present = present;
+			this.retired = retired;
+			this.tagMembers = tagMembers;
+			this.tagIds = tagIds;
+			this.tagKeys = tagKeys;
+
+			int size = parents.length;
+			this.preorder = new int[present.cardinality()];
+			this.start = new int[size];
+			this.end = new int[size];
+
+			traverse();
+		}
+
+		/**
+		 * Creates a copy of this snapshot with the given location updates applied
+		 * @param updates the location updates
+		 * @return the new snapshot
+		 */
+		Snapshot apply(List<LocationState> updates) {
+			int size = parents.length;
+			for (LocationState update : updates) {
+				size = Math.max(size, update.locationId + 1);
+			}
+
+			int[] newParents = Arrays.copyOf(parents, size);
+			BitSet newPresent = (BitSet) present.clone();
+			BitSet newRetired = (BitSet) retired.clone();
+			Map<Integer, BitSet> newTagMembers = new HashMap<Integer, BitSet>();
+			for (Map.Entry<Integer, BitSet> entry : tagMembers.entrySet()) {
+				newTagMembers.put(entry.getKey(), (BitSet) entry.getValue().clone());
+			}
+
+			for (LocationState update : updates) {
+				newPresent.set(update.locationId);
+				newParents[update.locationId] = update.parentId;
+				newRetired.set(update.locationId, update.retired);
+
+				for (BitSet members : newTagMembers.values()) {
+					members.clear(update.locationId);
+				}
+				for (int tagId : update.tagIds) {
+					BitSet members = newTagMembers.get(tagId);
+					if (members == null) {
+						members = new BitSet(size);
+						newTagMembers.put(tagId, members);
+					}
+					members.set(update.locationId);
+				}
+			}
+
+			return new Snapshot(newParents, newPresent, newRetired, newTagMembers, tagIds, tagKeys);
+		}
+
+		int[] getDescendantIds(int locationId, BitSet filter) {
+			if (locationId < 0 || locationId >= parents.length || !present.get(locationId)) {
+				return new int[0];
+			}
+
+			int[] ids = new int[end[locationId] - start[locationId] - 1];
+			int count = 0;
+			for (int p = start[locationId] + 1; p < end[locationId]; ++p) {
+				int id = preorder[p];
+				if (!retired.get(id) && (filter == null || filter.get(id))) {
+					ids[count++] = id;
+				}
+			}
+			return count == ids.length ? ids : Arrays.copyOf(ids, count);
+		}
+
+		boolean isDescendant(int locationId, int ancestorId) {
+			if (locationId < 0 || locationId >= parents.length || !present.get(locationId)) {
+				return false;
+			}
+			if (ancestorId < 0 || ancestorId >= parents.length || !present.get(ancestorId)) {
+				return false;
+			}
+			return start[ancestorId] < start[locationId] && start[locationId] < end[ancestorId];
+		}
+
+		/**
+		 * Computes the pre-order traversal of the location tree, and the range of each location's subtree within it
+		 */
+		private void traverse() {
+			int size = parents.length;
+
+			// Group children by parent using counting sort
+			int[] offsets = new int[size + 1];
+			for (int id = present.nextSetBit(0); id >= 0; id = present.nextSetBit(id + 1)) {
+				if (hasParent(id)) {
+					offsets[parents[id] + 1]++;
+				}
+			}
+			for (int i = 0; i < size; ++i) {
+				offsets[i + 1] += offsets[i];
+			}
+			int[] children = new int[offsets[size]];
+			int[] fill = Arrays.copyOf(offsets, size);
+			for (int id = present.nextSetBit(0); id >= 0; id = present.nextSetBit(id + 1)) {
+				if (hasParent(id)) {
+					children[fill[parents[id]]++] = id;
+				}
+			}
+
+			// Iterative depth-first traversal from each root. Locations in a parent cycle have no root, so any that
+			// remain unvisited afterwards are treated as roots themselves.
+			BitSet visited = new BitSet(size);
+			int[] stackIds = new int[preorder.length];
+			int[] stackNext = new int[preorder.length];
+			int position = 0;
+
+			for (int pass = 0; pass < 2; ++pass) {
+				for (int root = present.nextSetBit(0); root >= 0; root = present.nextSetBit(root + 1)) {
+					if (visited.get(root) || (pass == 0 && hasParent(root))) {
+						continue;
+					}
+
+					int depth = 0;
+					visited.set(root);
+					start[root] = position;
+					preorder[position++] = root;
+					stackIds[depth] = root;
+					stackNext[depth] = offsets[root];
+					depth++;
+
+					while (depth > 0) {
+						int top = stackIds[depth - 1];
+						int next = stackNext[depth - 1];
+
+						if (next < offsets[top + 1]) {
+							stackNext[depth - 1]++;
+							int child = children[next];
+							if (!visited.get(child)) {
+								visited.set(child);
+								start[child] = position;
+								preorder[position++] = child;
+								stackIds[depth] = child;
+								stackNext[depth] = offsets[child];
+								depth++;
+							}
+						}
+						else {
+							end[top] = position;
+							depth--;
+						}
+					}
+				}
+			}
+		}
+
+		private boolean hasParent(int id) {
+			int parentId = parents[id];
+			return parentId > 0 && parentId != id && parentId < parents.length && present.get(parentId);
+		}
+	}
+}
@@ -0,0 +1,49 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+package org.openmrs.module.distrotools.metadata.index;
+
+import org.openmrs.Location;
+import org.springframework.aop.AfterReturningAdvice;
+
+import java.lang.reflect.Method;
+
+/**
+ * AOP advice for the location service which keeps the location index up to date when locations are changed other
+ * than by the deploy handlers. Saved, retired and unretired locations are applied as updates once committed, whereas
+ * purging a location or changing a location tag invalidates the index, again when the transaction completes.
+ */
+public class LocationServiceAdvice implements AfterReturningAdvice {
+
+	/**
+	 * @see AfterReturningAdvice#afterReturning(Object, java.lang.reflect.Method, Object[], Object)
+	 */
+	@Override
+	public void afterReturning(Object returnValue, Method method, Object[] args, Object target) throws Throwable {
+		LocationIndex index = LocationIndex.getInstance();
+		if (index == null) {
+			return;
+		}
+
+		String name = method.getName();
+
+		if (name.equals("saveLocation") || name.equals("retireLocation") || name.equals("unretireLocation")) {
+			Location location = returnValue instanceof Location ? (Location) returnValue : (Location) args[0];
+			index.update(location);
+		}
+		else if (name.equals("purgeLocation") || name.equals("saveLocationTag") || name.equals("purgeLocationTag")) {
+			index.invalidateOnCompletion();
+		}
+	}
+}
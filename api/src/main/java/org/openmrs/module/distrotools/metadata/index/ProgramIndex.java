@@ -0,0 +1,248 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+package org.openmrs.module.distrotools.metadata.index;
+
+import org.openmrs.Concept;
+import org.openmrs.ConceptName;
+import org.openmrs.Program;
+import org.openmrs.ProgramWorkflow;
+import org.openmrs.ProgramWorkflowState;
+import org.openmrs.module.distrotools.api.db.DistroToolsDAO;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index of programs, workflows and states by all of the keys that can be used to look them up, i.e. the same keys as
+ * the service based lookups: UUID, name and id for programs, concept name, UUID and id for workflows, and concept
+ * name, concept UUID, UUID, id and concept id for states. The index is built from fetch-joined queries, after which
+ * lookups don't touch the database. Keys are case-insensitive, and keys which match more than one object aren't
+ * resolved by the index at all. Changes made through the program workflow service invalidate the index (see
+ * {@link ProgramWorkflowServiceAdvice}).
+ */
+@Component
+public class ProgramIndex extends AbstractMetadataIndex<ProgramIndex.Snapshot> implements InitializingBean {
+
+	private static ProgramIndex instance;
+
+	@Autowired
+	private DistroToolsDAO dao;
+
+	/**
+	 * Gets the instance of this component in the current application context
+	 * @return the instance
+	 */
+	public static ProgramIndex getInstance() {
+		return instance;
+	}
+
+	/**
+	 * @see InitializingBean#afterPropertiesSet()
+	 */
+	@Override
+	public void afterPropertiesSet() {
+		instance = this;
+	}
+
+	/**
+	 * Gets a program
+	 * @param programLookup the program lookup key
+	 * @return the program or null if not found
+	 */
+	public Program getProgram(String programLookup) {
+		Integer programId = getSnapshot().getProgramId(programLookup);
+		return programId != null ? dao.load(Program.class, programId) : null;
+	}
+
+	/**
+	 * Gets a program workflow
+	 * @param programLookup the program lookup key
+	 * @param workflowLookup the workflow lookup key
+	 * @return the workflow or null if not found
+	 */
+	public ProgramWorkflow getWorkflow(String programLookup, String workflowLookup) {
+		Integer workflowId = getSnapshot().getWorkflowId(programLookup, workflowLookup);
+		return workflowId != null ? dao.load(ProgramWorkflow.class, workflowId) : null;
+	}
+
+	/**
+	 * Gets a program workflow state
+	 * @param programLookup the program lookup key
+	 * @param workflowLookup the workflow lookup key
+	 * @param stateLookup the state lookup key
+	 * @return the state or null if not found
+	 */
+	public ProgramWorkflowState getState(String programLookup, String workflowLookup, String stateLookup) {
+		Integer stateId = getSnapshot().getStateId(programLookup, workflowLookup, stateLookup);
+		return stateId != null ? dao.load(ProgramWorkflowState.class, stateId) : null;
+	}
+
+	/**
+	 * Checks whether the index contains a program, i.e. whether it was indexed with all of its keys
+	 * @param programId the program id
+	 * @return true if program is indexed
+	 */
+	public boolean containsProgram(Integer programId) {
+		return getSnapshot().programIds.contains(programId);
+	}
+
+	/**
+	 * Checks whether the index contains a program workflow
+	 * @param workflowId the workflow id
+	 * @return true if workflow is indexed
+	 */
+	public boolean containsWorkflow(Integer workflowId) {
+		return getSnapshot().workflowIds.contains(workflowId);
+	}
+
+	/**
+	 * Checks whether the index contains a program workflow state
+	 * @param stateId the state id
+	 * @return true if state is indexed
+	 */
+	public boolean containsState(Integer stateId) {
+		return getSnapshot().stateIds.contains(stateId);
+	}
+
+	/**
+	 * @see AbstractMetadataIndex#buildSnapshot()
+	 */
+	@Override
+	protected Snapshot buildSnapshot() {
+		Snapshot snapshot = new Snapshot();
+		List<Program> programs = dao.getProgramsWithWorkflowsAndStates();
+
+		for (Program program : programs) {
+			snapshot.programIds.add(program.getProgramId());
+			putKey(snapshot.programs, program.getUuid(), program.getProgramId());
+		}
+		for (Program program : programs) {
+			putKey(snapshot.programs, program.getName(), program.getProgramId());
+		}
+		for (Program program : programs) {
+			putKey(snapshot.programs, String.valueOf(program.getProgramId()), program.getProgramId());
+		}
+
+		for (Program program : programs) {
+			Map<String, Integer> workflowKeys = new HashMap<String, Integer>();
+
+			for (ProgramWorkflow workflow : program.getAllWorkflows()) {
+				putConceptNames(workflowKeys, workflow.getConcept(), workflow.getProgramWorkflowId());
+			}
+			for (ProgramWorkflow workflow : program.getAllWorkflows()) {
+				putKey(workflowKeys, workflow.getUuid(), workflow.getProgramWorkflowId());
+			}
+			for (ProgramWorkflow workflow : program.getAllWorkflows()) {
+				snapshot.workflowIds.add(workflow.getProgramWorkflowId());
+				putKey(workflowKeys, String.valueOf(workflow.getProgramWorkflowId()), workflow.getProgramWorkflowId());
+
+				snapshot.states.put(workflow.getProgramWorkflowId(), buildStateKeys(workflow, snapshot.stateIds));
+			}
+
+			snapshot.workflows.put(program.getProgramId(), workflowKeys);
+		}
+
+		return snapshot;
+	}
+
+	/**
+	 * Builds the map of state keys to state ids for the given workflow
+	 * @param workflow the workflow
+	 * @param stateIds the set to add the state ids to
+	 * @return the state keys
+	 */
+	protected Map<String, Integer> buildStateKeys(ProgramWorkflow workflow, Set<Integer> stateIds) {
+		Map<String, Integer> stateKeys = new HashMap<String, Integer>();
+
+		for (ProgramWorkflowState state : workflow.getStates()) {
+			putConceptNames(stateKeys, state.getConcept(), state.getProgramWorkflowStateId());
+		}
+		for (ProgramWorkflowState state : workflow.getStates()) {
+			if (state.getConcept() != null) {
+				putKey(stateKeys, state.getConcept().getUuid(), state.getProgramWorkflowStateId());
+			}
+		}
+		for (ProgramWorkflowState state : workflow.getStates()) {
+			stateIds.add(state.getProgramWorkflowStateId());
+			putKey(stateKeys, state.getUuid(), state.getProgramWorkflowStateId());
+		}
+		for (ProgramWorkflowState state : workflow.getStates()) {
+			putKey(stateKeys, String.valueOf(state.getProgramWorkflowStateId()), state.getProgramWorkflowStateId());
+		}
+		for (ProgramWorkflowState state : workflow.getStates()) {
+			if (state.getConcept() != null) {
+				putKey(stateKeys, String.valueOf(state.getConcept().getConceptId()), state.getProgramWorkflowStateId());
+			}
+		}
+
+		return stateKeys;
+	}
+
+	/**
+	 * Adds all non-voided names of a concept as keys
+	 * @param keys the key map
+	 * @param concept the concept (may be null)
+	 * @param id the target id
+	 */
+	protected static void putConceptNames(Map<String, Integer> keys, Concept concept, Integer id) {
+		if (concept != null) {
+			for (ConceptName name : concept.getNames()) {
+				if (!name.isVoided()) {
+					putKey(keys, name.getName(), id);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Immutable snapshot of the index
+	 */
+	protected static class Snapshot {
+
+		private final Map<String, Integer> programs = new HashMap<String, Integer>();
+
+		private final Map<Integer, Map<String, Integer>> workflows = new HashMap<Integer, Map<String, Integer>>();
+
+		private final Map<Integer, Map<String, Integer>> states = new HashMap<Integer, Map<String, Integer>>();
+
+		private final Set<Integer> programIds = new HashSet<Integer>();
+
+		private final Set<Integer> workflowIds = new HashSet<Integer>();
+
+		private final Set<Integer> stateIds = new HashSet<Integer>();
+
+		Integer getProgramId(String programLookup) {
+			return getKey(programs, programLookup);
+		}
+
+		Integer getWorkflowId(String programLookup, String workflowLookup) {
+			Integer programId = getProgramId(programLookup);
+			Map<String, Integer> workflowKeys = programId != null ? workflows.get(programId) : null;
+			return workflowKeys != null ? getKey(workflowKeys, workflowLookup) : null;
+		}
+
+		Integer getStateId(String programLookup, String workflowLookup, String stateLookup) {
+			Integer workflowId = getWorkflowId(programLookup, workflowLookup);
+			Map<String, Integer> stateKeys = workflowId != null ? states.get(workflowId) : null;
+			return stateKeys != null ? getKey(stateKeys, stateLookup) : null;
+		}
+	}
+}
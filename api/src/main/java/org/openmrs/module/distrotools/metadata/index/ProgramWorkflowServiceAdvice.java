@@ -0,0 +1,42 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+package org.openmrs.module.distrotools.metadata.index;
+
+import org.springframework.aop.AfterReturningAdvice;
+
+import java.lang.reflect.Method;
+
+/**
+ * AOP advice for the program workflow service which invalidates the program index whenever a program (along with its
+ * workflows and states) is changed other than by the deploy handlers, so that it never resolves deleted objects
+ */
+public class ProgramWorkflowServiceAdvice implements AfterReturningAdvice {
+
+	/**
+	 * @see AfterReturningAdvice#afterReturning(Object, java.lang.reflect.Method, Object[], Object)
+	 */
+	@Override
+	public void afterReturning(Object returnValue, Method method, Object[] args, Object target) throws Throwable {
+		String name = method.getName();
+
+		if (name.equals("saveProgram") || name.equals("purgeProgram") || name.equals("retireProgram")
+				|| name.equals("unretireProgram") || name.equals("unRetireProgram")) {
+			ProgramIndex index = ProgramIndex.getInstance();
+			if (index != null) {
+				index.invalidateOnCompletion();
+			}
+		}
+	}
+}
@@ -0,0 +1,74 @@
+/*
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.distrotools.metadata.reference;
+
+import org.openmrs.OpenmrsObject;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.distrotools.api.DistroToolsService;
+import org.openmrs.module.distrotools.metadata.MissingMetadataException;
+
+import java.util.Collections;
+
+/**
+ * Abstract base class for references to metadata by UUID. The primary key of the target is remembered after the first
+ * lookup, after which the target is fetched as a reference by primary key, which usually doesn't hit the database.
+ */
+public abstract class AbstractMetadataReference<T extends OpenmrsObject> implements MetadataReference<T> {
+
+	private String reference;
+
+	private volatile Integer targetId;
+
+	public AbstractMetadataReference(String reference) {
+		this.reference = reference;
+	}
+
+	@Override
+	public String getReference() {
+		return reference;
+	}
+
+	@Override
+	public T getTarget() {
+		DistroToolsService service = Context.getService(DistroToolsService.class);
+
+		Integer id = targetId;
+		if (id == null) {
+			id = service.fetchObjectIds(getType(), Collections.singleton(reference)).get(reference);
+			if (id == null) {
+				throw new MissingMetadataException(getType(), reference);
+			}
+			targetId = id;
+		}
+
+		return service.fetchObjectReference(getType(), id);
+	}
+
+	/**
+	 * Gets the primary key of the target if it has been resolved
+	 * @return the primary key or null
+	 */
+	public Integer getTargetId() {
+		return targetId;
+	}
+
+	/**
+	 * Sets the resolved primary key of the target. Setting this to null forces the next dereference to look up the
+	 * target again.
+	 * @param targetId the primary key
+	 */
+	public void setTargetId(Integer targetId) {
+		this.targetId = targetId;
+	}
+}
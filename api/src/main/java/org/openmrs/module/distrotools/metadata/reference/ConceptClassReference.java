@@ -14,31 +14,18 @@
 package org.openmrs.module.distrotools.metadata.reference;
 
 import org.openmrs.ConceptClass;
-import org.openmrs.module.distrotools.metadata.MetadataUtils;
 
 /**
  * Reference to a ConceptClass
  */
-public class ConceptClassReference implements MetadataReference<ConceptClass> {
-
-	private String reference;
+public class ConceptClassReference extends AbstractMetadataReference<ConceptClass> {
 
 	public ConceptClassReference(String reference) {
-		this.reference = reference;
-	}
-
-	@Override
-	public String getReference() {
-		return reference;
+		super(reference);
 	}
 
 	@Override
 	public Class<ConceptClass> getType() {
 		return ConceptClass.class;
 	}
-
-	@Override
-	public ConceptClass getTarget() {
-		return MetadataUtils.existing(getType(), getReference());
-	}
 }
\ No newline at end of file
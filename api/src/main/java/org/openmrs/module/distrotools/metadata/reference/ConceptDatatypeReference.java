@@ -14,31 +14,18 @@
 package org.openmrs.module.distrotools.metadata.reference;
 
 import org.openmrs.ConceptDatatype;
-import org.openmrs.module.distrotools.metadata.MetadataUtils;
 
 /**
  * Reference to a ConceptDataType
  */
-public class ConceptDatatypeReference implements MetadataReference<ConceptDatatype> {
-
-	private String reference;
+public class ConceptDatatypeReference extends AbstractMetadataReference<ConceptDatatype> {
 
 	public ConceptDatatypeReference(String reference) {
-		this.reference = reference;
-	}
-
-	@Override
-	public String getReference() {
-		return reference;
+		super(reference);
 	}
 
 	@Override
 	public Class<ConceptDatatype> getType() {
 		return ConceptDatatype.class;
 	}
-
-	@Override
-	public ConceptDatatype getTarget() {
-		return MetadataUtils.existing(getType(), getReference());
-	}
 }
\ No newline at end of file
@@ -14,31 +14,18 @@
 package org.openmrs.module.distrotools.metadata.reference;
 
 import org.openmrs.Concept;
-import org.openmrs.module.distrotools.metadata.MetadataUtils;
 
 /**
  * Reference to a Concept
  */
-public class ConceptReference implements MetadataReference<Concept> {
-
-	private String reference;
+public class ConceptReference extends AbstractMetadataReference<Concept> {
 
 	public ConceptReference(String reference) {
-		this.reference = reference;
-	}
-
-	@Override
-	public String getReference() {
-		return reference;
+		super(reference);
 	}
 
 	@Override
 	public Class<Concept> getType() {
 		return Concept.class;
 	}
-
-	@Override
-	public Concept getTarget() {
-		return MetadataUtils.existing(getType(), getReference());
-	}
 }
\ No newline at end of file
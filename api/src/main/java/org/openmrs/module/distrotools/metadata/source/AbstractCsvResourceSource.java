@@ -23,7 +23,7 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 
 /**
- * Abstract base class for object sources from CSV resources.
+ * Abstract base class for object sources from CSV resources, which may be gzip compressed.
  */
 public abstract class AbstractCsvResourceSource<T extends OpenmrsObject> implements ObjectSource<T> {
 
@@ -36,7 +36,7 @@ public abstract class AbstractCsvResourceSource<T extends OpenmrsObject> impleme
 	 * @throws IOException if an error occurs
 	 */
 	public AbstractCsvResourceSource(String csvFile, boolean hasHeader) throws IOException {
-		InputStream in = getClass().getClassLoader().getResourceAsStream(csvFile);
+		InputStream in = ResourceUtils.openStream(ResourceUtils.getResource(getClass().getClassLoader(), csvFile));
 		reader = new CSVReader(new InputStreamReader(in));
 
 		// Throw away first line if it's a header
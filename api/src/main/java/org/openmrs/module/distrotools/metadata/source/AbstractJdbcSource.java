@@ -0,0 +1,177 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+package org.openmrs.module.distrotools.metadata.source;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.OpenmrsObject;
+
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Abstract base class for object sources from the results of a SQL query on another database, e.g. a reporting
+ * database. The query is run when the first object is fetched, with a forward-only and read-only cursor, so that rows
+ * are fetched from the database in windows of the fetch size rather than all at once. Some drivers need more than a
+ * fetch size to stream results, e.g. MySQL needs useCursorFetch=true in the connection URL.
+ *
+ * The statement is closed when the results are exhausted, as is the connection if it was opened by this source.
+ */
+public abstract class AbstractJdbcSource<T extends OpenmrsObject> implements ObjectSource<T>, Closeable {
+
+	protected static final Log log = LogFactory.getLog(AbstractJdbcSource.class);
+
+	protected static final int DEFAULT_FETCH_SIZE = 500;
+
+	private Connection connection;
+
+	private final boolean ownsConnection;
+
+	private final String sql;
+
+	private final Object[] parameters;
+
+	private int fetchSize = DEFAULT_FETCH_SIZE;
+
+	private PreparedStatement statement;
+
+	private ResultSet results;
+
+	private boolean closed = false;
+
+	/**
+	 * Constructs a new source which opens its own connection
+	 * @param url the JDBC connection URL
+	 * @param username the database username
+	 * @param password the database password
+	 * @param sql the query
+	 * @param parameters the query parameters
+	 * @throws SQLException if connection can't be opened
+	 */
+	public AbstractJdbcSource(String url, String username, String password, String sql, Object... parameters) throws SQLException {
+		this.connection = DriverManager.getConnection(url, username, password);
+		this.ownsConnection = true;
+		this.sql = sql;
+		this.parameters = parameters;
+
+		// Some drivers (e.g. PostgreSQL) only use cursors outside of auto-commit mode
+		connection.setReadOnly(true);
+		connection.setAutoCommit(false);
+	}
+
+	/**
+	 * Constructs a new source which uses an existing connection, which it won't close
+	 * @param connection the connection
+	 * @param sql the query
+	 * @param parameters the query parameters
+	 */
+	public AbstractJdbcSource(Connection connection, String sql, Object... parameters) {
+		this.connection = connection;
+		this.ownsConnection = false;
+		this.sql = sql;
+		this.parameters = parameters;
+	}
+
+	/**
+	 * Sets the number of rows to fetch from the database at a time
+	 * @param fetchSize the fetch size
+	 */
+	public void setFetchSize(int fetchSize) {
+		this.fetchSize = fetchSize;
+	}
+
+	/**
+	 * @see ObjectSource#fetchNext()
+	 */
+	@Override
+	public T fetchNext() throws Exception {
+		if (closed) {
+			return null;
+		}
+		if (results == null) {
+			execute();
+		}
+
+		if (!results.next()) {
+			close();
+			return null;
+		}
+
+		return parseRow(results);
+	}
+
+	/**
+	 * Parses the current row of the results into an object. Only the current row should be read.
+	 * @param row the results
+	 * @return the object
+	 */
+	protected abstract T parseRow(ResultSet row) throws Exception;
+
+	/**
+	 * Runs the query
+	 * @throws SQLException if an error occurs
+	 */
+	protected void execute() throws SQLException {
+		statement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+		statement.setFetchSize(fetchSize);
+
+		for (int p = 0; p < parameters.length; p++) {
+			statement.setObject(p + 1, parameters[p]);
+		}
+
+		results = statement.executeQuery();
+	}
+
+	/**
+	 * Closes the source, closing the results, statement and connection if it was opened by this source
+	 */
+	@Override
+	public void close() {
+		closed = true;
+
+		try {
+			if (results != null) {
+				results.close();
+			}
+			if (statement != null) {
+				statement.close();
+			}
+		}
+		catch (SQLException ex) {
+			log.warn("Unable to close query results", ex);
+		}
+		finally {
+			results = null;
+			statement = null;
+		}
+
+		if (ownsConnection && connection != null) {
+			try {
+				connection.rollback();
+				connection.close();
+			}
+			catch (SQLException ex) {
+				log.warn("Unable to close connection", ex);
+			}
+			finally {
+				connection = null;
+			}
+		}
+	}
+}
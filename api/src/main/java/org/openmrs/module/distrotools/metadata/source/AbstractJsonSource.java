@@ -0,0 +1,159 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+package org.openmrs.module.distrotools.metadata.source;
+
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+import org.codehaus.jackson.map.MappingJsonFactory;
+import org.openmrs.OpenmrsObject;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Abstract base class for object sources from JSON arrays, e.g. large metadata exports. The JSON is parsed token by
+ * token, and only one element of the array at a time is read into a tree and passed to {@link #parseElement(JsonNode)},
+ * so memory use doesn't depend on the number of elements. The array can be the whole document, or the value of a named
+ * field of the top-level object, e.g. {"locations": [...]}.
+ *
+ * Resources may be gzip compressed, and other streams (e.g. of an {@link HttpResource}) can also be parsed.
+ */
+public abstract class AbstractJsonSource<T extends OpenmrsObject> implements ObjectSource<T>, Closeable {
+
+	private JsonParser parser;
+
+	/**
+	 * Constructs a new source for a resource whose top-level value is the array
+	 * @param jsonFile the resource file path
+	 * @throws IOException if an error occurs
+	 */
+	public AbstractJsonSource(String jsonFile) throws IOException {
+		this(jsonFile, null);
+	}
+
+	/**
+	 * Constructs a new source for a resource
+	 * @param jsonFile the resource file path
+	 * @param arrayField the name of the top-level field whose value is the array, or null if the top-level value is the array
+	 * @throws IOException if an error occurs
+	 */
+	public AbstractJsonSource(String jsonFile, String arrayField) throws IOException {
+		open(ResourceUtils.openStream(ResourceUtils.getResource(getClass().getClassLoader(), jsonFile)), arrayField);
+	}
+
+	/**
+	 * Constructs a new source for a stream
+	 * @param in the stream which will be closed with the source
+	 * @param arrayField the name of the top-level field whose value is the array, or null if the top-level value is the array
+	 * @throws IOException if an error occurs
+	 */
+	public AbstractJsonSource(InputStream in, String arrayField) throws IOException {
+		open(in, arrayField);
+	}
+
+	/**
+	 * @see ObjectSource#fetchNext()
+	 */
+	@Override
+	public T fetchNext() throws Exception {
+		if (parser == null) {
+			return null;
+		}
+
+		JsonToken token = parser.nextToken();
+		if (token == null || token == JsonToken.END_ARRAY) {
+			close();
+			return null;
+		}
+
+		return parseElement(parser.readValueAsTree());
+	}
+
+	/**
+	 * Parses an element of the array into an object
+	 * @param element the element
+	 * @return the object
+	 */
+	protected abstract T parseElement(JsonNode element) throws Exception;
+
+	/**
+	 * Closes the source
+	 * @throws IOException if an error occurs
+	 */
+	@Override
+	public void close() throws IOException {
+		if (parser != null) {
+			parser.close();
+			parser = null;
+		}
+	}
+
+	/**
+	 * Opens a parser for a stream and moves it to the start of the array
+	 * @param in the stream
+	 * @param arrayField the name of the top-level field whose value is the array, or null if the top-level value is the array
+	 * @throws IOException if an error occurs
+	 */
+	private void open(InputStream in, String arrayField) throws IOException {
+		parser = new MappingJsonFactory().createJsonParser(in);
+
+		try {
+			findArray(arrayField);
+		}
+		catch (IOException ex) {
+			close();
+			throw ex;
+		}
+	}
+
+	/**
+	 * Moves the parser to the start of the array
+	 * @param arrayField the name of the top-level field whose value is the array, or null if the top-level value is the array
+	 * @throws IOException if the array isn't found
+	 */
+	protected void findArray(String arrayField) throws IOException {
+		JsonToken token = parser.nextToken();
+
+		if (arrayField == null) {
+			if (token != JsonToken.START_ARRAY) {
+				throw new IOException("Expected JSON array but found " + token);
+			}
+			return;
+		}
+
+		if (token != JsonToken.START_OBJECT) {
+			throw new IOException("Expected JSON object but found " + token);
+		}
+
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String field = parser.getCurrentName();
+			token = parser.nextToken();
+
+			if (field.equals(arrayField)) {
+				if (token != JsonToken.START_ARRAY) {
+					throw new IOException("Expected JSON array for field '" + arrayField + "' but found " + token);
+				}
+				return;
+			}
+
+			// Skip over values of other fields without reading them into memory
+			parser.skipChildren();
+		}
+
+		throw new IOException("No JSON field named '" + arrayField + "'");
+	}
+}
@@ -0,0 +1,40 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+package org.openmrs.module.distrotools.metadata.source;
+
+import org.openmrs.OpenmrsObject;
+
+import java.io.IOException;
+
+/**
+ * Interface for a source which knows whether its objects have changed since they were last synchronized, so that
+ * consumers such as synchronizations can skip unchanged sources. A source only remembers its objects as synchronized
+ * once the consumer marks them as such, so a failed synchronization is retried in full.
+ */
+public interface ChangeTrackingSource<T extends OpenmrsObject> extends ObjectSource<T> {
+
+	/**
+	 * Gets whether the objects in the source are unchanged since they were last synchronized
+	 * @return true if unchanged
+	 */
+	boolean isUnchanged();
+
+	/**
+	 * Marks the objects fetched from this source as synchronized, so that the source is unchanged next time unless
+	 * its objects change. Called after all the objects have been fetched and successfully synchronized.
+	 * @throws IOException if an error occurs
+	 */
+	void markSynchronized() throws IOException;
+}
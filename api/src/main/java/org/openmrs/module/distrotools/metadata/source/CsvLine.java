@@ -0,0 +1,168 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+package org.openmrs.module.distrotools.metadata.source;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Reusable view of a CSV line as field offsets within a byte buffer. Values are only decoded when they are read, and
+ * like {@link AbstractCsvResourceSource}, they are trimmed with blank values returned as null.
+ */
+public class CsvLine {
+
+	private static final byte QUOTE = '"';
+
+	private final Charset charset;
+
+	private ByteBuffer buffer;
+
+	private int size = 0;
+
+	private int[] starts = new int[16];
+
+	private int[] ends = new int[16];
+
+	private boolean[] quoted = new boolean[16];
+
+	private byte[] scratch = new byte[256];
+
+	/**
+	 * Creates a new line
+	 * @param charset the charset of the underlying bytes
+	 */
+	public CsvLine(Charset charset) {
+		this.charset = charset;
+	}
+
+	/**
+	 * Gets the number of fields in the line
+	 * @return the number of fields
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Gets the value of a field
+	 * @param field the field index
+	 * @return the trimmed value or null if field is blank or doesn't exist
+	 */
+	public String get(int field) {
+		if (field >= size) {
+			return null;
+		}
+
+		int length = copyField(field);
+
+		// Trim ASCII whitespace and control characters, like String.trim
+		int from = 0, to = length;
+		while (from < to && (scratch[from] & 0xFF) <= ' ') {
+			from++;
+		}
+		while (to > from && (scratch[to - 1] & 0xFF) <= ' ') {
+			to--;
+		}
+
+		return (to > from) ? new String(scratch, from, to - from, charset) : null;
+	}
+
+	/**
+	 * Gets all field values as an array, e.g. for handing to code which expects an opencsv line
+	 * @return the values
+	 */
+	public String[] toArray() {
+		String[] values = new String[size];
+		for (int f = 0; f < size; f++) {
+			values[f] = get(f);
+		}
+		return values;
+	}
+
+	/**
+	 * Copies the bytes of a field into the scratch buffer, removing quotes and unescaping doubled quotes
+	 * @param field the field index
+	 * @return the number of bytes copied
+	 */
+	protected int copyField(int field) {
+		int start = starts[field], end = ends[field];
+		if (scratch.length < end - start) {
+			scratch = new byte[Math.max(end - start, scratch.length * 2)];
+		}
+
+		if (!quoted[field]) {
+			for (int b = start; b < end; b++) {
+				scratch[b - start] = buffer.get(b);
+			}
+			return end - start;
+		}
+
+		int length = 0;
+		boolean inQuotes = false;
+		for (int b = start; b < end; b++) {
+			byte ch = buffer.get(b);
+			if (ch == QUOTE) {
+				if (inQuotes && b + 1 < end && buffer.get(b + 1) == QUOTE) {
+					scratch[length++] = QUOTE;
+					b++;
+				}
+				else {
+					inQuotes = !inQuotes;
+				}
+			}
+			else {
+				scratch[length++] = ch;
+			}
+		}
+		return length;
+	}
+
+	/**
+	 * Resets the line to have no fields
+	 * @param buffer the buffer which the fields of the next line will be in
+	 */
+	protected void reset(ByteBuffer buffer) {
+		this.buffer = buffer;
+		this.size = 0;
+	}
+
+	/**
+	 * Adds a field
+	 * @param start the index of the first byte of the field
+	 * @param end the index after the last byte of the field
+	 * @param isQuoted whether field contains quotes
+	 */
+	protected void addField(int start, int end, boolean isQuoted) {
+		if (size == starts.length) {
+			int capacity = size * 2;
+			starts = Arrays.copyOf(starts, capacity);
+			ends = Arrays.copyOf(ends, capacity);
+			quoted = Arrays.copyOf(quoted, capacity);
+		}
+		starts[size] = start;
+		ends[size] = end;
+		quoted[size] = isQuoted;
+		size++;
+	}
+
+	/**
+	 * Gets whether the line is blank, i.e. a single empty field
+	 * @return true if blank
+	 */
+	protected boolean isBlank() {
+		return size == 1 && !quoted[0] && starts[0] == ends[0];
+	}
+}
@@ -0,0 +1,179 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+package org.openmrs.module.distrotools.metadata.source;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Splits CSV bytes into lines of fields in place, without decoding them. Works on any charset in which commas, quotes
+ * and line breaks are single bytes which can't appear within other characters, e.g. UTF-8 or ISO-8859-1. Quoted fields
+ * may contain commas, line breaks and doubled quotes. Blank lines are skipped.
+ *
+ * Bytes come either from a buffer which holds all of them (e.g. a memory mapped file), or from a channel through a
+ * window buffer which grows if a single line doesn't fit in it.
+ */
+public class CsvTokenizer {
+
+	private static final byte COMMA = ',';
+
+	private static final byte QUOTE = '"';
+
+	private static final byte CR = '\r';
+
+	private static final byte LF = '\n';
+
+	private ByteBuffer buffer;
+
+	private final ReadableByteChannel channel;
+
+	private boolean eof;
+
+	/**
+	 * Creates a tokenizer for the remaining bytes of a buffer
+	 * @param buffer the buffer
+	 */
+	public CsvTokenizer(ByteBuffer buffer) {
+		this.buffer = buffer;
+		this.channel = null;
+		this.eof = true;
+	}
+
+	/**
+	 * Creates a tokenizer for the bytes of a channel
+	 * @param channel the channel
+	 * @param bufferSize the initial size of the window buffer
+	 */
+	public CsvTokenizer(ReadableByteChannel channel, int bufferSize) {
+		this.buffer = ByteBuffer.allocate(bufferSize);
+		this.buffer.flip();
+		this.channel = channel;
+		this.eof = false;
+	}
+
+	/**
+	 * Reads the next line
+	 * @param line the line to read into
+	 * @return true if a line was read or false if there are no more lines
+	 * @throws IOException if an error occurs
+	 */
+	public boolean next(CsvLine line) throws IOException {
+		while (true) {
+			if (!buffer.hasRemaining() && eof) {
+				return false;
+			}
+
+			int next = scan(line);
+			if (next >= 0) {
+				buffer.position(next);
+
+				if (!line.isBlank()) {
+					return true;
+				}
+			}
+			else {
+				fill();
+			}
+		}
+	}
+
+	/**
+	 * Gets the current position in the buffer, i.e. the start of the next line
+	 * @return the position
+	 */
+	public int position() {
+		return buffer.position();
+	}
+
+	/**
+	 * Scans the line starting at the current position
+	 * @param line the line to read into
+	 * @return the position after the line or -1 if the line is incomplete
+	 */
+	protected int scan(CsvLine line) {
+		line.reset(buffer);
+
+		int limit = buffer.limit();
+		int fieldStart = buffer.position();
+		boolean quoted = false, inQuotes = false;
+
+		for (int b = fieldStart; b < limit; b++) {
+			byte ch = buffer.get(b);
+
+			if (inQuotes) {
+				if (ch == QUOTE) {
+					if (b + 1 < limit && buffer.get(b + 1) == QUOTE) {
+						b++;
+					}
+					else if (b + 1 >= limit && !eof) {
+						return -1; // Can't yet tell if this is an escaped quote
+					}
+					else {
+						inQuotes = false;
+					}
+				}
+			}
+			else if (ch == QUOTE) {
+				inQuotes = quoted = true;
+			}
+			else if (ch == COMMA) {
+				line.addField(fieldStart, b, quoted);
+				fieldStart = b + 1;
+				quoted = false;
+			}
+			else if (ch == LF || ch == CR) {
+				line.addField(fieldStart, b, quoted);
+
+				if (ch == CR) {
+					if (b + 1 >= limit && !eof) {
+						return -1; // Can't yet tell if this is followed by a line feed
+					}
+					else if (b + 1 < limit && buffer.get(b + 1) == LF) {
+						b++;
+					}
+				}
+				return b + 1;
+			}
+		}
+
+		if (eof) {
+			// Last line has no line break
+			line.addField(fieldStart, limit, quoted);
+			return limit;
+		}
+		return -1;
+	}
+
+	/**
+	 * Reads more bytes from the channel into the window buffer, keeping any incomplete line
+	 * @throws IOException if an error occurs
+	 */
+	protected void fill() throws IOException {
+		buffer.compact();
+
+		if (!buffer.hasRemaining()) {
+			ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+			buffer.flip();
+			larger.put(buffer);
+			buffer = larger;
+		}
+
+		if (channel.read(buffer) < 0) {
+			eof = true;
+		}
+		buffer.flip();
+	}
+}
@@ -0,0 +1,78 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+package org.openmrs.module.distrotools.metadata.source;
+
+import org.openmrs.OpenmrsObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.Charset;
+
+/**
+ * Abstract base class for object sources from CSV resources published over HTTP, e.g. by a facility registry. The
+ * resource is cached on disk (see {@link HttpResource}) so that it's only fetched again if it has changed, and the
+ * source reports whether it was unchanged so that synchronizations can be skipped. A newly fetched copy only replaces
+ * the cached copy when the source is marked as synchronized.
+ */
+public abstract class HttpCsvSource<T extends OpenmrsObject> extends MappedCsvResourceSource<T> implements ChangeTrackingSource<T> {
+
+	private final HttpResource resource;
+
+	/**
+	 * Constructs a new source for a UTF-8 encoded resource
+	 * @param url the resource URL
+	 * @param cacheFile the file to cache the resource in, or null to not cache it
+	 * @param hasHeader true if resource has a header row
+	 * @throws IOException if an error occurs
+	 */
+	public HttpCsvSource(URL url, File cacheFile, boolean hasHeader) throws IOException {
+		this(url, cacheFile, hasHeader, Charset.forName("UTF-8"));
+	}
+
+	/**
+	 * Constructs a new source
+	 * @param url the resource URL
+	 * @param cacheFile the file to cache the resource in, or null to not cache it
+	 * @param hasHeader true if resource has a header row
+	 * @param charset the charset of the resource
+	 * @throws IOException if an error occurs
+	 */
+	public HttpCsvSource(URL url, File cacheFile, boolean hasHeader, Charset charset) throws IOException {
+		this(new HttpResource(url, cacheFile), hasHeader, charset);
+	}
+
+	private HttpCsvSource(HttpResource resource, boolean hasHeader, Charset charset) throws IOException {
+		super(resource.open(), hasHeader, charset);
+
+		this.resource = resource;
+	}
+
+	/**
+	 * @see ChangeTrackingSource#isUnchanged()
+	 */
+	@Override
+	public boolean isUnchanged() {
+		return resource.isUnchanged();
+	}
+
+	/**
+	 * @see ChangeTrackingSource#markSynchronized()
+	 */
+	@Override
+	public void markSynchronized() throws IOException {
+		resource.commit();
+	}
+}
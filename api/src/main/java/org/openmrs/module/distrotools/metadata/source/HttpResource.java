@@ -0,0 +1,284 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+package org.openmrs.module.distrotools.metadata.source;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Properties;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * A resource fetched over HTTP and cached on disk. When a cached copy exists, the resource is fetched with a
+ * conditional GET (using the ETag and Last-Modified values of the cached copy), and if the server responds that it
+ * is unchanged then the cached copy is read instead. Otherwise the response body is decompressed if necessary and
+ * streamed to the reader, and is copied to a staging file as it is read. Once the body has been read in full, the
+ * staged copy only replaces the cached copy when it is committed (e.g. after its objects have been synchronized), so a
+ * resource which was only partly read or whose processing failed will be fetched again next time.
+ */
+public class HttpResource {
+
+	protected static final Log log = LogFactory.getLog(HttpResource.class);
+
+	protected static final String META_SUFFIX = ".properties";
+
+	protected static final int TIMEOUT = 30000;
+
+	private final URL url;
+
+	private final File cacheFile;
+
+	private boolean unchanged = false;
+
+	private Properties stagedMeta;
+
+	/**
+	 * Creates a new resource
+	 * @param url the URL
+	 * @param cacheFile the file to cache the resource in, or null to not cache it
+	 */
+	public HttpResource(URL url, File cacheFile) {
+		this.url = url;
+		this.cacheFile = cacheFile;
+	}
+
+	/**
+	 * Opens a stream of the resource
+	 * @return the stream
+	 * @throws IOException if an error occurs or server responds with an error
+	 */
+	public InputStream open() throws IOException {
+		stagedMeta = null;
+
+		Properties meta = loadMeta();
+
+		HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+		connection.setConnectTimeout(TIMEOUT);
+		connection.setReadTimeout(TIMEOUT);
+		connection.setRequestProperty("Accept-Encoding", "gzip");
+
+		if (meta != null) {
+			if (meta.getProperty("etag") != null) {
+				connection.setRequestProperty("If-None-Match", meta.getProperty("etag"));
+			}
+			if (meta.getProperty("lastModified") != null) {
+				connection.setRequestProperty("If-Modified-Since", meta.getProperty("lastModified"));
+			}
+		}
+
+		int status = connection.getResponseCode();
+
+		if (status == HttpURLConnection.HTTP_NOT_MODIFIED && meta != null) {
+			connection.disconnect();
+			unchanged = true;
+
+			log.info("Resource " + url + " is unchanged so reading cached copy");
+			return new BufferedInputStream(new FileInputStream(cacheFile), ResourceUtils.BUFFER_SIZE);
+		}
+		else if (status != HttpURLConnection.HTTP_OK) {
+			connection.disconnect();
+			throw new IOException("Unable to fetch " + url + " (HTTP status " + status + ")");
+		}
+
+		unchanged = false;
+
+		InputStream body = new BufferedInputStream(connection.getInputStream(), ResourceUtils.BUFFER_SIZE);
+		if ("gzip".equalsIgnoreCase(connection.getContentEncoding())) {
+			body = new BufferedInputStream(new GZIPInputStream(body, ResourceUtils.BUFFER_SIZE), ResourceUtils.BUFFER_SIZE);
+		}
+
+		if (cacheFile == null) {
+			return body;
+		}
+
+		Properties newMeta = new Properties();
+		if (connection.getHeaderField("ETag") != null) {
+			newMeta.setProperty("etag", connection.getHeaderField("ETag"));
+		}
+		if (connection.getHeaderField("Last-Modified") != null) {
+			newMeta.setProperty("lastModified", connection.getHeaderField("Last-Modified"));
+		}
+		return new CachingInputStream(body, newMeta);
+	}
+
+	/**
+	 * Gets whether the last opening of this resource found it to be unchanged since it was last cached
+	 * @return true if unchanged
+	 */
+	public boolean isUnchanged() {
+		return unchanged;
+	}
+
+	/**
+	 * Replaces the cached copy with the copy staged by the last opening of this resource, if that was read in full.
+	 * Does nothing if there is no staged copy, e.g. if the resource was unchanged.
+	 * @throws IOException if an error occurs
+	 */
+	public void commit() throws IOException {
+		if (stagedMeta == null) {
+			return;
+		}
+
+		// Metadata is removed first so that it never describes the wrong copy
+		File metaFile = getMetaFile();
+		metaFile.delete();
+		cacheFile.delete();
+		if (!getStagingFile().renameTo(cacheFile)) {
+			throw new IOException("Unable to replace cached copy " + cacheFile);
+		}
+
+		OutputStream metaOut = new FileOutputStream(metaFile);
+		try {
+			stagedMeta.store(metaOut, url.toString());
+		}
+		finally {
+			metaOut.close();
+		}
+
+		stagedMeta = null;
+	}
+
+	/**
+	 * Loads the metadata of the cached copy
+	 * @return the metadata or null if there is no cached copy
+	 * @throws IOException if an error occurs
+	 */
+	protected Properties loadMeta() throws IOException {
+		if (cacheFile == null || !cacheFile.exists() || !getMetaFile().exists()) {
+			return null;
+		}
+
+		Properties meta = new Properties();
+		InputStream in = new FileInputStream(getMetaFile());
+		try {
+			meta.load(in);
+		}
+		finally {
+			in.close();
+		}
+		return meta.isEmpty() ? null : meta;
+	}
+
+	/**
+	 * Gets the file which holds the metadata of the cached copy
+	 * @return the file
+	 */
+	protected File getMetaFile() {
+		return new File(cacheFile.getPath() + META_SUFFIX);
+	}
+
+	/**
+	 * Gets the file which holds a newly fetched copy until it is committed
+	 * @return the file
+	 */
+	protected File getStagingFile() {
+		return new File(cacheFile.getPath() + ".tmp");
+	}
+
+	/**
+	 * Stream which copies what is read to the staging file, which is staged for commit once the whole stream has been
+	 * read
+	 */
+	protected class CachingInputStream extends FilterInputStream {
+
+		private final Properties meta;
+
+		private final File tempFile;
+
+		private OutputStream out;
+
+		protected CachingInputStream(InputStream in, Properties meta) throws IOException {
+			super(in);
+			this.meta = meta;
+			this.tempFile = getStagingFile();
+
+			if (tempFile.getParentFile() != null) {
+				tempFile.getParentFile().mkdirs();
+			}
+			this.out = new BufferedOutputStream(new FileOutputStream(tempFile), ResourceUtils.BUFFER_SIZE);
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b < 0) {
+				complete();
+			}
+			else if (out != null) {
+				out.write(b);
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] bytes, int offset, int length) throws IOException {
+			int read = super.read(bytes, offset, length);
+			if (read < 0) {
+				complete();
+			}
+			else if (out != null) {
+				out.write(bytes, offset, read);
+			}
+			return read;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			throw new IOException("Skipping isn't supported as skipped bytes wouldn't be cached");
+		}
+
+		@Override
+		public boolean markSupported() {
+			return false;
+		}
+
+		@Override
+		public void close() throws IOException {
+			super.close();
+
+			// Discard partly read copy
+			if (out != null) {
+				out.close();
+				out = null;
+				tempFile.delete();
+			}
+		}
+
+		/**
+		 * Stages the copy and its metadata to be committed
+		 * @throws IOException if an error occurs
+		 */
+		protected void complete() throws IOException {
+			if (out == null) {
+				return;
+			}
+			out.close();
+			out = null;
+
+			stagedMeta = meta;
+		}
+	}
+}
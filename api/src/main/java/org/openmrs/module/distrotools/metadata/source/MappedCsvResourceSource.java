@@ -0,0 +1,178 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+package org.openmrs.module.distrotools.metadata.source;
+
+import org.openmrs.OpenmrsObject;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Abstract base class for object sources from large CSV resources. Resources which are files on the classpath (i.e.
+ * not inside a jar) are memory mapped, and other resources (including compressed ones) are read through a channel. Lines are split into fields in
+ * place, and values are only decoded using the given charset when they are read by {@link #parseLine(CsvLine)}. The
+ * same line object is reused for every line.
+ */
+public abstract class MappedCsvResourceSource<T extends OpenmrsObject> implements ObjectSource<T>, Closeable {
+
+	protected static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+	private final CsvTokenizer tokenizer;
+
+	private final CsvLine line;
+
+	private Closeable resource;
+
+	private String[] header;
+
+	/**
+	 * Constructs a new source for a UTF-8 encoded resource
+	 * @param csvFile the resource file path
+	 * @param hasHeader true if file has a header row
+	 * @throws IOException if an error occurs
+	 */
+	public MappedCsvResourceSource(String csvFile, boolean hasHeader) throws IOException {
+		this(csvFile, hasHeader, Charset.forName("UTF-8"));
+	}
+
+	/**
+	 * Constructs a new source
+	 * @param csvFile the resource file path
+	 * @param hasHeader true if file has a header row
+	 * @param charset the charset of the resource
+	 * @throws IOException if an error occurs
+	 */
+	public MappedCsvResourceSource(String csvFile, boolean hasHeader, Charset charset) throws IOException {
+		URL url = ResourceUtils.getResource(getClass().getClassLoader(), csvFile);
+
+		File file = toFile(url);
+		if (file != null && !ResourceUtils.isCompressed(url)) {
+			RandomAccessFile raf = new RandomAccessFile(file, "r");
+			FileChannel channel = raf.getChannel();
+
+			if (channel.size() <= Integer.MAX_VALUE) {
+				// Mapping remains valid after the file is closed
+				try {
+					tokenizer = new CsvTokenizer(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+				}
+				finally {
+					raf.close();
+				}
+			}
+			else {
+				tokenizer = new CsvTokenizer(channel, DEFAULT_BUFFER_SIZE);
+				resource = raf;
+			}
+		}
+		else {
+			InputStream in = ResourceUtils.openStream(url);
+			tokenizer = new CsvTokenizer(Channels.newChannel(in), DEFAULT_BUFFER_SIZE);
+			resource = in;
+		}
+
+		line = new CsvLine(charset);
+		readHeader(hasHeader);
+	}
+
+	/**
+	 * Constructs a new source from a stream, e.g. of a resource which isn't on the classpath
+	 * @param in the stream which will be closed with the source
+	 * @param hasHeader true if stream has a header row
+	 * @param charset the charset of the stream
+	 * @throws IOException if an error occurs
+	 */
+	protected MappedCsvResourceSource(InputStream in, boolean hasHeader, Charset charset) throws IOException {
+		tokenizer = new CsvTokenizer(Channels.newChannel(in), DEFAULT_BUFFER_SIZE);
+		resource = in;
+		line = new CsvLine(charset);
+		readHeader(hasHeader);
+	}
+
+	/**
+	 * @see ObjectSource#fetchNext()
+	 */
+	@Override
+	public T fetchNext() throws Exception {
+		if (!tokenizer.next(line)) {
+			close();
+			return null;
+		}
+
+		return parseLine(line);
+	}
+
+	/**
+	 * Reads the first line if it's a header, keeping it apart from the objects
+	 * @param hasHeader true if there is a header row
+	 * @throws IOException if an error occurs
+	 */
+	private void readHeader(boolean hasHeader) throws IOException {
+		if (hasHeader && tokenizer.next(line)) {
+			header = line.toArray();
+		}
+	}
+
+	/**
+	 * Gets the values of the header row
+	 * @return the values or null if file has no header row
+	 */
+	protected String[] getHeader() {
+		return header;
+	}
+
+	/**
+	 * Parses a CSV line into an object. The line is reused so shouldn't be kept.
+	 * @param line the line
+	 * @return the object
+	 */
+	protected abstract T parseLine(CsvLine line) throws Exception;
+
+	/**
+	 * Closes the source
+	 * @throws IOException if an error occurs
+	 */
+	@Override
+	public void close() throws IOException {
+		if (resource != null) {
+			resource.close();
+			resource = null;
+		}
+	}
+
+	/**
+	 * Gets the file of a resource URL
+	 * @param url the URL
+	 * @return the file or null if resource isn't a file
+	 */
+	protected static File toFile(URL url) {
+		if (!"file".equals(url.getProtocol())) {
+			return null;
+		}
+		try {
+			return new File(url.toURI());
+		}
+		catch (URISyntaxException ex) {
+			return null;
+		}
+	}
+}
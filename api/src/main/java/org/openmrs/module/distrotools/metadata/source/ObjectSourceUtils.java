@@ -0,0 +1,335 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+package org.openmrs.module.distrotools.metadata.source;
+
+import org.openmrs.OpenmrsObject;
+import org.openmrs.api.APIException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Utility methods for adapting and combining object sources. Combined sources are lazy, i.e. they fetch objects from
+ * their underlying sources only as their own objects are fetched, so they can be passed to
+ * {@link org.openmrs.module.distrotools.api.DistroToolsService#installFromSource(ObjectSource)} or a
+ * {@link org.openmrs.module.distrotools.metadata.sync.MetadataSynchronizationRunner} without any intermediate lists.
+ *
+ * Sources close themselves when they are exhausted. Sources which stop early (e.g. a limited source, or an iterator
+ * which is closed) close any underlying sources which implement {@link Closeable}, as do all the sources and iterators
+ * returned by these methods.
+ */
+public class ObjectSourceUtils {
+
+	/**
+	 * Filters objects
+	 */
+	public interface Filter<T> {
+
+		/**
+		 * Gets whether an object should be included
+		 * @param obj the object
+		 * @return true to include object
+		 */
+		boolean accept(T obj) throws Exception;
+	}
+
+	/**
+	 * Maps objects to other values
+	 */
+	public interface Mapper<T, R> {
+
+		/**
+		 * Maps an object
+		 * @param obj the object
+		 * @return the mapped value
+		 */
+		R map(T obj) throws Exception;
+	}
+
+	/**
+	 * Adapts a source to an iterator. Exceptions from the source are thrown as API exceptions.
+	 * @param source the source
+	 * @return the iterator
+	 */
+	public static <T extends OpenmrsObject> Iterator<T> iterator(ObjectSource<T> source) {
+		return new SourceIterator<T>(source);
+	}
+
+	/**
+	 * Adapts a source to an iterable which can be iterated only once, e.g. for use in a for-each loop
+	 * @param source the source
+	 * @return the iterable
+	 */
+	public static <T extends OpenmrsObject> Iterable<T> iterable(final ObjectSource<T> source) {
+		return new Iterable<T>() {
+			private boolean iterated = false;
+
+			@Override
+			public Iterator<T> iterator() {
+				if (iterated) {
+					throw new IllegalStateException("Source can only be iterated once");
+				}
+				iterated = true;
+				return ObjectSourceUtils.iterator(source);
+			}
+		};
+	}
+
+	/**
+	 * Adapts an iterable (e.g. a list of objects) to a source
+	 * @param objects the objects
+	 * @return the source
+	 */
+	public static <T extends OpenmrsObject> ObjectSource<T> fromIterable(final Iterable<? extends T> objects) {
+		return new ObjectSource<T>() {
+			private Iterator<? extends T> iterator;
+
+			@Override
+			public T fetchNext() {
+				if (iterator == null) {
+					iterator = objects.iterator();
+				}
+				return iterator.hasNext() ? iterator.next() : null;
+			}
+		};
+	}
+
+	/**
+	 * Creates a source of the objects of another source which are accepted by a filter
+	 * @param source the source
+	 * @param filter the filter
+	 * @return the filtered source
+	 */
+	public static <T extends OpenmrsObject> ObjectSource<T> filter(final ObjectSource<T> source, final Filter<? super T> filter) {
+		return new WrappingSource<T>(Collections.singletonList(source)) {
+			@Override
+			public T fetchNext() throws Exception {
+				T next;
+				while ((next = source.fetchNext()) != null) {
+					if (filter.accept(next)) {
+						return next;
+					}
+				}
+				return null;
+			}
+		};
+	}
+
+	/**
+	 * Creates a source of the objects of another source mapped to other objects, e.g. by copying or converting them
+	 * @param source the source
+	 * @param mapper the mapper which must not return null
+	 * @return the mapped source
+	 */
+	public static <T extends OpenmrsObject, R extends OpenmrsObject> ObjectSource<R> map(final ObjectSource<T> source, final Mapper<? super T, ? extends R> mapper) {
+		return new WrappingSource<R>(Collections.singletonList(source)) {
+			@Override
+			public R fetchNext() throws Exception {
+				T next = source.fetchNext();
+				if (next == null) {
+					return null;
+				}
+
+				R mapped = mapper.map(next);
+				if (mapped == null) {
+					throw new APIException("Mapper returned null for " + next);
+				}
+				return mapped;
+			}
+		};
+	}
+
+	/**
+	 * Creates a source of the objects of several sources, one after the other
+	 * @param sources the sources
+	 * @return the concatenated source
+	 */
+	public static <T extends OpenmrsObject> ObjectSource<T> concat(final List<? extends ObjectSource<? extends T>> sources) {
+		return new WrappingSource<T>(sources) {
+			private int current = 0;
+
+			@Override
+			public T fetchNext() throws Exception {
+				while (current < sources.size()) {
+					T next = sources.get(current).fetchNext();
+					if (next != null) {
+						return next;
+					}
+					current++;
+				}
+				return null;
+			}
+		};
+	}
+
+	/**
+	 * Creates a source of the objects of another source, leaving out any object whose key is the same as the key of an
+	 * earlier object. Keys (not objects) of all the objects are remembered until the source is exhausted.
+	 * @param source the source
+	 * @param key the mapper which gets the key of each object, e.g. its UUID
+	 * @return the distinct source
+	 */
+	public static <T extends OpenmrsObject> ObjectSource<T> distinct(final ObjectSource<T> source, final Mapper<? super T, ?> key) {
+		return new WrappingSource<T>(Collections.singletonList(source)) {
+			private Set<Object> seen = new HashSet<Object>();
+
+			@Override
+			public T fetchNext() throws Exception {
+				T next;
+				while ((next = source.fetchNext()) != null) {
+					if (seen.add(key.map(next))) {
+						return next;
+					}
+				}
+				seen.clear();
+				return null;
+			}
+		};
+	}
+
+	/**
+	 * Creates a source of at most the given number of objects of another source. The other source is closed once the
+	 * limit is reached.
+	 * @param source the source
+	 * @param maxObjects the maximum number of objects
+	 * @return the limited source
+	 */
+	public static <T extends OpenmrsObject> ObjectSource<T> limit(final ObjectSource<T> source, final int maxObjects) {
+		return new WrappingSource<T>(Collections.singletonList(source)) {
+			private int fetched = 0;
+
+			@Override
+			public T fetchNext() throws Exception {
+				if (fetched >= maxObjects) {
+					close();
+					return null;
+				}
+
+				T next = source.fetchNext();
+				if (next != null) {
+					fetched++;
+				}
+				return next;
+			}
+		};
+	}
+
+	/**
+	 * Creates a source which fetches objects from another source on a producer thread, at most the given number of
+	 * objects ahead of the consumer
+	 * @param source the source
+	 * @param capacity the maximum number of objects to fetch ahead
+	 * @return the prefetching source
+	 * @see PrefetchingObjectSource
+	 */
+	public static <T extends OpenmrsObject> ObjectSource<T> prefetch(ObjectSource<T> source, int capacity) {
+		return new PrefetchingObjectSource<T>(source, capacity);
+	}
+
+	/**
+	 * Closes a source if it can be closed
+	 * @param source the source
+	 * @throws IOException if an error occurs
+	 */
+	public static void close(ObjectSource<?> source) throws IOException {
+		if (source instanceof Closeable) {
+			((Closeable) source).close();
+		}
+	}
+
+	/**
+	 * Base class for sources which fetch objects from other sources, and close them when closed
+	 */
+	protected static abstract class WrappingSource<T extends OpenmrsObject> implements ObjectSource<T>, Closeable {
+
+		private final List<? extends ObjectSource<?>> sources;
+
+		protected WrappingSource(List<? extends ObjectSource<?>> sources) {
+			this.sources = sources;
+		}
+
+		/**
+		 * @see Closeable#close()
+		 */
+		@Override
+		public void close() throws IOException {
+			for (ObjectSource<?> source : sources) {
+				ObjectSourceUtils.close(source);
+			}
+		}
+	}
+
+	/**
+	 * Iterator which fetches objects from a source one ahead
+	 */
+	protected static class SourceIterator<T extends OpenmrsObject> implements Iterator<T>, Closeable {
+
+		private final ObjectSource<T> source;
+
+		private T next;
+
+		private boolean exhausted = false;
+
+		public SourceIterator(ObjectSource<T> source) {
+			this.source = source;
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (next == null && !exhausted) {
+				try {
+					next = source.fetchNext();
+				}
+				catch (Exception ex) {
+					throw new APIException("Unable to fetch object from source", ex);
+				}
+				exhausted = (next == null);
+			}
+			return next != null;
+		}
+
+		@Override
+		public T next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			T ret = next;
+			next = null;
+			return ret;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		/**
+		 * Closes the iterator, closing the source if it can be closed
+		 * @throws IOException if an error occurs
+		 */
+		@Override
+		public void close() throws IOException {
+			exhausted = true;
+			next = null;
+			ObjectSourceUtils.close(source);
+		}
+	}
+}
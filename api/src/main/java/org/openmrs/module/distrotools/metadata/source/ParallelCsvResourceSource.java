@@ -0,0 +1,502 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+package org.openmrs.module.distrotools.metadata.source;
+
+import org.openmrs.OpenmrsObject;
+import org.openmrs.module.distrotools.DependencyGraphExecutor;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Abstract base class for object sources from very large CSV resources, which parses lines into objects on several
+ * threads. The resource is split into chunks of whole lines (taking account of quoted line breaks) and each chunk is
+ * parsed by a worker thread. Objects are fetched either in their original order, or in the order in which chunks are
+ * parsed if the caller doesn't need the original order.
+ *
+ * Resources which are uncompressed files are memory mapped a window at a time, so files of any size can be read.
+ * Other resources (e.g. compressed files or resources inside a jar) are streamed, and only the chunks being parsed are
+ * held in memory.
+ *
+ * As {@link #parseLine(CsvLine)} is called on worker threads, it must be thread safe and must not use the Hibernate
+ * session, e.g. to look up existing metadata.
+ */
+public abstract class ParallelCsvResourceSource<T extends OpenmrsObject> implements ObjectSource<T>, Closeable {
+
+	protected static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+
+	protected static final int DEFAULT_WINDOW_SIZE = 256 * 1024 * 1024;
+
+	private static final byte QUOTE = '"';
+
+	private static final byte LF = '\n';
+
+	private final Charset charset;
+
+	private final int threads;
+
+	private final boolean ordered;
+
+	private final int chunkSize;
+
+	private final ChunkReader reader;
+
+	private boolean skipHeader;
+
+	private boolean started = false;
+
+	private ExecutorService pool;
+
+	private final LinkedList<Future<List<T>>> orderedResults = new LinkedList<Future<List<T>>>();
+
+	private CompletionService<List<T>> unorderedResults;
+
+	private int running = 0;
+
+	private Iterator<T> current;
+
+	/**
+	 * Constructs a new source for a UTF-8 encoded resource which fetches objects in their original order
+	 * @param csvFile the resource file path
+	 * @param hasHeader true if file has a header row
+	 * @param threads the number of worker threads
+	 * @throws IOException if an error occurs
+	 */
+	public ParallelCsvResourceSource(String csvFile, boolean hasHeader, int threads) throws IOException {
+		this(csvFile, hasHeader, Charset.forName("UTF-8"), threads, true, DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Constructs a new source
+	 * @param csvFile the resource file path
+	 * @param hasHeader true if file has a header row
+	 * @param charset the charset of the resource
+	 * @param threads the number of worker threads
+	 * @param ordered true if objects should be fetched in their original order
+	 * @param chunkSize the approximate size in bytes of each chunk
+	 * @throws IOException if an error occurs
+	 */
+	public ParallelCsvResourceSource(String csvFile, boolean hasHeader, Charset charset, int threads, boolean ordered, int chunkSize) throws IOException {
+		this.charset = charset;
+		this.threads = threads;
+		this.ordered = ordered;
+		this.chunkSize = chunkSize;
+		this.skipHeader = hasHeader;
+		this.reader = openResource(csvFile);
+	}
+
+	/**
+	 * @see ObjectSource#fetchNext()
+	 */
+	@Override
+	public T fetchNext() throws Exception {
+		// Workers aren't started by the constructor as subclasses might not be initialized
+		if (!started) {
+			start();
+		}
+
+		while (current == null || !current.hasNext()) {
+			if (running == 0) {
+				close();
+				return null;
+			}
+
+			current = takeNextChunk().iterator();
+		}
+
+		return current.next();
+	}
+
+	/**
+	 * Parses a CSV line into an object. Called on worker threads and the line is reused so shouldn't be kept.
+	 * @param line the line
+	 * @return the object
+	 */
+	protected abstract T parseLine(CsvLine line) throws Exception;
+
+	/**
+	 * Closes the source, stopping any workers
+	 * @throws IOException if an error occurs
+	 */
+	@Override
+	public void close() throws IOException {
+		started = true;
+
+		if (pool != null) {
+			pool.shutdownNow();
+			pool = null;
+		}
+		orderedResults.clear();
+		running = 0;
+
+		reader.close();
+	}
+
+	/**
+	 * Starts parsing chunks
+	 * @throws IOException if an error occurs
+	 */
+	protected void start() throws IOException {
+		started = true;
+		pool = Executors.newFixedThreadPool(threads, new DependencyGraphExecutor.WorkerThreadFactory("csv-worker-", Thread.NORM_PRIORITY));
+		unorderedResults = new ExecutorCompletionService<List<T>>(pool);
+
+		// Limit the number of parsed chunks waiting to be fetched, and so the number of streamed chunks held in memory
+		for (int c = 0; c < threads * 2; c++) {
+			submitNextChunk();
+		}
+	}
+
+	/**
+	 * Reads the next chunk and submits it to the workers if there is one
+	 * @throws IOException if an error occurs
+	 */
+	protected void submitNextChunk() throws IOException {
+		ByteBuffer chunk = reader.nextChunk();
+		if (chunk == null) {
+			return;
+		}
+
+		ChunkTask task = new ChunkTask(chunk);
+		if (ordered) {
+			orderedResults.add(pool.submit(task));
+		}
+		else {
+			unorderedResults.submit(task);
+		}
+		running++;
+	}
+
+	/**
+	 * Waits for the next chunk to be parsed
+	 * @return the objects
+	 * @throws Exception if parsing failed
+	 */
+	protected List<T> takeNextChunk() throws Exception {
+		try {
+			List<T> objects = ordered ? orderedResults.removeFirst().get() : unorderedResults.take().get();
+			running--;
+			submitNextChunk();
+			return objects;
+		}
+		catch (ExecutionException ex) {
+			close();
+			throw (ex.getCause() instanceof Exception) ? (Exception) ex.getCause() : ex;
+		}
+	}
+
+	/**
+	 * Parses the lines of a chunk
+	 * @param chunk the chunk
+	 * @return the objects
+	 * @throws Exception if an error occurs
+	 */
+	protected List<T> parseChunk(ByteBuffer chunk) throws Exception {
+		CsvTokenizer tokenizer = new CsvTokenizer(chunk.duplicate());
+		CsvLine line = new CsvLine(charset);
+		List<T> objects = new ArrayList<T>();
+		while (tokenizer.next(line)) {
+			objects.add(parseLine(line));
+		}
+		return objects;
+	}
+
+	/**
+	 * Finds the positions which split a buffer into chunks of whole lines. Quotes are tracked so that line breaks in
+	 * quoted values aren't mistaken for the ends of lines (doubled quotes toggle the state twice).
+	 * @param buffer the buffer
+	 * @param start the position of the first line
+	 * @param chunkSize the minimum size of each chunk
+	 * @return the boundaries, i.e. the start of each chunk followed by the end of the last chunk
+	 */
+	protected static List<Integer> findChunkBoundaries(ByteBuffer buffer, int start, int chunkSize) {
+		List<Integer> boundaries = new ArrayList<Integer>();
+		boundaries.add(start);
+
+		int limit = buffer.limit();
+		long target = (long) start + chunkSize;
+		boolean inQuotes = false;
+
+		for (int b = start; b < limit; b++) {
+			byte ch = buffer.get(b);
+			if (ch == QUOTE) {
+				inQuotes = !inQuotes;
+			}
+			else if (ch == LF && !inQuotes && b + 1 >= target && b + 1 < limit) {
+				boundaries.add(b + 1);
+				target = (long) b + 1 + chunkSize;
+			}
+		}
+
+		boundaries.add(limit);
+		return boundaries;
+	}
+
+	/**
+	 * Opens a resource for reading in chunks, memory mapping it if it's an uncompressed file or else streaming it
+	 * @param csvFile the resource file path
+	 * @return the chunk reader
+	 * @throws IOException if an error occurs
+	 */
+	protected ChunkReader openResource(String csvFile) throws IOException {
+		URL url = ResourceUtils.getResource(getClass().getClassLoader(), csvFile);
+
+		File file = MappedCsvResourceSource.toFile(url);
+		if (file != null && !ResourceUtils.isCompressed(url)) {
+			return new MappedChunkReader(file, getWindowSize());
+		}
+
+		return new StreamChunkReader(Channels.newChannel(ResourceUtils.openStream(url)));
+	}
+
+	/**
+	 * Gets the size of each memory mapped window of a file. Windows are enlarged if they can't hold a whole line.
+	 * @return the size in bytes
+	 */
+	protected int getWindowSize() {
+		return DEFAULT_WINDOW_SIZE;
+	}
+
+	/**
+	 * Reads a resource as a sequence of chunks of whole lines
+	 */
+	protected abstract class ChunkReader implements Closeable {
+
+		/**
+		 * Reads the next chunk, skipping the header line if there is one
+		 * @return the chunk or null if there are no more
+		 * @throws IOException if an error occurs
+		 */
+		public ByteBuffer nextChunk() throws IOException {
+			ByteBuffer chunk = readChunk();
+
+			if (chunk != null && skipHeader) {
+				CsvTokenizer tokenizer = new CsvTokenizer(chunk.duplicate());
+				tokenizer.next(new CsvLine(charset));
+				chunk.position(tokenizer.position());
+				skipHeader = false;
+			}
+			return chunk;
+		}
+
+		/**
+		 * Reads the next chunk
+		 * @return the chunk or null if there are no more
+		 * @throws IOException if an error occurs
+		 */
+		protected abstract ByteBuffer readChunk() throws IOException;
+	}
+
+	/**
+	 * Reads chunks from a file by memory mapping it a window at a time. Each window starts at the end of the last
+	 * complete chunk of the previous window.
+	 */
+	protected class MappedChunkReader extends ChunkReader {
+
+		private final RandomAccessFile file;
+
+		private final FileChannel channel;
+
+		private final int windowSize;
+
+		private long windowStart = 0;
+
+		private ByteBuffer window;
+
+		private List<Integer> boundaries;
+
+		private int next = 0;
+
+		public MappedChunkReader(File file, int windowSize) throws IOException {
+			this.file = new RandomAccessFile(file, "r");
+			this.channel = this.file.getChannel();
+			this.windowSize = windowSize;
+		}
+
+		/**
+		 * @see ChunkReader#readChunk()
+		 */
+		@Override
+		protected ByteBuffer readChunk() throws IOException {
+			if ((boundaries == null || next >= boundaries.size() - 1) && !mapNextWindow()) {
+				return null;
+			}
+
+			ByteBuffer chunk = window.duplicate();
+			chunk.limit(boundaries.get(next + 1));
+			chunk.position(boundaries.get(next));
+			next++;
+			return chunk.slice();
+		}
+
+		/**
+		 * Maps the next window of the file
+		 * @return true if a window was mapped or false if the end of the file has been reached
+		 * @throws IOException if an error occurs
+		 */
+		protected boolean mapNextWindow() throws IOException {
+			if (boundaries != null) {
+				windowStart += boundaries.get(boundaries.size() - 1);
+			}
+
+			long size = windowSize;
+			long fileSize = channel.size();
+
+			while (windowStart < fileSize) {
+				long length = Math.min(size, fileSize - windowStart);
+				window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, length);
+				boundaries = findChunkBoundaries(window, 0, chunkSize);
+				next = 0;
+
+				if (windowStart + length == fileSize) {
+					return true;
+				}
+
+				// Unless this is the last window, its last chunk may end partway through a line so is read again as
+				// the start of the next window. If that is the only chunk then the window is too small.
+				if (boundaries.size() > 2) {
+					boundaries.remove(boundaries.size() - 1);
+					return true;
+				}
+				if (length >= Integer.MAX_VALUE) {
+					throw new IOException("Line starting at byte " + windowStart + " is too long");
+				}
+				size = Math.min(size * 2, Integer.MAX_VALUE);
+			}
+			return false;
+		}
+
+		/**
+		 * @see java.io.Closeable#close()
+		 */
+		@Override
+		public void close() throws IOException {
+			file.close();
+		}
+	}
+
+	/**
+	 * Reads chunks from a stream. Each chunk is copied from a read buffer, which grows if a chunk doesn't fit in it.
+	 */
+	protected class StreamChunkReader extends ChunkReader {
+
+		private final ReadableByteChannel channel;
+
+		private ByteBuffer buffer;
+
+		private boolean eof = false;
+
+		public StreamChunkReader(ReadableByteChannel channel) {
+			this.channel = channel;
+			this.buffer = ByteBuffer.allocate((int) Math.min(Integer.MAX_VALUE, Math.max((long) chunkSize * 2, ResourceUtils.BUFFER_SIZE)));
+			this.buffer.flip();
+		}
+
+		/**
+		 * @see ChunkReader#readChunk()
+		 */
+		@Override
+		protected ByteBuffer readChunk() throws IOException {
+			while (true) {
+				// A chunk can end at the first boundary, or at the end of the stream once it has all been read
+				List<Integer> boundaries = findChunkBoundaries(buffer, buffer.position(), chunkSize);
+				if (boundaries.size() > 2 || (eof && buffer.hasRemaining())) {
+					int end = boundaries.get(1);
+
+					ByteBuffer source = buffer.duplicate();
+					source.limit(end);
+					ByteBuffer chunk = ByteBuffer.allocate(source.remaining());
+					chunk.put(source);
+					chunk.flip();
+
+					buffer.position(end);
+					return chunk;
+				}
+				if (eof) {
+					return null;
+				}
+
+				fill();
+			}
+		}
+
+		/**
+		 * Reads more bytes from the stream into the buffer, keeping any unread bytes
+		 * @throws IOException if an error occurs
+		 */
+		protected void fill() throws IOException {
+			buffer.compact();
+
+			if (!buffer.hasRemaining()) {
+				ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+				buffer.flip();
+				larger.put(buffer);
+				buffer = larger;
+			}
+
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer) < 0) {
+					eof = true;
+					break;
+				}
+			}
+			buffer.flip();
+		}
+
+		/**
+		 * @see java.io.Closeable#close()
+		 */
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Task which parses a chunk on a worker thread
+	 */
+	protected class ChunkTask implements Callable<List<T>> {
+
+		private final ByteBuffer chunk;
+
+		public ChunkTask(ByteBuffer chunk) {
+			this.chunk = chunk;
+		}
+
+		@Override
+		public List<T> call() throws Exception {
+			return parseChunk(chunk);
+		}
+	}
+}
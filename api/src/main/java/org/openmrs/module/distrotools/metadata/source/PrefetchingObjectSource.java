@@ -0,0 +1,146 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+package org.openmrs.module.distrotools.metadata.source;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.OpenmrsObject;
+import org.openmrs.api.APIException;
+import org.openmrs.module.distrotools.DependencyGraphExecutor;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Source which fetches objects from another (e.g. slow) source on a producer thread, so that the producer's I/O
+ * overlaps with the consumer's work, e.g. saving objects. Fetched objects are held in a bounded buffer and the producer
+ * waits whenever the buffer is full, so it never gets more than the given number of objects ahead of the consumer.
+ *
+ * As the other source is read on the producer thread, it must not use the Hibernate session, e.g. to look up existing
+ * metadata. Once the producer has started, the other source is closed by the producer when it stops, so that it's never
+ * closed while the producer is still fetching from it.
+ */
+public class PrefetchingObjectSource<T extends OpenmrsObject> implements ObjectSource<T>, Closeable {
+
+	protected static final Log log = LogFactory.getLog(PrefetchingObjectSource.class);
+
+	private static final Object END = new Object();
+
+	private final ObjectSource<T> source;
+
+	private final BlockingQueue<Object> buffer;
+
+	private Thread producer;
+
+	private volatile Throwable failure;
+
+	private boolean finished = false;
+
+	/**
+	 * Creates a new prefetching source
+	 * @param source the source to fetch from
+	 * @param capacity the maximum number of objects to fetch ahead
+	 */
+	public PrefetchingObjectSource(ObjectSource<T> source, int capacity) {
+		this.source = source;
+		this.buffer = new ArrayBlockingQueue<Object>(capacity);
+	}
+
+	/**
+	 * @see ObjectSource#fetchNext()
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public T fetchNext() throws Exception {
+		if (finished) {
+			return null;
+		}
+		if (producer == null) {
+			producer = new DependencyGraphExecutor.WorkerThreadFactory("prefetch-", Thread.NORM_PRIORITY).newThread(new Producer());
+			producer.start();
+		}
+
+		Object next = buffer.take();
+		if (next == END) {
+			finished = true;
+
+			if (failure instanceof Exception) {
+				throw (Exception) failure;
+			}
+			else if (failure != null) {
+				throw new APIException("Unable to fetch object", failure);
+			}
+			return null;
+		}
+		return (T) next;
+	}
+
+	/**
+	 * Closes this source, stopping the producer and closing the other source if it can be closed. If the producer has
+	 * started then it closes the other source once it stops, as it may be in the middle of fetching an object.
+	 * @throws IOException if an error occurs
+	 */
+	@Override
+	public void close() throws IOException {
+		finished = true;
+		buffer.clear();
+
+		if (producer != null) {
+			producer.interrupt();
+		}
+		else {
+			ObjectSourceUtils.close(source);
+		}
+	}
+
+	/**
+	 * Fetches objects from the other source into the buffer until it is exhausted, fails or is interrupted
+	 */
+	protected class Producer implements Runnable {
+
+		@Override
+		public void run() {
+			try {
+				try {
+					T next;
+					while ((next = source.fetchNext()) != null) {
+						buffer.put(next);
+					}
+				}
+				catch (InterruptedException ex) {
+					throw ex;
+				}
+				catch (Throwable ex) {
+					failure = ex;
+				}
+
+				buffer.put(END);
+			}
+			catch (InterruptedException ex) {
+				log.debug("Prefetching stopped as source was closed");
+			}
+			finally {
+				try {
+					ObjectSourceUtils.close(source);
+				}
+				catch (IOException ex) {
+					log.warn("Unable to close source", ex);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,100 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+package org.openmrs.module.distrotools.metadata.source;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Utility methods for opening the resources read by object sources. Resources may be gzip compressed, which is
+ * detected by their first bytes, so a compressed resource can be shipped under its original name or with a .gz
+ * extension.
+ */
+public class ResourceUtils {
+
+	public static final int BUFFER_SIZE = 64 * 1024;
+
+	private static final int GZIP_MAGIC = 0x8b1f;
+
+	/**
+	 * Gets the URL of a resource
+	 * @param loader the class loader
+	 * @param path the resource path
+	 * @return the URL
+	 * @throws IOException if resource doesn't exist
+	 */
+	public static URL getResource(ClassLoader loader, String path) throws IOException {
+		URL url = loader.getResource(path);
+		if (url == null) {
+			throw new IOException("Unable to find resource " + path);
+		}
+		return url;
+	}
+
+	/**
+	 * Opens a buffered stream of a resource, decompressing it if it's compressed
+	 * @param url the resource URL
+	 * @return the stream
+	 * @throws IOException if an error occurs
+	 */
+	public static InputStream openStream(URL url) throws IOException {
+		InputStream in = new BufferedInputStream(url.openStream(), BUFFER_SIZE);
+		try {
+			if (isGzip(in)) {
+				// Decompressed bytes are buffered too as readers often read a few bytes at a time
+				return new BufferedInputStream(new GZIPInputStream(in, BUFFER_SIZE), BUFFER_SIZE);
+			}
+			return in;
+		}
+		catch (IOException ex) {
+			in.close();
+			throw ex;
+		}
+	}
+
+	/**
+	 * Checks whether a resource is compressed
+	 * @param url the resource URL
+	 * @return true if resource is compressed
+	 * @throws IOException if an error occurs
+	 */
+	public static boolean isCompressed(URL url) throws IOException {
+		InputStream in = new BufferedInputStream(url.openStream(), 2);
+		try {
+			return isGzip(in);
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Checks whether a stream starts with the gzip magic number, leaving the stream at its start
+	 * @param in the stream which must support mark
+	 * @return true if stream is gzip compressed
+	 * @throws IOException if an error occurs
+	 */
+	protected static boolean isGzip(InputStream in) throws IOException {
+		in.mark(2);
+		int b1 = in.read();
+		int b2 = in.read();
+		in.reset();
+
+		return b1 >= 0 && b2 >= 0 && ((b2 << 8) | b1) == GZIP_MAGIC;
+	}
+}
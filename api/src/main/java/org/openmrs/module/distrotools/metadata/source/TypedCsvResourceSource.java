@@ -0,0 +1,333 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+package org.openmrs.module.distrotools.metadata.source;
+
+import org.openmrs.OpenmrsObject;
+import org.openmrs.api.APIException;
+import org.openmrs.module.distrotools.metadata.MetadataUtils;
+import org.openmrs.module.distrotools.metadata.MissingMetadataException;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Abstract base class for object sources from CSV resources with a header row, whose columns are referenced by name
+ * and converted to typed values. Subclasses declare their columns as fields, e.g.
+ *
+ * <pre>
+ * private final Column&lt;Integer&gt; code = intColumn("Code");
+ * private final Column&lt;Location&gt; parent = referenceColumn("Parent", Location.class);
+ * </pre>
+ *
+ * so that column names are resolved and converters are created once, and then read typed values from the row passed
+ * to {@link #parseRow(Row)}. Values are trimmed with blank values converted to null, like other CSV sources.
+ */
+public abstract class TypedCsvResourceSource<T extends OpenmrsObject> extends MappedCsvResourceSource<T> {
+
+	private final String csvFile;
+
+	private final Map<String, Integer> columnIndexes = new HashMap<String, Integer>();
+
+	private final Row row = new Row();
+
+	/**
+	 * Constructs a new source for a UTF-8 encoded resource
+	 * @param csvFile the resource file path
+	 * @throws IOException if an error occurs
+	 */
+	public TypedCsvResourceSource(String csvFile) throws IOException {
+		this(csvFile, Charset.forName("UTF-8"));
+	}
+
+	/**
+	 * Constructs a new source
+	 * @param csvFile the resource file path
+	 * @param charset the charset of the resource
+	 * @throws IOException if an error occurs
+	 */
+	public TypedCsvResourceSource(String csvFile, Charset charset) throws IOException {
+		super(csvFile, true, charset);
+
+		this.csvFile = csvFile;
+
+		String[] header = getHeader();
+		if (header != null) {
+			for (int c = 0; c < header.length; c++) {
+				if (header[c] != null && !columnIndexes.containsKey(header[c])) {
+					columnIndexes.put(header[c], c);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @see MappedCsvResourceSource#parseLine(CsvLine)
+	 */
+	@Override
+	protected final T parseLine(CsvLine line) throws Exception {
+		row.line = line;
+		return parseRow(row);
+	}
+
+	/**
+	 * Parses a CSV row into an object. The row is reused so shouldn't be kept.
+	 * @param row the row
+	 * @return the object
+	 */
+	protected abstract T parseRow(Row row) throws Exception;
+
+	/**
+	 * Declares a column with the given converter
+	 * @param name the column name
+	 * @param converter the converter
+	 * @return the column
+	 * @throws APIException if the resource has no such column
+	 */
+	protected <V> Column<V> column(String name, Converter<V> converter) {
+		Integer index = columnIndexes.get(name);
+		if (index == null) {
+			throw new APIException("Resource " + csvFile + " has no column named '" + name + "'");
+		}
+		return new Column<V>(name, index, converter);
+	}
+
+	/**
+	 * Declares a column of strings
+	 * @param name the column name
+	 * @return the column
+	 */
+	protected Column<String> stringColumn(String name) {
+		return column(name, new StringConverter());
+	}
+
+	/**
+	 * Declares a column of integers
+	 * @param name the column name
+	 * @return the column
+	 */
+	protected Column<Integer> intColumn(String name) {
+		return column(name, new IntegerConverter());
+	}
+
+	/**
+	 * Declares a column of booleans, i.e. true/false, yes/no or 1/0
+	 * @param name the column name
+	 * @return the column
+	 */
+	protected Column<Boolean> booleanColumn(String name) {
+		return column(name, new BooleanConverter());
+	}
+
+	/**
+	 * Declares a column of dates
+	 * @param name the column name
+	 * @param pattern the date pattern, e.g. yyyy-MM-dd
+	 * @return the column
+	 */
+	protected Column<Date> dateColumn(String name, String pattern) {
+		return column(name, new DateConverter(pattern));
+	}
+
+	/**
+	 * Declares a column of UUIDs, which are validated but kept as strings
+	 * @param name the column name
+	 * @return the column
+	 */
+	protected Column<String> uuidColumn(String name) {
+		return column(name, new UuidConverter());
+	}
+
+	/**
+	 * Declares a column of references to existing metadata
+	 * @param name the column name
+	 * @param clazz the class of the referenced objects
+	 * @return the column
+	 */
+	protected <R extends OpenmrsObject> Column<R> referenceColumn(String name, Class<R> clazz) {
+		return column(name, new ReferenceConverter<R>(clazz));
+	}
+
+	/**
+	 * Converts non-blank values of a column
+	 */
+	public interface Converter<V> {
+
+		/**
+		 * Converts a value
+		 * @param value the trimmed non-blank value
+		 * @return the converted value
+		 * @throws Exception if value is invalid
+		 */
+		V convert(String value) throws Exception;
+	}
+
+	/**
+	 * A column resolved by name
+	 */
+	public static class Column<V> {
+
+		private final String name;
+
+		private final int index;
+
+		private final Converter<V> converter;
+
+		protected Column(String name, int index, Converter<V> converter) {
+			this.name = name;
+			this.index = index;
+			this.converter = converter;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public int getIndex() {
+			return index;
+		}
+	}
+
+	/**
+	 * Reusable view of the current row
+	 */
+	public static class Row {
+
+		private CsvLine line;
+
+		/**
+		 * Gets the converted value of a column
+		 * @param column the column
+		 * @return the value or null if blank
+		 * @throws IllegalArgumentException if the value can't be converted
+		 * @throws MissingMetadataException if the value references metadata which doesn't exist
+		 */
+		public <V> V get(Column<V> column) {
+			String value = line.get(column.index);
+			if (value == null) {
+				return null;
+			}
+
+			try {
+				return column.converter.convert(value);
+			}
+			catch (MissingMetadataException ex) {
+				throw ex;
+			}
+			catch (Exception ex) {
+				throw new IllegalArgumentException("Invalid value '" + value + "' in column '" + column.name + "'", ex);
+			}
+		}
+
+		/**
+		 * Gets the raw value of a column
+		 * @param column the column
+		 * @return the trimmed value or null if blank
+		 */
+		public String getString(Column<?> column) {
+			return line.get(column.index);
+		}
+	}
+
+	/**
+	 * Converter which keeps values as strings
+	 */
+	public static class StringConverter implements Converter<String> {
+		@Override
+		public String convert(String value) {
+			return value;
+		}
+	}
+
+	/**
+	 * Converter for integer values
+	 */
+	public static class IntegerConverter implements Converter<Integer> {
+		@Override
+		public Integer convert(String value) {
+			return Integer.valueOf(value);
+		}
+	}
+
+	/**
+	 * Converter for boolean values, i.e. true/false, yes/no or 1/0
+	 */
+	public static class BooleanConverter implements Converter<Boolean> {
+		@Override
+		public Boolean convert(String value) {
+			if ("true".equalsIgnoreCase(value) || "yes".equalsIgnoreCase(value) || "1".equals(value)) {
+				return Boolean.TRUE;
+			}
+			else if ("false".equalsIgnoreCase(value) || "no".equalsIgnoreCase(value) || "0".equals(value)) {
+				return Boolean.FALSE;
+			}
+			throw new IllegalArgumentException("Not a boolean value");
+		}
+	}
+
+	/**
+	 * Converter for date values. Not thread safe, as the date format is created once.
+	 */
+	public static class DateConverter implements Converter<Date> {
+
+		private final SimpleDateFormat format;
+
+		public DateConverter(String pattern) {
+			this.format = new SimpleDateFormat(pattern);
+			this.format.setLenient(false);
+		}
+
+		@Override
+		public Date convert(String value) throws ParseException {
+			return format.parse(value);
+		}
+	}
+
+	/**
+	 * Converter which validates UUID values
+	 */
+	public static class UuidConverter implements Converter<String> {
+		@Override
+		public String convert(String value) {
+			if (value.length() != 36) {
+				throw new IllegalArgumentException("Not a UUID");
+			}
+			UUID.fromString(value);
+			return value;
+		}
+	}
+
+	/**
+	 * Converter for references to existing metadata
+	 */
+	public static class ReferenceConverter<R extends OpenmrsObject> implements Converter<R> {
+
+		private final Class<R> clazz;
+
+		public ReferenceConverter(Class<R> clazz) {
+			this.clazz = clazz;
+		}
+
+		@Override
+		public R convert(String value) {
+			return MetadataUtils.reference(clazz, value);
+		}
+	}
+}
@@ -19,8 +19,13 @@ import org.apache.commons.logging.LogFactory;
 import org.openmrs.OpenmrsMetadata;
 import org.openmrs.api.context.Context;
 import org.openmrs.module.distrotools.api.DistroToolsService;
+import org.openmrs.module.distrotools.metadata.source.ChangeTrackingSource;
 import org.openmrs.module.distrotools.metadata.source.ObjectSource;
+import org.openmrs.module.distrotools.metadata.source.ObjectSourceUtils;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -55,32 +60,92 @@ public class MetadataSynchronizationRunner<T extends OpenmrsMetadata> {
 	}
 
 	/**
-	 * Performs the synchronization
+	 * Performs the synchronization. If the source knows that its objects are unchanged since they were last
+	 * synchronized, then nothing is synchronized or retired. Otherwise the source is marked as synchronized if all of
+	 * its objects were fetched and synchronized without error, and if this runs inside a transaction, only once that
+	 * transaction commits. The source is always closed.
 	 */
 	public SyncResult<T> run() {
-		DistroToolsService distroToolsService = Context.getService(DistroToolsService.class);
+		try {
+			if (source instanceof ChangeTrackingSource && ((ChangeTrackingSource<?>) source).isUnchanged()) {
+				log.info("Skipping synchronization as source is unchanged");
+				return result;
+			}
 
-		initializeCache();
+			DistroToolsService distroToolsService = Context.getService(DistroToolsService.class);
 
-		try {
-			T next;
+			initializeCache();
+
+			boolean completed = false;
+
+			try {
+				T next;
 
-			while ((next = source.fetchNext()) != null) {
-				Object syncKey = sync.getObjectSyncKey(next);
+				while ((next = source.fetchNext()) != null) {
+					Object syncKey = sync.getObjectSyncKey(next);
 
-				if (syncKey == null) {
-					throw new RuntimeException("Incoming object '" + next.getName() + "' has no sync key");
-				} else {
-					synchronizeObject(distroToolsService, syncKey, next);
+					if (syncKey == null) {
+						throw new RuntimeException("Incoming object '" + next.getName() + "' has no sync key");
+					} else {
+						synchronizeObject(distroToolsService, syncKey, next);
+					}
 				}
+
+				completed = true;
+			} catch (Exception e) {
+				log.error("Unable to synchronize all objects from source", e);
+			}
+
+			retireExistingNotInSource(distroToolsService);
+
+			if (completed) {
+				markSourceSynchronizedOnCommit();
 			}
-		} catch (Exception e) {
-			e.printStackTrace();
+
+			return result;
+		}
+		finally {
+			closeSource();
 		}
+	}
 
-		retireExistingNotInSource(distroToolsService);
+	/**
+	 * Marks the source as synchronized once the current transaction commits, so that a rolled back synchronization
+	 * isn't recorded as up to date, or immediately if there is no transaction
+	 */
+	protected void markSourceSynchronizedOnCommit() {
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new MarkSynchronizedSynchronization());
+		}
+		else {
+			markSourceSynchronized();
+		}
+	}
 
-		return result;
+	/**
+	 * Marks the source as synchronized if it tracks changes
+	 */
+	protected void markSourceSynchronized() {
+		if (source instanceof ChangeTrackingSource) {
+			try {
+				((ChangeTrackingSource<?>) source).markSynchronized();
+			}
+			catch (IOException ex) {
+				log.warn("Unable to mark source as synchronized", ex);
+			}
+		}
+	}
+
+	/**
+	 * Closes the source if it can be closed
+	 */
+	protected void closeSource() {
+		try {
+			ObjectSourceUtils.close(source);
+		}
+		catch (IOException ex) {
+			log.warn("Unable to close source", ex);
+		}
 	}
 
 	/**
@@ -152,4 +217,18 @@ public class MetadataSynchronizationRunner<T extends OpenmrsMetadata> {
 			}
 		}
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Transaction synchronization which marks the source as synchronized after commit
+	 */
+	protected class MarkSynchronizedSynchronization extends TransactionSynchronizationAdapter {
+
+		/**
+		 * @see TransactionSynchronizationAdapter#afterCommit()
+		 */
+		@Override
+		public void afterCommit() {
+			markSourceSynchronized();
+		}
+	}
+}
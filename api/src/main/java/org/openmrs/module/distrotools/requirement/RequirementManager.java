@@ -16,20 +16,46 @@ package org.openmrs.module.distrotools.requirement;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.openmrs.api.APIException;
+import org.openmrs.api.context.Context;
+import org.openmrs.api.context.UserContext;
 import org.openmrs.module.distrotools.ContentManager;
+import org.openmrs.module.distrotools.DependencyGraphExecutor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
- * Requirements manager
+ * Requirements manager. Requirements are checked concurrently, each in its own session, and all unsatisfied
+ * requirements are reported together. Satisfied requirements are remembered for the lifetime of the JVM, by class,
+ * name, required version and found version, so that they aren't checked again by later refreshes unless the version
+ * found in the system has changed.
  */
 @Component
 public class RequirementManager implements ContentManager {
 
 	protected static final Log log = LogFactory.getLog(RequirementManager.class);
 
+	/**
+	 * The maximum number of requirements which can be checked at once
+	 */
+	protected static final int MAX_PARALLEL_CHECKS = 4;
+
+	/**
+	 * Keys of satisfied requirements. Static as beans are recreated by context refreshes.
+	 */
+	private static final Set<String> satisfiedCache = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
 	@Autowired(required = false)
 	private Set<Requirement> requirements;
 
@@ -48,17 +74,152 @@ public class RequirementManager implements ContentManager {
 	public void refresh() {
 		log.info("Checking all requirements...");
 
-		if (requirements != null) {
-			for (Requirement requirement : requirements) {
-				boolean satisfied = requirement.isSatisfied();
+		if (requirements == null) {
+			return;
+		}
+
+		List<Requirement> unchecked = new ArrayList<Requirement>();
+		for (Requirement requirement : requirements) {
+			String key = getCacheKey(requirement);
+			if (key != null && satisfiedCache.contains(key)) {
+				log.info("Requirement '" + requirement.getName() + "' was previously satisfied");
+			}
+			else {
+				unchecked.add(requirement);
+			}
+		}
+
+		List<Result> failures = new ArrayList<Result>();
+		for (Result result : checkRequirements(unchecked)) {
+			Requirement requirement = result.getRequirement();
 
-				if (satisfied) {
-					log.info("Requirement '" + requirement.getName() + "' is satisfied");
-				} else {
-					throw new UnsatisfiedRequirementException(requirement);
+			if (result.isSatisfied()) {
+				log.info("Requirement '" + requirement.getName() + "' is satisfied");
+
+				satisfiedCache.add(getCacheKey(requirement, result.getFoundVersion()));
+			}
+			else {
+				if (result.getError() != null) {
+					log.error("Unable to check requirement '" + requirement.getName() + "'", result.getError());
 				}
+				failures.add(result);
+			}
+		}
+
+		if (!failures.isEmpty()) {
+			throw new UnsatisfiedRequirementsException(failures);
+		}
+	}
+
+	/**
+	 * Checks the given requirements, concurrently if there are several
+	 * @param requirements the requirements
+	 * @return the results in the same order as the requirements
+	 */
+	protected List<Result> checkRequirements(List<Requirement> requirements) {
+		List<Result> results = new ArrayList<Result>();
+
+		if (requirements.size() <= 1) {
+			for (Requirement requirement : requirements) {
+				results.add(checkRequirement(requirement));
+			}
+			return results;
+		}
+
+		final UserContext userContext = Context.getUserContext();
+		int poolSize = Math.min(MAX_PARALLEL_CHECKS, requirements.size());
+		ExecutorService pool = Executors.newFixedThreadPool(poolSize, new DependencyGraphExecutor.WorkerThreadFactory("requirement-check-", Thread.NORM_PRIORITY));
+
+		try {
+			List<Future<Result>> futures = new ArrayList<Future<Result>>();
+			for (final Requirement requirement : requirements) {
+				futures.add(pool.submit(new Callable<Result>() {
+					@Override
+					public Result call() {
+						return checkRequirementInNewSession(requirement, userContext);
+					}
+				}));
+			}
+
+			for (Future<Result> future : futures) {
+				results.add(future.get());
 			}
 		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new APIException("Interrupted whilst checking requirements", ex);
+		}
+		catch (ExecutionException ex) {
+			throw new APIException("Unable to check requirements", ex.getCause());
+		}
+		finally {
+			pool.shutdownNow();
+		}
+
+		return results;
+	}
+
+	/**
+	 * Checks a requirement in a new session on the current thread
+	 * @param requirement the requirement
+	 * @param userContext the user context of the thread which started the checks
+	 * @return the result
+	 */
+	protected Result checkRequirementInNewSession(Requirement requirement, UserContext userContext) {
+		Context.openSession();
+		try {
+			Context.setUserContext(userContext);
+			return checkRequirement(requirement);
+		}
+		finally {
+			Context.closeSession();
+		}
+	}
+
+	/**
+	 * Checks a requirement, catching any exception it throws
+	 * @param requirement the requirement
+	 * @return the result
+	 */
+	protected Result checkRequirement(Requirement requirement) {
+		try {
+			boolean satisfied = requirement.isSatisfied();
+			return new Result(requirement, satisfied, requirement.getFoundVersion(), null);
+		}
+		catch (Exception ex) {
+			return new Result(requirement, false, null, ex);
+		}
+	}
+
+	/**
+	 * Clears the cache of satisfied requirements
+	 */
+	public static void clearCache() {
+		satisfiedCache.clear();
+	}
+
+	/**
+	 * Gets the key by which a requirement is cached, using the version currently found in the system
+	 * @param requirement the requirement
+	 * @return the key, or null if the found version can't be determined
+	 */
+	protected static String getCacheKey(Requirement requirement) {
+		try {
+			return getCacheKey(requirement, requirement.getFoundVersion());
+		}
+		catch (Exception ex) {
+			return null;
+		}
+	}
+
+	/**
+	 * Gets the key by which a requirement is cached
+	 * @param requirement the requirement
+	 * @param foundVersion the found version
+	 * @return the key
+	 */
+	protected static String getCacheKey(Requirement requirement, String foundVersion) {
+		return requirement.getClass().getName() + ":" + requirement.getName() + ":" + requirement.getRequiredVersion() + ":" + foundVersion;
 	}
 
 	/**
@@ -68,4 +229,45 @@ public class RequirementManager implements ContentManager {
 	public Set<Requirement> getAllRequirements() {
 		return requirements;
 	}
+
+	/**
+	 * The result of checking a requirement
+	 */
+	public static class Result {
+
+		private final Requirement requirement;
+
+		private final boolean satisfied;
+
+		private final String foundVersion;
+
+		private final Throwable error;
+
+		public Result(Requirement requirement, boolean satisfied, String foundVersion, Throwable error) {
+			this.requirement = requirement;
+			this.satisfied = satisfied;
+			this.foundVersion = foundVersion;
+			this.error = error;
+		}
+
+		public Requirement getRequirement() {
+			return requirement;
+		}
+
+		public boolean isSatisfied() {
+			return satisfied;
+		}
+
+		public String getFoundVersion() {
+			return foundVersion;
+		}
+
+		/**
+		 * Gets the error thrown whilst checking the requirement
+		 * @return the error or null
+		 */
+		public Throwable getError() {
+			return error;
+		}
+	}
 }
\ No newline at end of file
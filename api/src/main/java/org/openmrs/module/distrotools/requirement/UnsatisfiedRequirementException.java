@@ -31,6 +31,18 @@ public class UnsatisfiedRequirementException extends RuntimeException {
 		this.requirement = requirement;
 	}
 
+	/**
+	 * Creates a new exception with the given message
+	 * @param message the message
+	 * @param requirement the unsatisfied requirement
+	 * @param cause the cause (may be null)
+	 */
+	protected UnsatisfiedRequirementException(String message, Requirement requirement, Throwable cause) {
+		super(message, cause);
+
+		this.requirement = requirement;
+	}
+
 	/**
 	 * Gets the unsatisfied requirement
 	 * @return the requirement
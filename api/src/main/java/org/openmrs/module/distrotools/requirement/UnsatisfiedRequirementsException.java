@@ -0,0 +1,92 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+package org.openmrs.module.distrotools.requirement;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Exception class for when one or more requirements are unsatisfied, or couldn't be checked
+ */
+public class UnsatisfiedRequirementsException extends UnsatisfiedRequirementException {
+
+	private List<RequirementManager.Result> failures;
+
+	/**
+	 * Creates a new exception
+	 * @param failures the results of the unsatisfied requirements
+	 */
+	public UnsatisfiedRequirementsException(List<RequirementManager.Result> failures) {
+		super(createMessage(failures), failures.get(0).getRequirement(), getFirstError(failures));
+
+		this.failures = new ArrayList<RequirementManager.Result>(failures);
+	}
+
+	/**
+	 * Gets the results of all unsatisfied requirements
+	 * @return the results
+	 */
+	public List<RequirementManager.Result> getFailures() {
+		return Collections.unmodifiableList(failures);
+	}
+
+	/**
+	 * Gets all unsatisfied requirements
+	 * @return the requirements
+	 */
+	public List<Requirement> getRequirements() {
+		List<Requirement> requirements = new ArrayList<Requirement>();
+		for (RequirementManager.Result failure : failures) {
+			requirements.add(failure.getRequirement());
+		}
+		return requirements;
+	}
+
+	/**
+	 * Creates the message which lists every failure
+	 * @param failures the failures
+	 * @return the message
+	 */
+	protected static String createMessage(List<RequirementManager.Result> failures) {
+		StringBuilder sb = new StringBuilder(failures.size() + " requirement(s) not satisfied:");
+		for (RequirementManager.Result failure : failures) {
+			Requirement requirement = failure.getRequirement();
+			sb.append("\n - Requirement '").append(requirement.getName()).append("' ");
+
+			if (failure.getError() != null) {
+				sb.append("could not be checked: ").append(failure.getError());
+			}
+			else {
+				sb.append("is not satisfied. Required ").append(requirement.getRequiredVersion()).append(", but found ").append(failure.getFoundVersion());
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Gets the first error which occurred whilst checking requirements
+	 * @param failures the failures
+	 * @return the error or null
+	 */
+	protected static Throwable getFirstError(List<RequirementManager.Result> failures) {
+		for (RequirementManager.Result failure : failures) {
+			if (failure.getError() != null) {
+				return failure.getError();
+			}
+		}
+		return null;
+	}
+}
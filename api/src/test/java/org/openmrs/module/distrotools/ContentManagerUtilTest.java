@@ -0,0 +1,117 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+package org.openmrs.module.distrotools;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.*;
+
+/**
+ * Tests for {@link ContentManagerUtil}
+ */
+public class ContentManagerUtilTest {
+
+	/**
+	 * @see ContentManagerUtil#getDependencies(java.util.List)
+	 */
+	@Test
+	public void getDependencies_shouldUseDeclaredDependenciesAndKeepPriorityOrderOfOthers() {
+		ContentManager base = new TestBaseManager();
+		DependentContentManager apps = new TestDependentManager(10, Collections.<Class<? extends ContentManager>>singleton(TestBaseManager.class));
+		DependentContentManager reports = new TestDependentManager(10, Collections.<Class<? extends ContentManager>>singleton(TestBaseManager.class));
+		ContentManager last = new TestManager(100);
+
+		List<ContentManager> managers = Arrays.asList(base, apps, reports, last);
+		Map<ContentManager, List<ContentManager>> dependencies = ContentManagerUtil.getDependencies(managers);
+
+		Assert.assertThat(dependencies.get(base), hasSize(0));
+		Assert.assertThat(dependencies.get(apps), contains(base));
+		Assert.assertThat(dependencies.get(reports), contains(base));
+		Assert.assertThat(dependencies.get(last), contains(base, apps, reports));
+	}
+
+	/**
+	 * @see ContentManagerUtil#getDependencies(java.util.List)
+	 */
+	@Test
+	public void getDependencies_shouldMakeDeclaringManagersDependOnLowerPriorityNonDeclaringManagers() {
+		ContentManager requirements = new TestManager(0);
+		ContentManager metadata = new TestManager(10);
+		DependentContentManager apps = new TestDependentManager(20, Collections.<Class<? extends ContentManager>>emptySet());
+		DependentContentManager early = new TestDependentManager(10, Collections.<Class<? extends ContentManager>>emptySet());
+
+		List<ContentManager> managers = Arrays.asList(requirements, metadata, early, apps);
+		Map<ContentManager, List<ContentManager>> dependencies = ContentManagerUtil.getDependencies(managers);
+
+		Assert.assertThat(dependencies.get(apps), contains(requirements, metadata));
+		Assert.assertThat(dependencies.get(early), contains(requirements));
+	}
+
+	/**
+	 * Content manager for testing
+	 */
+	private static class TestManager implements ContentManager {
+
+		private final int priority;
+
+		public TestManager(int priority) {
+			this.priority = priority;
+		}
+
+		@Override
+		public int getPriority() {
+			return priority;
+		}
+
+		@Override
+		public void refresh() {
+		}
+	}
+
+	/**
+	 * Content manager for testing which others depend on
+	 */
+	private static class TestBaseManager extends TestManager {
+
+		public TestBaseManager() {
+			super(0);
+		}
+	}
+
+	/**
+	 * Content manager for testing which declares its dependencies
+	 */
+	private static class TestDependentManager extends TestManager implements DependentContentManager {
+
+		private final Collection<Class<? extends ContentManager>> dependsOn;
+
+		public TestDependentManager(int priority, Collection<Class<? extends ContentManager>> dependsOn) {
+			super(priority);
+			this.dependsOn = dependsOn;
+		}
+
+		@Override
+		public Collection<Class<? extends ContentManager>> dependsOn() {
+			return dependsOn;
+		}
+	}
+}
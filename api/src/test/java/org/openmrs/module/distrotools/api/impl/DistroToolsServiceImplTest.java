@@ -26,6 +26,8 @@ import org.openmrs.VisitType;
 import org.openmrs.api.APIException;
 import org.openmrs.api.AdministrationService;
 import org.openmrs.api.context.Context;
+import org.openmrs.module.distrotools.ContentManager;
+import org.openmrs.module.distrotools.ResourceContentManager;
 import org.openmrs.module.distrotools.api.DistroToolsService;
 import org.openmrs.module.distrotools.chore.AbstractChore;
 import org.openmrs.module.distrotools.chore.Chore;
@@ -34,17 +36,21 @@ import org.openmrs.module.distrotools.metadata.bundle.AbstractMetadataBundle;
 import org.openmrs.module.distrotools.metadata.bundle.MetadataBundle;
 import org.openmrs.module.distrotools.metadata.bundle.Requires;
 import org.openmrs.module.distrotools.metadata.handler.impl.ProgramDeployHandler;
+import org.openmrs.module.distrotools.metadata.source.ObjectSource;
 import org.openmrs.test.BaseModuleContextSensitiveTest;
 import org.springframework.aop.framework.Advised;
 import org.springframework.aop.support.AopUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.Arrays;
 
 import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.notNullValue;
@@ -182,6 +188,25 @@ public class DistroToolsServiceImplTest extends BaseModuleContextSensitiveTest {
 		distroToolsService.installObject(location);
 	}
 
+	/**
+	 * @see DistroToolsServiceImpl#installFromSource(org.openmrs.module.distrotools.metadata.source.ObjectSource)
+	 */
+	@Test
+	public void installFromSource_shouldCloseSourceEvenIfFetchingFails() throws Exception {
+		TestLocationSource source = new TestLocationSource(location("Test Location", "Testing", uuid("test-location")), null);
+		Assert.assertThat(distroToolsService.installFromSource(source), hasSize(1));
+		Assert.assertThat(source.closed, is(true));
+
+		TestLocationSource failing = new TestLocationSource(location("Test Location", "Testing", uuid("test-location")));
+		try {
+			distroToolsService.installFromSource(failing);
+			Assert.fail();
+		}
+		catch (APIException ex) {
+			Assert.assertThat(failing.closed, is(true));
+		}
+	}
+
 	/**
 	 * @see DistroToolsServiceImpl#fetchObject(Class, String)
 	 */
@@ -256,6 +281,43 @@ public class DistroToolsServiceImplTest extends BaseModuleContextSensitiveTest {
 		Assert.assertThat(adminService.getGlobalProperty("test.chore.done"), is("true"));
 	}
 
+	/**
+	 * @see DistroToolsServiceImpl#refreshManager(org.openmrs.module.distrotools.ContentManager)
+	 */
+	@Test
+	public void refreshManager_shouldSkipResourceManagersWhoseInputsAreUnchanged() {
+		TestManager manager = new TestResourceManager();
+
+		distroToolsService.refreshManager(manager);
+		distroToolsService.refreshManager(manager);
+
+		Assert.assertThat(manager.refreshes, is(1));
+
+		try {
+			System.setProperty("forceContentRefresh", "true");
+
+			distroToolsService.refreshManager(manager);
+
+			Assert.assertThat(manager.refreshes, is(2));
+		}
+		finally {
+			System.clearProperty("forceContentRefresh");
+		}
+	}
+
+	/**
+	 * @see DistroToolsServiceImpl#refreshManager(org.openmrs.module.distrotools.ContentManager)
+	 */
+	@Test
+	public void refreshManager_shouldNotSkipOtherManagers() {
+		TestManager manager = new TestManager();
+
+		distroToolsService.refreshManager(manager);
+		distroToolsService.refreshManager(manager);
+
+		Assert.assertThat(manager.refreshes, is(2));
+	}
+
 	@Component
 	public static class TestBundle1 extends AbstractMetadataBundle {
 		@Override
@@ -316,6 +378,30 @@ public class DistroToolsServiceImplTest extends BaseModuleContextSensitiveTest {
 		}
 	}
 
+	/**
+	 * Content manager for testing which counts its refreshes
+	 */
+	public static class TestManager implements ContentManager {
+
+		public int refreshes = 0;
+
+		@Override
+		public int getPriority() {
+			return 0;
+		}
+
+		@Override
+		public void refresh() {
+			refreshes++;
+		}
+	}
+
+	/**
+	 * Content manager for testing whose only inputs are module resources
+	 */
+	public static class TestResourceManager extends TestManager implements ResourceContentManager {
+	}
+
 	/**
 	 * Chore component for testing
 	 */
@@ -330,6 +416,35 @@ public class DistroToolsServiceImplTest extends BaseModuleContextSensitiveTest {
 		}
 	}
 
+	/**
+	 * Closeable location source which fails when it runs out of locations unless the last is null, for testing
+	 */
+	public static class TestLocationSource implements ObjectSource<Location>, Closeable {
+
+		private final Location[] locations;
+
+		private int next = 0;
+
+		public boolean closed = false;
+
+		public TestLocationSource(Location... locations) {
+			this.locations = locations;
+		}
+
+		@Override
+		public Location fetchNext() throws IOException {
+			if (next >= locations.length) {
+				throw new IOException("No more locations");
+			}
+			return locations[next++];
+		}
+
+		@Override
+		public void close() {
+			closed = true;
+		}
+	}
+
 	/**
 	 * Converts a simple identifier to a valid UUID (at least by our standards)
 	 * @return the UUID
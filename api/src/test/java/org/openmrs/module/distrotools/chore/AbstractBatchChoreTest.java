@@ -0,0 +1,216 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+package org.openmrs.module.distrotools.chore;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.api.APIException;
+import org.openmrs.api.context.Context;
+import org.openmrs.api.context.UserContext;
+import org.openmrs.module.distrotools.api.DistroToolsService;
+import org.openmrs.module.distrotools.test.TestUtils;
+import org.openmrs.test.BaseModuleContextSensitiveTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.IllegalTransactionStateException;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.hamcrest.Matchers.*;
+
+/**
+ * Tests for {@link AbstractBatchChore}. Batches are performed in the test transaction so that nothing is committed.
+ */
+public class AbstractBatchChoreTest extends BaseModuleContextSensitiveTest {
+
+	@Autowired
+	private ChoreLedger choreLedger;
+
+	private PrintWriter output = new PrintWriter(new StringWriter());
+
+	/**
+	 * @see AbstractBatchChore#perform(java.io.PrintWriter)
+	 */
+	@Test
+	public void perform_shouldPerformBatchesAndSaveCheckpoints() {
+		TestBatchChore chore = new TestBatchChore(1, 25);
+		chore.setBatchSize(10);
+		chore.perform(output);
+
+		Assert.assertThat(chore.batches, contains("1-10", "11-20", "21-25"));
+		Assert.assertThat(choreLedger.getCheckpoint(chore), is(25));
+
+		// Checkpoint is removed once chore is recorded as performed
+		choreLedger.recordSuccess(chore, new Date(), new Date());
+
+		Assert.assertThat(choreLedger.getCheckpoint(chore), nullValue());
+	}
+
+	/**
+	 * @see AbstractBatchChore#perform(java.io.PrintWriter)
+	 */
+	@Test
+	public void perform_shouldResumeFromCheckpointAfterFailure() {
+		TestBatchChore chore = new TestBatchChore(1, 25);
+		chore.setBatchSize(10);
+		chore.failAt = 11;
+
+		try {
+			chore.perform(output);
+			Assert.fail();
+		}
+		catch (APIException ex) {
+		}
+
+		Assert.assertThat(choreLedger.getCheckpoint(chore), is(10));
+
+		chore.batches.clear();
+		chore.failAt = null;
+		chore.perform(output);
+
+		Assert.assertThat(chore.batches, contains("11-20", "21-25"));
+		Assert.assertThat(choreLedger.getCheckpoint(chore), is(25));
+	}
+
+	/**
+	 * @see AbstractBatchChore#perform(java.io.PrintWriter)
+	 */
+	@Test
+	public void perform_shouldIgnoreInvalidCheckpoint() {
+		TestUtils.saveGlobalProperty("test.batch.checkpoint", "xxx");
+
+		TestBatchChore chore = new TestBatchChore(1, 5);
+		chore.perform(output);
+
+		Assert.assertThat(chore.batches, contains("1-5"));
+	}
+
+	/**
+	 * @see AbstractBatchChore#perform(java.io.PrintWriter)
+	 */
+	@Test
+	public void perform_shouldPerformBatchesOnSeveralThreads() {
+		TestBatchChore chore = new TestBatchChore(0, 99);
+		chore.setBatchSize(10);
+		chore.setThreads(3);
+		chore.perform(output);
+
+		List<String> batches = new ArrayList<String>(chore.batches);
+		Collections.sort(batches);
+		Assert.assertThat(batches, hasSize(10));
+		Assert.assertThat(batches, hasItems("0-9", "50-59", "90-99"));
+
+		chore.batches.clear();
+		chore.failAt = 50;
+
+		try {
+			chore.perform(output);
+			Assert.fail();
+		}
+		catch (APIException ex) {
+			Assert.assertThat(ex.getMessage(), containsString("starting at key 50"));
+		}
+		Assert.assertThat(chore.batches, not(hasItem("50-59")));
+	}
+
+	/**
+	 * @see AbstractBatchChore#perform(java.io.PrintWriter)
+	 */
+	@Test
+	public void perform_shouldFailInsideTransaction() {
+		TestBatchChore chore = new TestBatchChore(1, 5);
+		chore.ownTransactions = true;
+
+		try {
+			chore.perform(output);
+			Assert.fail();
+		}
+		catch (APIException ex) {
+			Assert.assertThat(ex.getMessage(), containsString("inside a transaction"));
+		}
+		Assert.assertThat(chore.batches, empty());
+		Assert.assertThat(chore.isDeferrable(), is(true));
+	}
+
+	/**
+	 * @see DistroToolsService#performBatchChore(AbstractBatchChore)
+	 */
+	@Test(expected = IllegalTransactionStateException.class)
+	public void performBatchChore_shouldFailInsideTransaction() {
+		Context.getService(DistroToolsService.class).performBatchChore(new TestBatchChore(1, 5));
+	}
+
+	/**
+	 * Batch chore for testing which records the batches performed
+	 */
+	private class TestBatchChore extends AbstractBatchChore {
+
+		private final int minKey, maxKey;
+
+		private final List<String> batches = Collections.synchronizedList(new ArrayList<String>());
+
+		private Integer failAt = null;
+
+		private boolean ownTransactions = false;
+
+		public TestBatchChore(int minKey, int maxKey) {
+			setId("test.batch");
+			this.minKey = minKey;
+			this.maxKey = maxKey;
+		}
+
+		@Override
+		protected Integer getMinKey() {
+			return minKey;
+		}
+
+		@Override
+		protected Integer getMaxKey() {
+			return maxKey;
+		}
+
+		@Override
+		public void performBatch(int fromKey, int toKey, PrintWriter output) {
+			if (failAt != null && failAt == fromKey) {
+				throw new APIException("Batch failed");
+			}
+			batches.add(fromKey + "-" + toKey);
+		}
+
+		@Override
+		protected void performBatchInTransaction(int fromKey, int toKey, Integer checkpoint, PrintWriter output) {
+			if (ownTransactions) {
+				super.performBatchInTransaction(fromKey, toKey, checkpoint, output);
+				return;
+			}
+
+			performBatch(fromKey, toKey, output);
+
+			if (checkpoint != null) {
+				choreLedger.saveCheckpoint(this, checkpoint);
+			}
+		}
+
+		@Override
+		protected void performBatchInNewSession(int fromKey, int toKey, Integer checkpoint, PrintWriter output, UserContext userContext) {
+			// Worker threads have no session so checkpoints aren't saved
+			performBatch(fromKey, toKey, output);
+		}
+	}
+}
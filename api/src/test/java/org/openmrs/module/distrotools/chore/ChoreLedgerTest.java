@@ -0,0 +1,114 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+package org.openmrs.module.distrotools.chore;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.module.distrotools.test.TestUtils;
+import org.openmrs.test.BaseModuleContextSensitiveTest;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.io.PrintWriter;
+import java.util.Date;
+
+import static org.hamcrest.Matchers.*;
+
+/**
+ * Tests for {@link ChoreLedger}
+ */
+public class ChoreLedgerTest extends BaseModuleContextSensitiveTest {
+
+	@Autowired
+	private ChoreLedger choreLedger;
+
+	private Chore chore1, chore2;
+
+	@Before
+	public void setup() {
+		chore1 = new TestChore("test.chore1");
+		chore2 = new TestChore("test.chore2");
+
+		choreLedger.reload();
+	}
+
+	/**
+	 * @see ChoreLedger#reload()
+	 */
+	@Test
+	public void reload_shouldLoadChoresRecordedAsGlobalProperties() {
+		TestUtils.saveGlobalProperty("test.chore1.done", "true");
+		TestUtils.saveGlobalProperty("test.chore2.done", "false");
+
+		choreLedger.reload();
+
+		Assert.assertThat(choreLedger.isPerformed("test.chore1"), is(true));
+		Assert.assertThat(choreLedger.getEntry("test.chore1").getStarted(), nullValue());
+		Assert.assertThat(choreLedger.getEntry("test.chore1").getDuration(), nullValue());
+		Assert.assertThat(choreLedger.isPerformed("test.chore2"), is(false));
+		Assert.assertThat(choreLedger.getEntry("test.chore2"), nullValue());
+	}
+
+	/**
+	 * @see ChoreLedger#recordSuccess(Chore, java.util.Date, java.util.Date)
+	 */
+	@Test
+	public void recordSuccess_shouldRecordTimingsWhichCanBeReloaded() {
+		Date started = new Date(1000000000000l);
+		Date ended = new Date(1000000001234l);
+
+		choreLedger.recordSuccess(chore1, started, ended);
+
+		Assert.assertThat(choreLedger.isPerformed("test.chore1"), is(true));
+
+		choreLedger.reload();
+
+		ChoreLedger.Entry entry = choreLedger.getEntry("test.chore1");
+		Assert.assertThat(entry.getStarted(), is(started));
+		Assert.assertThat(entry.getEnded(), is(ended));
+		Assert.assertThat(entry.getDuration(), is(1234l));
+		Assert.assertThat(entry.getOutcome(), is(ChoreLedger.Outcome.SUCCEEDED));
+	}
+
+	/**
+	 * @see ChoreLedger#recordFailure(Chore, java.util.Date, java.util.Date, Throwable)
+	 */
+	@Test
+	public void recordFailure_shouldOnlyRecordFailureInMemory() {
+		choreLedger.recordFailure(chore2, new Date(), new Date(), new NullPointerException());
+
+		Assert.assertThat(choreLedger.isPerformed("test.chore2"), is(false));
+		Assert.assertThat(choreLedger.getEntry("test.chore2").getOutcome(), is(ChoreLedger.Outcome.FAILED));
+		Assert.assertThat(choreLedger.getEntry("test.chore2").getMessage(), containsString("NullPointerException"));
+
+		choreLedger.reload();
+
+		Assert.assertThat(choreLedger.getEntry("test.chore2"), nullValue());
+	}
+
+	/**
+	 * Chore for testing
+	 */
+	private static class TestChore extends AbstractChore {
+
+		public TestChore(String id) {
+			setId(id);
+		}
+
+		@Override
+		public void perform(PrintWriter output) {
+		}
+	}
+}
@@ -0,0 +1,53 @@
+package org.openmrs.module.distrotools.chore;
+
+import org.apache.commons.logging.impl.NoOpLog;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.*;
+
+/**
+ * Tests for {@link ChoreLogWriter}
+ */
+public class ChoreLogWriterTest {
+
+	/**
+	 * @see ChoreLogWriter#writeLine()
+	 */
+	@Test
+	public void writeLine_shouldLogEachCompleteLineAsSeparateMessage() {
+		RecordingLog log = new RecordingLog();
+
+		PrintWriter writer = new PrintWriter(new ChoreLogWriter(log));
+		writer.print("Line 1\r\nLine ");
+		writer.print("2");
+
+		Assert.assertThat(log.messages, contains("Line 1"));
+
+		writer.flush();
+
+		Assert.assertThat(log.messages, contains("Line 1", "Line 2"));
+	}
+
+	/**
+	 * Log which records INFO messages
+	 */
+	private static class RecordingLog extends NoOpLog {
+
+		private final List<Object> messages = new ArrayList<Object>();
+
+		@Override
+		public boolean isInfoEnabled() {
+			return true;
+		}
+
+		@Override
+		public void info(Object message) {
+			messages.add(message);
+		}
+	}
+}
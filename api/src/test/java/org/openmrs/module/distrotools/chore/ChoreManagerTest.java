@@ -40,9 +40,15 @@ public class ChoreManagerTest extends BaseModuleContextSensitiveTest {
 	@Autowired
 	private TestChore2 testChore2;
 
+	@Autowired
+	private TestChore4 testChore4;
+
 	@Autowired
 	private ChoreManager updateManager;
 
+	@Autowired
+	private DeferredChoreExecutor deferredChoreExecutor;
+
 	@Autowired
 	private AdministrationService adminService;
 
@@ -59,6 +65,65 @@ public class ChoreManagerTest extends BaseModuleContextSensitiveTest {
 		Assert.assertThat(Context.getPatientService().getPatient(6).isVoided(), is(true));
 	}
 
+	/**
+	 * @see ChoreManager#refresh()
+	 */
+	@Test
+	public void refresh_shouldDeferDeferrableChoresUntilTransactionCommits() {
+		updateManager.refresh();
+
+		Assert.assertThat(updateManager.isChorePerformed(testChore1), is(true));
+		Assert.assertThat(updateManager.isChorePerformed(testChore2), is(true));
+		Assert.assertThat(updateManager.isChorePerformed(testChore4), is(false));
+
+		// Test transaction is never committed, so deferred chore remains pending
+		Assert.assertThat(deferredChoreExecutor.getPendingChores(), contains((Chore) testChore4));
+	}
+
+	/**
+	 * @see ChoreManager#refresh()
+	 */
+	@Test
+	public void refresh_shouldNotRescheduleChoresWhichArePending() {
+		updateManager.refresh();
+		updateManager.refresh();
+
+		Assert.assertThat(deferredChoreExecutor.getPendingChores(), contains((Chore) testChore4));
+	}
+
+	/**
+	 * @see ChoreManager#checkImmediateChores(java.util.Collection)
+	 */
+	@Test
+	public void checkImmediateChores_shouldRejectBatchChores() {
+		updateManager.checkImmediateChores(Collections.<Chore>singleton(testChore1));
+
+		AbstractBatchChore batchChore = new AbstractBatchChore() {
+			@Override
+			protected Integer getMinKey() {
+				return null;
+			}
+
+			@Override
+			protected Integer getMaxKey() {
+				return null;
+			}
+
+			@Override
+			public void performBatch(int fromKey, int toKey, PrintWriter output) {
+			}
+		};
+		batchChore.setId("test.batch");
+
+		try {
+			updateManager.checkImmediateChores(Collections.<Chore>singleton(batchChore));
+			Assert.fail();
+		}
+		catch (APIException ex) {
+			Assert.assertThat(ex.getMessage(), containsString("test.batch"));
+		}
+	}
+
 	/**
 	 * @see ChoreManager#performChores(java.util.Collection)
 	 */
@@ -124,6 +189,21 @@ public class ChoreManagerTest extends BaseModuleContextSensitiveTest {
 		}
 	}
 
+	/**
+	 * Deferrable chore component for testing
+	 */
+	@Component("test.chore4")
+	public static class TestChore4 extends AbstractChore {
+
+		public TestChore4() {
+			setDeferrable(true);
+		}
+
+		@Override
+		public void perform(PrintWriter output) {
+		}
+	}
+
 	/**
 	 * Chore for testing which throws exception. Not a component so that it doesn't break ChoreManager.refresh
 	 */
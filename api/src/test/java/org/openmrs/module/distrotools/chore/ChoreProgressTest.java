@@ -0,0 +1,84 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+package org.openmrs.module.distrotools.chore;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.*;
+
+/**
+ * Tests for {@link ChoreProgress}
+ */
+public class ChoreProgressTest {
+
+	/**
+	 * @see ChoreProgress#increment(long)
+	 */
+	@Test
+	public void increment_shouldNotifyListenersWhenPercentDoneIncreases() {
+		final List<Integer> notified = new ArrayList<Integer>();
+
+		ChoreProgress progress = new ChoreProgress(new TestChore());
+		progress.setTotal(200);
+		progress.addListener(new ChoreProgress.Listener() {
+			@Override
+			public void percentDone(ChoreProgress progress, int percentDone) {
+				notified.add(percentDone);
+			}
+		});
+
+		progress.increment(1);
+		progress.increment(1);
+		progress.increment(98);
+		progress.increment(100);
+
+		Assert.assertThat(notified, contains(0, 1, 50, 100));
+		Assert.assertThat(progress.getCompleted(), is(200l));
+		Assert.assertThat(progress.getEstimatedRemaining(), is(0l));
+		Assert.assertThat(progress.getSummary(), startsWith("Chore 'test.chore': 200/200 (100%) items"));
+	}
+
+	/**
+	 * @see ChoreProgress#getPercentDone()
+	 */
+	@Test
+	public void getPercentDone_shouldReturnNullIfTotalIsUnknown() {
+		ChoreProgress progress = new ChoreProgress(new TestChore());
+		progress.increment();
+
+		Assert.assertThat(progress.getPercentDone(), nullValue());
+		Assert.assertThat(progress.getEstimatedRemaining(), nullValue());
+		Assert.assertThat(progress.getSummary(), startsWith("Chore 'test.chore': 1 items"));
+	}
+
+	/**
+	 * Chore for testing
+	 */
+	private static class TestChore extends AbstractChore {
+
+		public TestChore() {
+			setId("test.chore");
+		}
+
+		@Override
+		public void perform(PrintWriter output) {
+		}
+	}
+}
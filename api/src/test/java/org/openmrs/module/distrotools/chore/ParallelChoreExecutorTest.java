@@ -0,0 +1,180 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+package org.openmrs.module.distrotools.chore;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.api.APIException;
+import org.openmrs.api.context.UserContext;
+import org.openmrs.test.BaseModuleContextSensitiveTest;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.*;
+
+/**
+ * Tests for {@link ParallelChoreExecutor}. Chores are performed without sessions so that nothing is committed.
+ */
+public class ParallelChoreExecutorTest extends BaseModuleContextSensitiveTest {
+
+	/**
+	 * @see ParallelChoreExecutor#execute(java.util.List, java.util.Map)
+	 */
+	@Test
+	public void execute_shouldPerformIndependentParallelChoresConcurrently() {
+		// Chores 1 and 2 can only both finish if they run at the same time
+		final CountDownLatch latch = new CountDownLatch(2);
+		TestChore chore1 = new TestChore("chore1", true, latch);
+		TestChore chore2 = new TestChore("chore2", true, latch);
+		TestChore chore3 = new TestChore("chore3", false, null);
+
+		Map<Chore, List<Chore>> requires = new HashMap<Chore, List<Chore>>();
+		requires.put(chore3, Arrays.<Chore>asList(chore1, chore2));
+
+		TestExecutor executor = new TestExecutor(2);
+		executor.execute(Arrays.<Chore>asList(chore1, chore2, chore3), requires);
+
+		Assert.assertThat(executor.performed, hasSize(3));
+		Assert.assertThat(executor.performed.get(2), is("chore3"));
+	}
+
+	/**
+	 * @see ParallelChoreExecutor#execute(java.util.List, java.util.Map)
+	 */
+	@Test
+	public void execute_shouldPerformExclusiveChoresAlone() {
+		TestChore chore1 = new TestChore("chore1", false, null);
+		TestChore chore2 = new TestChore("chore2", true, null);
+		TestChore chore3 = new TestChore("chore3", false, null);
+		TestChore chore4 = new TestChore("chore4", true, null);
+
+		TestExecutor executor = new TestExecutor(4);
+		executor.execute(Arrays.<Chore>asList(chore1, chore2, chore3, chore4), Collections.<Chore, List<Chore>>emptyMap());
+
+		Assert.assertThat(executor.performed, hasSize(4));
+		Assert.assertThat(executor.maxConcurrentWithExclusive, is(1));
+	}
+
+	/**
+	 * @see ParallelChoreExecutor#execute(java.util.List, java.util.Map)
+	 */
+	@Test
+	public void execute_shouldReportFirstFailedChoreInGivenOrderAndNotStartDependents() {
+		TestChore chore1 = new TestChore("chore1", true, null);
+		TestChore chore2 = new TestChore("chore2", true, null);
+		TestChore chore3 = new TestChore("chore3", true, null);
+		chore1.fail = true;
+		chore2.fail = true;
+
+		Map<Chore, List<Chore>> requires = new HashMap<Chore, List<Chore>>();
+		requires.put(chore3, Arrays.<Chore>asList(chore1));
+
+		TestExecutor executor = new TestExecutor(2);
+		try {
+			executor.execute(Arrays.<Chore>asList(chore1, chore2, chore3), requires);
+			Assert.fail();
+		}
+		catch (APIException ex) {
+			Assert.assertThat(ex.getCause().getMessage(), is("chore1"));
+		}
+
+		Assert.assertThat(executor.performed, not(hasItem("chore3")));
+	}
+
+	/**
+	 * Executor which performs chores without opening new sessions
+	 */
+	private static class TestExecutor extends ParallelChoreExecutor {
+
+		private final List<String> performed = Collections.synchronizedList(new ArrayList<String>());
+
+		private int running = 0;
+
+		private boolean exclusiveRunning = false;
+
+		private int maxConcurrentWithExclusive = 0;
+
+		public TestExecutor(int poolSize) {
+			super(poolSize);
+		}
+
+		@Override
+		protected void performInNewSession(Chore chore, UserContext userContext) {
+			synchronized (this) {
+				running++;
+				if (!((TestChore) chore).isParallel()) {
+					exclusiveRunning = true;
+				}
+				if (exclusiveRunning) {
+					maxConcurrentWithExclusive = Math.max(maxConcurrentWithExclusive, running);
+				}
+			}
+			try {
+				chore.perform(null);
+				performed.add(chore.getId());
+			}
+			finally {
+				synchronized (this) {
+					running--;
+					if (!((TestChore) chore).isParallel()) {
+						exclusiveRunning = false;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Chore for testing
+	 */
+	private static class TestChore extends AbstractChore {
+
+		private final CountDownLatch latch;
+
+		private boolean fail = false;
+
+		public TestChore(String id, boolean parallel, CountDownLatch latch) {
+			setId(id);
+			setParallel(parallel);
+			this.latch = latch;
+		}
+
+		@Override
+		public void perform(PrintWriter output) {
+			if (fail) {
+				throw new APIException(getId());
+			}
+			if (latch != null) {
+				latch.countDown();
+				try {
+					if (!latch.await(10, TimeUnit.SECONDS)) {
+						throw new APIException("Timed out waiting for other chore");
+					}
+				}
+				catch (InterruptedException ex) {
+					throw new APIException("Interrupted", ex);
+				}
+			}
+		}
+	}
+}
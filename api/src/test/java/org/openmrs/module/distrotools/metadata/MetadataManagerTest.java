@@ -17,6 +17,8 @@ package org.openmrs.module.distrotools.metadata;
 import org.junit.Assert;
 import org.junit.Test;
 import org.openmrs.api.context.Context;
+import org.openmrs.module.distrotools.RefreshLedger;
+import org.openmrs.module.distrotools.api.DistroToolsService;
 import org.openmrs.module.distrotools.test.TestMetadata;
 import org.openmrs.test.BaseModuleContextSensitiveTest;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -31,6 +33,12 @@ public class MetadataManagerTest extends BaseModuleContextSensitiveTest {
 	@Autowired
 	private MetadataManager metadataManager;
 
+	@Autowired
+	private DistroToolsService distroToolsService;
+
+	@Autowired
+	private RefreshLedger refreshLedger;
+
 	/**
 	 * @see MetadataManager#refresh()
 	 */
@@ -57,4 +65,24 @@ public class MetadataManagerTest extends BaseModuleContextSensitiveTest {
 		Assert.assertThat(Context.getEncounterService().getEncounterTypeByUuid(TestMetadata._EncounterType.CONSULTATION), nullValue());
 	}
 
+	/**
+	 * @see MetadataManager#refresh()
+	 */
+	@Test
+	public void refresh_shouldNotBeRecordedAsUpToDateWhenSkipPropertyIsTrue() {
+		System.setProperty("skipMetadataRefresh", "true");
+		try {
+			distroToolsService.refreshManager(metadataManager);
+		}
+		finally {
+			System.clearProperty("skipMetadataRefresh");
+		}
+
+		Assert.assertThat(refreshLedger.isUpToDate(metadataManager, refreshLedger.getInputsFingerprint()), is(false));
+
+		distroToolsService.refreshManager(metadataManager);
+
+		Assert.assertThat(Context.getEncounterService().getEncounterTypeByUuid(TestMetadata._EncounterType.CONSULTATION), notNullValue());
+		Assert.assertThat(refreshLedger.isUpToDate(metadataManager, refreshLedger.getInputsFingerprint()), is(true));
+	}
 }
\ No newline at end of file
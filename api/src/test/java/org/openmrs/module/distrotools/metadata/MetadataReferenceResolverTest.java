@@ -0,0 +1,145 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+package org.openmrs.module.distrotools.metadata;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.EncounterType;
+import org.openmrs.Privilege;
+import org.openmrs.Role;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.distrotools.api.DistroToolsService;
+import org.openmrs.module.distrotools.test.StandardTestData;
+import org.openmrs.test.BaseModuleContextSensitiveTest;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.Arrays;
+import java.util.Set;
+
+import static org.hamcrest.Matchers.*;
+import static org.openmrs.module.distrotools.metadata.bundle.CoreConstructors.encounterType;
+import static org.openmrs.module.distrotools.metadata.bundle.CoreConstructors.idSet;
+import static org.openmrs.module.distrotools.metadata.bundle.CoreConstructors.privilege;
+import static org.openmrs.module.distrotools.metadata.bundle.CoreConstructors.role;
+
+/**
+ * Tests for {@link MetadataReferenceResolver}
+ */
+public class MetadataReferenceResolverTest extends BaseModuleContextSensitiveTest {
+
+	@Autowired
+	private MetadataReferenceResolver resolver;
+
+	@Autowired
+	private DistroToolsService distroToolsService;
+
+	@After
+	public void cleanup() {
+		resolver.endScope();
+	}
+
+	/**
+	 * @see MetadataReferenceResolver#resolve(Class, String)
+	 */
+	@Test
+	public void resolve_shouldResolveReferenceByUuid() {
+		EncounterType emergency = Context.getEncounterService().getEncounterTypeByUuid(StandardTestData._EncounterType.EMERGENCY);
+		Context.evictFromSession(emergency);
+
+		EncounterType reference = resolver.resolve(EncounterType.class, StandardTestData._EncounterType.EMERGENCY);
+
+		Assert.assertThat(reference.getId(), is(emergency.getId()));
+		Assert.assertThat(reference.getName(), is(emergency.getName()));
+	}
+
+	/**
+	 * @see MetadataReferenceResolver#resolve(Class, String)
+	 */
+	@Test(expected = MissingMetadataException.class)
+	public void resolve_shouldThrowExceptionForNonExistent() {
+		resolver.resolve(EncounterType.class, "xxxxxxxx-xxxx-xxxx-xxxx-xxxxxxxxxxxx");
+	}
+
+	/**
+	 * @see MetadataReferenceResolver#resolveAll(Class, java.util.Collection)
+	 */
+	@Test
+	public void resolveAll_shouldResolveReferencesByPrimaryKey() {
+		distroToolsService.installObject(privilege("Test Privilege 1", "Testing"));
+		distroToolsService.installObject(privilege("Test Privilege 2", "Testing"));
+
+		Set<Privilege> references = resolver.resolveAll(Privilege.class, Arrays.asList("Test Privilege 1", "Test Privilege 2"));
+
+		Assert.assertThat(references, hasSize(2));
+		Assert.assertThat(references, hasItem(hasProperty("privilege", is("Test Privilege 1"))));
+		Assert.assertThat(references, hasItem(hasProperty("privilege", is("Test Privilege 2"))));
+	}
+
+	/**
+	 * @see MetadataReferenceResolver#resolveAll(Class, java.util.Collection)
+	 */
+	@Test(expected = MissingMetadataException.class)
+	public void resolveAll_shouldThrowExceptionIfAnyNonExistent() {
+		distroToolsService.installObject(privilege("Test Privilege 1", "Testing"));
+
+		resolver.resolveAll(Privilege.class, Arrays.asList("Test Privilege 1", "XXX"));
+	}
+
+	/**
+	 * @see MetadataReferenceResolver#beginScope()
+	 */
+	@Test
+	public void beginScope_shouldResolveObjectsCreatedDuringScope() {
+		resolver.beginScope();
+
+		Assert.assertThat(resolver.resolve(EncounterType.class, StandardTestData._EncounterType.EMERGENCY), notNullValue());
+
+		distroToolsService.installObject(encounterType("Test Encounter", "Testing", "enc-type-uuid"));
+
+		Assert.assertThat(resolver.resolve(EncounterType.class, "enc-type-uuid").getName(), is("Test Encounter"));
+
+		distroToolsService.installObject(privilege("Test Privilege 1", "Testing"));
+		distroToolsService.installObject(role("Test Role 1", "Testing", null, idSet("Test Privilege 1")));
+		Role role2 = distroToolsService.installObject(role("Test Role 2", "Testing", idSet("Test Role 1"), idSet("Test Privilege 1")));
+
+		Assert.assertThat(role2.getInheritedRoles(), contains(hasProperty("role", is("Test Role 1"))));
+		Assert.assertThat(role2.getPrivileges(), contains(hasProperty("privilege", is("Test Privilege 1"))));
+	}
+
+	/**
+	 * @see MetadataReferenceResolver#evict(org.openmrs.OpenmrsObject)
+	 */
+	@Test
+	public void evict_shouldBeCalledWhenObjectUninstalled() {
+		Privilege privilege1 = distroToolsService.installObject(privilege("Test Privilege 1", "Testing"));
+		distroToolsService.installObject(privilege("Test Privilege 2", "Testing"));
+
+		resolver.beginScope();
+
+		Assert.assertThat(resolver.resolveAll(Privilege.class, Arrays.asList("Test Privilege 1", "Test Privilege 2")), hasSize(2));
+
+		distroToolsService.uninstallObject(privilege1, "Testing");
+
+		Assert.assertThat(resolver.resolve(Privilege.class, "Test Privilege 2").getPrivilege(), is("Test Privilege 2"));
+		try {
+			resolver.resolve(Privilege.class, "Test Privilege 1");
+			Assert.fail();
+		}
+		catch (MissingMetadataException ex) {
+			// Evicted so checked again, and no longer exists
+		}
+	}
+}
@@ -18,8 +18,12 @@ import org.junit.Assert;
 import org.junit.Test;
 import org.openmrs.VisitType;
 import org.openmrs.api.context.Context;
+import org.openmrs.module.distrotools.metadata.reference.ConceptReference;
+import org.openmrs.module.distrotools.test.StandardTestData;
 import org.openmrs.test.BaseModuleContextSensitiveTest;
 
+import java.util.Arrays;
+
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.nullValue;
 
@@ -69,6 +73,22 @@ public class MetadataUtilsTest extends BaseModuleContextSensitiveTest {
 		Assert.assertThat(MetadataUtils.possible(VisitType.class, NONEXISTENT_UUID), nullValue());
 	}
 
+	/**
+	 * @see MetadataUtils#resolveAll(java.util.Collection)
+	 */
+	@Test
+	public void resolveAll_shouldResolveReferencesWhichExist() {
+		ConceptReference cd4 = new ConceptReference(StandardTestData._Concept.CD4_COUNT);
+		ConceptReference weight = new ConceptReference(StandardTestData._Concept.WEIGHT_KG);
+		ConceptReference nonexistent = new ConceptReference(NONEXISTENT_UUID);
+
+		MetadataUtils.resolveAll(Arrays.asList(cd4, weight, nonexistent));
+
+		Assert.assertThat(cd4.getTargetId(), is(Context.getConceptService().getConceptByUuid(StandardTestData._Concept.CD4_COUNT).getConceptId()));
+		Assert.assertThat(weight.getTargetId(), is(Context.getConceptService().getConceptByUuid(StandardTestData._Concept.WEIGHT_KG).getConceptId()));
+		Assert.assertThat(nonexistent.getTargetId(), nullValue());
+	}
+
 	/**
 	 * @see MetadataUtils#isValidUuid(String)
 	 */
@@ -19,14 +19,22 @@ import org.junit.Assert;
 import org.junit.Test;
 import org.openmrs.EncounterType;
 import org.openmrs.GlobalProperty;
+import org.openmrs.api.GlobalPropertyListener;
 import org.openmrs.api.context.Context;
 import org.openmrs.customdatatype.SerializingCustomDatatype;
 import org.openmrs.module.distrotools.api.DistroToolsService;
 import org.openmrs.test.BaseModuleContextSensitiveTest;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.openmrs.module.distrotools.metadata.bundle.CoreConstructors.encounterType;
 import static org.openmrs.module.distrotools.metadata.bundle.CoreConstructors.globalProperty;
 
@@ -113,6 +121,131 @@ public class GlobalPropertyDeployHandlerTest extends BaseModuleContextSensitiveT
 		Context.flushSession();
 	}
 
+	/**
+	 * @see GlobalPropertyDeployHandler#installAll(java.util.Collection)
+	 */
+	@Test
+	public void installAll_shouldOnlySaveAndNotifyChangedProperties() {
+		distroToolsService.installObject(globalProperty("test.property1", "Testing", "Value1"));
+		distroToolsService.installObject(globalProperty("test.property2", "Testing", "Value2"));
+		String uuid1 = Context.getAdministrationService().getGlobalPropertyObject("test.property1").getUuid();
+		String uuid2 = Context.getAdministrationService().getGlobalPropertyObject("test.property2").getUuid();
+
+		CountingListener listener = new CountingListener();
+		Context.getAdministrationService().addGlobalPropertyListener(listener);
+
+		try {
+			List<GlobalProperty> installed = distroToolsService.installObjects(Arrays.asList(
+					withUuid(globalProperty("test.property1", "Testing", "Value1"), uuid1), // Unchanged
+					withUuid(globalProperty("test.property2", "Testing", null), uuid2), // Unchanged as existing value is kept
+					withUuid(globalProperty("test.property3", "Testing", "Wrong"), "test-property3-uuid"),
+					withUuid(globalProperty("test.property3", "Testing", "Value3"), "test-property3-uuid"), // New then changed
+					withUuid(globalProperty("test.property1", "New desc", "Value1"), uuid1) // Changed description
+			));
+
+			Assert.assertThat(installed, hasSize(5));
+			Assert.assertThat(installed.get(2), sameInstance(installed.get(3)));
+			Assert.assertThat(listener.changed, contains("test.property3", "test.property3", "test.property1"));
+		}
+		finally {
+			Context.getAdministrationService().removeGlobalPropertyListener(listener);
+		}
+
+		GlobalProperty property1 = Context.getAdministrationService().getGlobalPropertyObject("test.property1");
+		Assert.assertThat(property1.getDescription(), is("New desc"));
+		Assert.assertThat(property1.getUuid(), is(uuid1));
+		Assert.assertThat(Context.getAdministrationService().getGlobalProperty("test.property2"), is("Value2"));
+		Assert.assertThat(Context.getAdministrationService().getGlobalProperty("test.property3"), is("Value3"));
+
+		Context.flushSession();
+	}
+
+	/**
+	 * @see GlobalPropertyDeployHandler#installAll(java.util.Collection)
+	 */
+	@Test
+	public void installAll_shouldNotSaveOrNotifyUnchangedPropertiesWithRandomUuids() {
+		distroToolsService.installObject(globalProperty("test.property1", "Testing", "Value1"));
+		distroToolsService.installObject(globalProperty("test.property2", "Testing", "Value2"));
+		String uuid1 = Context.getAdministrationService().getGlobalPropertyObject("test.property1").getUuid();
+
+		CountingListener listener = new CountingListener();
+		Context.getAdministrationService().addGlobalPropertyListener(listener);
+
+		try {
+			// Constructed properties have new random UUIDs
+			List<GlobalProperty> installed = distroToolsService.installObjects(Arrays.asList(
+					globalProperty("test.property1", "Testing", "Value1"), // Unchanged
+					globalProperty("test.property2", "Testing", "New value") // Changed value
+			));
+
+			Assert.assertThat(installed, hasSize(2));
+			Assert.assertThat(listener.changed, contains("test.property2"));
+		}
+		finally {
+			Context.getAdministrationService().removeGlobalPropertyListener(listener);
+		}
+
+		Assert.assertThat(Context.getAdministrationService().getGlobalPropertyObject("test.property1").getUuid(), is(uuid1));
+		Assert.assertThat(Context.getAdministrationService().getGlobalProperty("test.property2"), is("New value"));
+
+		Context.flushSession();
+	}
+
+	/**
+	 * @see GlobalPropertyDeployHandler#installAll(java.util.Collection)
+	 */
+	@Test
+	public void installAll_shouldReturnOneResultPerIncomingPropertyWithoutModifyingThem() {
+		distroToolsService.installObject(globalProperty("test.bulk", "Testing", "Value"));
+
+		GlobalProperty bulk = withUuid(globalProperty("test.bulk", "Testing", "New value"), "bulk-uuid");
+		List<GlobalProperty> installed = distroToolsService.installObjects(Arrays.asList(bulk, bulk));
+
+		// Changed property takes incoming UUID like a single install
+		Assert.assertThat(Context.getAdministrationService().getGlobalPropertyObject("test.bulk").getUuid(), is("bulk-uuid"));
+		Assert.assertThat(Context.getAdministrationService().getGlobalProperty("test.bulk"), is("New value"));
+
+		Assert.assertThat(installed, hasSize(2));
+		Assert.assertThat(installed.get(0).getUuid(), is("bulk-uuid"));
+		Assert.assertThat(installed.get(1), sameInstance(installed.get(0)));
+		Assert.assertThat(bulk.getUuid(), is("bulk-uuid"));
+
+		Context.flushSession();
+	}
+
+	/**
+	 * Sets the UUID of a global property
+	 * @param gp the global property
+	 * @param uuid the UUID
+	 * @return the global property
+	 */
+	private static GlobalProperty withUuid(GlobalProperty gp, String uuid) {
+		gp.setUuid(uuid);
+		return gp;
+	}
+
+	/**
+	 * Listener which records changed properties
+	 */
+	private static class CountingListener implements GlobalPropertyListener {
+
+		private List<String> changed = new ArrayList<String>();
+
+		@Override
+		public boolean supportsPropertyName(String propertyName) {
+			return propertyName.startsWith("test.");
+		}
+
+		@Override
+		public void globalPropertyChanged(GlobalProperty newValue) {
+			changed.add(newValue.getProperty());
+		}
+
+		@Override
+		public void globalPropertyDeleted(String propertyName) {}
+	}
+
 	/**
 	 * Custom data type class for testing based on encounter types
 	 */
@@ -26,6 +26,8 @@ import org.openmrs.module.distrotools.api.DistroToolsService;
 import org.openmrs.test.BaseModuleContextSensitiveTest;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.util.Set;
+
 import static org.hamcrest.Matchers.*;
 import static org.hamcrest.Matchers.contains;
 import static org.openmrs.module.distrotools.metadata.bundle.CoreConstructors.idSet;
@@ -141,4 +143,32 @@ public class RoleDeployHandlerTest extends BaseModuleContextSensitiveTest {
 
 		Assert.assertThat(role2.getInheritedRoles(), contains(role1));
 	}
-}
\ No newline at end of file
+
+	/**
+	 * @see RoleDeployHandler#overwrite(org.openmrs.Role, org.openmrs.Role)
+	 */
+	@Test
+	public void overwrite_shouldMergeChangesIntoExistingCollections() {
+		distroToolsService.installObject(privilege("Privilege1", "Testing"));
+		distroToolsService.installObject(privilege("Privilege2", "Testing"));
+		distroToolsService.installObject(privilege("Privilege3", "Testing"));
+		distroToolsService.installObject(role("Role1", "Testing", null, null));
+		distroToolsService.installObject(role("Role2", "Testing", null, null));
+		Role role3 = distroToolsService.installObject(role("Role3", "Testing", idSet("Role1"), idSet("Privilege1", "Privilege2")));
+
+		Context.flushSession();
+
+		Set<Privilege> privileges = role3.getPrivileges();
+		Set<Role> inheritedRoles = role3.getInheritedRoles();
+
+		distroToolsService.installObject(role("Role3", "Testing", idSet("Role2"), idSet("Privilege2", "Privilege3")));
+
+		Context.flushSession();
+
+		Role updated = Context.getUserService().getRole("Role3");
+		Assert.assertThat(updated.getPrivileges(), sameInstance(privileges));
+		Assert.assertThat(updated.getInheritedRoles(), sameInstance(inheritedRoles));
+		Assert.assertThat(updated.getPrivileges(), containsInAnyOrder(MetadataUtils.existing(Privilege.class, "Privilege2"), MetadataUtils.existing(Privilege.class, "Privilege3")));
+		Assert.assertThat(updated.getInheritedRoles(), contains(MetadataUtils.existing(Role.class, "Role2")));
+	}
+}
@@ -0,0 +1,145 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+package org.openmrs.module.distrotools.metadata.index;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.Concept;
+import org.openmrs.api.ConceptService;
+import org.openmrs.module.distrotools.metadata.MetadataLookup;
+import org.openmrs.module.distrotools.test.StandardTestData;
+import org.openmrs.test.BaseModuleContextSensitiveTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import static org.hamcrest.Matchers.*;
+
+/**
+ * Tests for {@link ConceptSetIndex}
+ */
+public class ConceptSetIndexTest extends BaseModuleContextSensitiveTest {
+
+	@Autowired
+	private ConceptSetIndex conceptSetIndex;
+
+	@Autowired
+	private ConceptService conceptService;
+
+	private Concept outer, inner, leaf;
+
+	/**
+	 * Creates a set containing a nested set
+	 */
+	@Before
+	public void setup() {
+		outer = conceptService.getConcept(3);
+		inner = conceptService.getConceptByUuid(StandardTestData._Concept.CD4_COUNT);
+		leaf = conceptService.getConceptByUuid(StandardTestData._Concept.WEIGHT_KG);
+
+		inner.setSet(true);
+		inner.addSetMember(leaf);
+		conceptService.saveConcept(inner);
+
+		outer.setSet(true);
+		outer.addSetMember(inner);
+		conceptService.saveConcept(outer);
+
+		conceptSetIndex.invalidate();
+	}
+
+	/**
+	 * @see ConceptSetIndex#getMemberIds(int, boolean)
+	 */
+	@Test
+	public void getMemberIds_shouldGetDirectOrTransitiveMembers() {
+		Assert.assertThat(conceptSetIndex.getMemberIds(outer.getConceptId(), false), is(new int[] { inner.getConceptId() }));
+		Assert.assertThat(conceptSetIndex.getMemberIds(outer.getConceptId(), true), is(new int[] { inner.getConceptId(), leaf.getConceptId() }));
+		Assert.assertThat(conceptSetIndex.getMemberIds(leaf.getConceptId(), true), is(new int[0]));
+	}
+
+	/**
+	 * @see ConceptSetIndex#isMember(int, int, boolean)
+	 */
+	@Test
+	public void isMember_shouldCheckDirectOrTransitiveMembership() {
+		Assert.assertThat(conceptSetIndex.isMember(outer.getConceptId(), inner.getConceptId(), false), is(true));
+		Assert.assertThat(conceptSetIndex.isMember(outer.getConceptId(), leaf.getConceptId(), false), is(false));
+		Assert.assertThat(conceptSetIndex.isMember(outer.getConceptId(), leaf.getConceptId(), true), is(true));
+		Assert.assertThat(conceptSetIndex.isMember(inner.getConceptId(), outer.getConceptId(), true), is(false));
+	}
+
+	/**
+	 * @see ConceptSetIndex#getMemberIds(int, boolean)
+	 */
+	@Test
+	public void getMemberIds_shouldHandleCycles() {
+		leaf.setSet(true);
+		leaf.addSetMember(outer);
+		conceptService.saveConcept(leaf);
+
+		conceptSetIndex.invalidate();
+
+		Assert.assertThat(conceptSetIndex.getMemberIds(outer.getConceptId(), true), is(new int[] { inner.getConceptId(), leaf.getConceptId(), outer.getConceptId() }));
+	}
+
+	/**
+	 * @see MetadataLookup#getConceptsInSet(String, boolean)
+	 */
+	@Test
+	public void getConceptsInSet_shouldUseIndex() {
+		Assert.assertThat(MetadataLookup.getConceptsInSet(outer.getUuid()), contains(inner));
+		Assert.assertThat(MetadataLookup.getConceptsInSet(outer.getUuid(), true), contains(inner, leaf));
+		Assert.assertThat(MetadataLookup.isConceptInSet(outer.getUuid(), leaf, true), is(true));
+		Assert.assertThat(conceptSetIndex.isBuilt(), is(true));
+	}
+
+	/**
+	 * @see ConceptServiceAdvice#afterReturning(Object, java.lang.reflect.Method, Object[], Object)
+	 */
+	@Test
+	public void afterReturning_shouldInvalidateIndexWhenConceptSaved() throws Throwable {
+		conceptSetIndex.getMemberIds(outer.getConceptId(), false);
+		Assert.assertThat(conceptSetIndex.isBuilt(), is(true));
+
+		new ConceptServiceAdvice().afterReturning(null, ConceptService.class.getMethod("getConcept", Integer.class), null, null);
+		Assert.assertThat(conceptSetIndex.isBuilt(), is(true));
+
+		new ConceptServiceAdvice().afterReturning(null, ConceptService.class.getMethod("saveConcept", Concept.class), null, null);
+		Assert.assertThat(conceptSetIndex.isBuilt(), is(false));
+	}
+
+	/**
+	 * @see ConceptServiceAdvice#afterReturning(Object, java.lang.reflect.Method, Object[], Object)
+	 */
+	@Test
+	public void afterReturning_shouldInvalidateIndexAgainWhenTransactionCompletes() throws Throwable {
+		new ConceptServiceAdvice().afterReturning(null, ConceptService.class.getMethod("saveConcept", Concept.class), null, null);
+
+		// Rebuilt before the change is committed...
+		conceptSetIndex.getMemberIds(outer.getConceptId(), false);
+		Assert.assertThat(conceptSetIndex.isBuilt(), is(true));
+
+		// ...but only until the transaction completes
+		for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+			if (synchronization instanceof AbstractMetadataIndex.InvalidationSynchronization) {
+				synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+			}
+		}
+
+		Assert.assertThat(conceptSetIndex.isBuilt(), is(false));
+	}
+}
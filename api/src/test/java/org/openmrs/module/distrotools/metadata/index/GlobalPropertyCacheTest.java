@@ -0,0 +1,142 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+package org.openmrs.module.distrotools.metadata.index;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.GlobalProperty;
+import org.openmrs.module.distrotools.api.DistroToolsService;
+import org.openmrs.module.distrotools.metadata.MetadataLookup;
+import org.openmrs.module.distrotools.test.TestUtils;
+import org.openmrs.test.BaseModuleContextSensitiveTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import static org.hamcrest.Matchers.*;
+import static org.openmrs.module.distrotools.metadata.bundle.CoreConstructors.globalProperty;
+
+/**
+ * Tests for {@link GlobalPropertyCache}
+ */
+public class GlobalPropertyCacheTest extends BaseModuleContextSensitiveTest {
+
+	@Autowired
+	private GlobalPropertyCache globalPropertyCache;
+
+	@Autowired
+	private DistroToolsService distroToolsService;
+
+	@Before
+	public void setup() {
+		globalPropertyCache.invalidateAll();
+		globalPropertyCache.resetStatistics();
+	}
+
+	/**
+	 * @see GlobalPropertyCache#getValue(String)
+	 */
+	@Test
+	public void getValue_shouldCacheValuesAndMissingProperties() {
+		TestUtils.saveGlobalProperty("test.property", "value1");
+
+		Assert.assertThat(globalPropertyCache.getValue("test.property"), is("value1"));
+		Assert.assertThat(globalPropertyCache.getValue("test.property"), is("value1"));
+		Assert.assertThat(globalPropertyCache.getValue("test.nonexistent"), nullValue());
+		Assert.assertThat(globalPropertyCache.getValue("test.nonexistent"), nullValue());
+
+		Assert.assertThat(globalPropertyCache.getHits(), is(2l));
+		Assert.assertThat(globalPropertyCache.getMisses(), is(2l));
+	}
+
+	/**
+	 * @see GlobalPropertyCache#globalPropertyChanged(org.openmrs.GlobalProperty)
+	 */
+	@Test
+	public void globalPropertyChanged_shouldEvictPropertyWhenChangedThroughService() {
+		Assert.assertThat(globalPropertyCache.getValue("test.property"), nullValue());
+
+		TestUtils.saveGlobalProperty("test.property", "value1");
+
+		Assert.assertThat(globalPropertyCache.getValue("test.property"), is("value1"));
+
+		TestUtils.saveGlobalProperty("test.property", "value2");
+
+		Assert.assertThat(globalPropertyCache.getValue("test.property"), is("value2"));
+		Assert.assertThat(globalPropertyCache.getMisses(), is(3l));
+	}
+
+	/**
+	 * @see GlobalPropertyCache#globalPropertyChanged(org.openmrs.GlobalProperty)
+	 */
+	@Test
+	public void globalPropertyChanged_shouldEvictPropertyAgainWhenTransactionCompletes() {
+		TestUtils.saveGlobalProperty("test.property", "value1");
+
+		// Value read before the change is committed is cached...
+		Assert.assertThat(globalPropertyCache.getValue("test.property"), is("value1"));
+		Assert.assertThat(globalPropertyCache.getValue("test.property"), is("value1"));
+		Assert.assertThat(globalPropertyCache.getMisses(), is(1l));
+
+		// ...but only until the transaction completes
+		for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+			if (synchronization instanceof GlobalPropertyCache.EvictionSynchronization) {
+				synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+			}
+		}
+
+		Assert.assertThat(globalPropertyCache.getValue("test.property"), is("value1"));
+		Assert.assertThat(globalPropertyCache.getMisses(), is(2l));
+	}
+
+	/**
+	 * @see GlobalPropertyCache#destroy()
+	 */
+	@Test
+	public void destroy_shouldUnregisterListener() {
+		Assert.assertThat(globalPropertyCache.getValue("test.property"), nullValue());
+
+		globalPropertyCache.destroy();
+		try {
+			TestUtils.saveGlobalProperty("test.property", "value1");
+
+			// Cache no longer hears about changes
+			Assert.assertThat(globalPropertyCache.getValue("test.property"), nullValue());
+			Assert.assertThat(GlobalPropertyCache.getInstance(), nullValue());
+		}
+		finally {
+			globalPropertyCache.afterPropertiesSet();
+		}
+	}
+
+	/**
+	 * @see org.openmrs.module.distrotools.metadata.handler.impl.GlobalPropertyDeployHandler
+	 */
+	@Test
+	public void integration_shouldEvictPropertyWhenInstalledOrUninstalled() {
+		distroToolsService.installObject(globalProperty("test.property", "Testing", "value1"));
+
+		Assert.assertThat(MetadataLookup.getGlobalProperty("test.property", "default"), is("value1"));
+
+		distroToolsService.installObject(globalProperty("test.property", "Testing", "value2"));
+
+		Assert.assertThat(MetadataLookup.getGlobalProperty("test.property", "default"), is("value2"));
+
+		distroToolsService.uninstallObject(distroToolsService.fetchObject(GlobalProperty.class, "test.property"), "Testing");
+
+		Assert.assertThat(MetadataLookup.getGlobalProperty("test.property", "default"), is("default"));
+	}
+}
@@ -0,0 +1,220 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+package org.openmrs.module.distrotools.metadata.index;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.Location;
+import org.openmrs.LocationTag;
+import org.openmrs.api.LocationService;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.distrotools.api.DistroToolsService;
+import org.openmrs.module.distrotools.metadata.MetadataLookup;
+import org.openmrs.test.BaseModuleContextSensitiveTest;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import static org.hamcrest.Matchers.*;
+import static org.openmrs.module.distrotools.metadata.bundle.CoreConstructors.location;
+import static org.openmrs.module.distrotools.metadata.bundle.CoreConstructors.locationTag;
+
+/**
+ * Tests for {@link LocationIndex}
+ */
+public class LocationIndexTest extends BaseModuleContextSensitiveTest {
+
+	@Autowired
+	private LocationIndex locationIndex;
+
+	@Autowired
+	private DistroToolsService distroToolsService;
+
+	private LocationTag facility;
+
+	private Location country, district, clinic;
+
+	/**
+	 * Creates a three level hierarchy with a tagged leaf location
+	 */
+	@Before
+	public void setup() {
+		facility = distroToolsService.installObject(locationTag("Facility", "Testing", "facility-tag-uuid"));
+
+		country = distroToolsService.installObject(location("Country", "Testing", "country-uuid"));
+
+		district = location("District", "Testing", "district-uuid");
+		district.setParentLocation(country);
+		district = distroToolsService.installObject(district);
+
+		clinic = location("Clinic", "Testing", "clinic-uuid");
+		clinic.setParentLocation(district);
+		clinic.addTag(facility);
+		clinic = distroToolsService.installObject(clinic);
+
+		locationIndex.invalidate();
+	}
+
+	/**
+	 * @see LocationIndex#getDescendantIds(int)
+	 */
+	@Test
+	public void getDescendantIds_shouldGetAllDescendantsInPreOrder() {
+		Assert.assertThat(locationIndex.getDescendantIds(country.getLocationId()), is(new int[] { district.getLocationId(), clinic.getLocationId() }));
+		Assert.assertThat(locationIndex.getDescendantIds(district.getLocationId()), is(new int[] { clinic.getLocationId() }));
+		Assert.assertThat(locationIndex.getDescendantIds(clinic.getLocationId()), is(new int[0]));
+		Assert.assertThat(locationIndex.getDescendantIds(-1), is(new int[0]));
+	}
+
+	/**
+	 * @see LocationIndex#isDescendant(int, int)
+	 */
+	@Test
+	public void isDescendant_shouldCheckAncestry() {
+		Assert.assertThat(locationIndex.isDescendant(clinic.getLocationId(), country.getLocationId()), is(true));
+		Assert.assertThat(locationIndex.isDescendant(clinic.getLocationId(), district.getLocationId()), is(true));
+		Assert.assertThat(locationIndex.isDescendant(country.getLocationId(), clinic.getLocationId()), is(false));
+		Assert.assertThat(locationIndex.isDescendant(country.getLocationId(), country.getLocationId()), is(false));
+	}
+
+	/**
+	 * @see LocationIndex#getLocationsByTag(String)
+	 */
+	@Test
+	public void getLocationsByTag_shouldFindTagByAnyKey() {
+		Assert.assertThat(locationIndex.getLocationsByTag("facility-tag-uuid"), contains(clinic));
+		Assert.assertThat(locationIndex.getLocationsByTag("FACILITY"), contains(clinic));
+		Assert.assertThat(locationIndex.getLocationsByTag(facility.getLocationTagId().toString()), contains(clinic));
+		Assert.assertThat(locationIndex.getLocationsByTag("xxx"), nullValue());
+	}
+
+	/**
+	 * @see LocationIndex#update(org.openmrs.Location)
+	 */
+	@Test
+	public void update_shouldBeAppliedWhenLocationsInstalled() {
+		locationIndex.getDescendantIds(country.getLocationId()); // Builds index
+
+		// Move clinic directly under country, and create a new tagged clinic under the district
+		clinic.setParentLocation(country);
+		distroToolsService.saveObject(clinic);
+
+		Location clinic2 = location("Clinic 2", "Testing", "clinic2-uuid");
+		clinic2.setParentLocation(district);
+		clinic2.addTag(facility);
+		clinic2 = distroToolsService.installObject(clinic2);
+
+		// Updates aren't applied until they're committed
+		Assert.assertThat(locationIndex.getDescendantIds(district.getLocationId()), is(new int[] { clinic.getLocationId() }));
+		completeTransaction(TransactionSynchronization.STATUS_COMMITTED);
+
+		Assert.assertThat(locationIndex.isBuilt(), is(true));
+		Assert.assertThat(locationIndex.getDescendantIds(district.getLocationId()), is(new int[] { clinic2.getLocationId() }));
+		Assert.assertThat(locationIndex.getDescendantIdsByTag(country.getLocationId(), facility.getLocationTagId()), is(new int[] { clinic2.getLocationId(), clinic.getLocationId() }));
+
+		// Retired locations are excluded from results
+		distroToolsService.uninstallObject(clinic2, "Testing");
+		completeTransaction(TransactionSynchronization.STATUS_COMMITTED);
+
+		Assert.assertThat(locationIndex.getDescendantIds(district.getLocationId()), is(new int[0]));
+		Assert.assertThat(locationIndex.getLocationIdsByTag(facility.getLocationTagId()), is(new int[] { clinic.getLocationId() }));
+	}
+
+	/**
+	 * @see LocationIndex#update(org.openmrs.Location)
+	 */
+	@Test
+	public void update_shouldInvalidateIndexIfTransactionRolledBack() {
+		locationIndex.getDescendantIds(country.getLocationId());
+
+		clinic.setParentLocation(country);
+		distroToolsService.saveObject(clinic);
+		completeTransaction(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+		Assert.assertThat(locationIndex.isBuilt(), is(false));
+	}
+
+	/**
+	 * @see MetadataLookup#getLocationsForTag(String, String)
+	 */
+	@Test
+	public void getLocationsForTag_shouldUseIndex() {
+		Assert.assertThat(MetadataLookup.getLocationsForTag("Facility"), contains(clinic));
+		Assert.assertThat(MetadataLookup.getLocationsForTag("Facility", "country-uuid"), contains(clinic));
+		Assert.assertThat(MetadataLookup.getLocationsForTag("Facility", "clinic-uuid"), empty());
+		Assert.assertThat(MetadataLookup.getDescendantLocations("District"), contains(clinic));
+		Assert.assertThat(locationIndex.isBuilt(), is(true));
+	}
+
+	/**
+	 * @see LocationServiceAdvice#afterReturning(Object, java.lang.reflect.Method, Object[], Object)
+	 */
+	@Test
+	public void afterReturning_shouldUpdateIndexWhenLocationsSavedThroughService() {
+		// Advise the location service in the same way as the module config does
+		ProxyFactory factory = new ProxyFactory();
+		factory.setInterfaces(new Class<?>[] { LocationService.class });
+		factory.setTarget(Context.getLocationService());
+		factory.addAdvice(new LocationServiceAdvice());
+		LocationService locationService = (LocationService) factory.getProxy();
+
+		Assert.assertThat(MetadataLookup.getLocationsForTag("Facility", "country-uuid"), contains(clinic));
+
+		Location clinic2 = location("Clinic 2", "Testing", "clinic2-uuid");
+		clinic2.setParentLocation(district);
+		clinic2.addTag(facility);
+		clinic2 = locationService.saveLocation(clinic2);
+		completeTransaction(TransactionSynchronization.STATUS_COMMITTED);
+
+		Assert.assertThat(locationIndex.isBuilt(), is(true));
+		Assert.assertThat(MetadataLookup.getLocationsForTag("Facility", "country-uuid"), contains(clinic, clinic2));
+		Assert.assertThat(MetadataLookup.getDescendantLocations("District"), contains(clinic, clinic2));
+
+		locationService.retireLocation(clinic, "Testing");
+		completeTransaction(TransactionSynchronization.STATUS_COMMITTED);
+
+		Assert.assertThat(MetadataLookup.getLocationsForTag("Facility"), contains(clinic2));
+
+		// Changing a tag can change its keys, so invalidates the index
+		facility.setName("Health Facility");
+		locationService.saveLocationTag(facility);
+
+		Assert.assertThat(locationIndex.isBuilt(), is(false));
+		Assert.assertThat(MetadataLookup.getLocationsForTag("Health Facility"), contains(clinic2));
+	}
+
+	/**
+	 * @see MetadataLookup#getLocationsForTag(String)
+	 */
+	@Test
+	public void getLocationsForTag_shouldNotInvalidateIndexIfFallbackFindsIndexedTag() {
+		Assert.assertThat(MetadataLookup.getLocationsForTag("00" + facility.getLocationTagId()), contains(clinic));
+		Assert.assertThat(locationIndex.isBuilt(), is(true));
+	}
+
+	/**
+	 * Runs the location index synchronizations registered with the test transaction, as if it had completed
+	 * @param status the completion status
+	 */
+	private static void completeTransaction(int status) {
+		for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+			if (synchronization instanceof LocationIndex.UpdateSynchronization) {
+				synchronization.afterCompletion(status);
+			}
+		}
+	}
+}
@@ -0,0 +1,186 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+package org.openmrs.module.distrotools.metadata.index;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.Concept;
+import org.openmrs.Program;
+import org.openmrs.ProgramWorkflow;
+import org.openmrs.ProgramWorkflowState;
+import org.openmrs.api.ProgramWorkflowService;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.distrotools.api.DistroToolsService;
+import org.openmrs.module.distrotools.metadata.MetadataLookup;
+import org.openmrs.module.distrotools.test.StandardTestData;
+import org.openmrs.test.BaseModuleContextSensitiveTest;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import static org.hamcrest.Matchers.*;
+import static org.openmrs.module.distrotools.metadata.bundle.CoreConstructors.program;
+
+/**
+ * Tests for {@link ProgramIndex}
+ */
+public class ProgramIndexTest extends BaseModuleContextSensitiveTest {
+
+	@Autowired
+	private ProgramIndex programIndex;
+
+	@Autowired
+	private DistroToolsService distroToolsService;
+
+	private Program hiv;
+
+	private ProgramWorkflow workflow;
+
+	private ProgramWorkflowState state;
+
+	@Before
+	public void setup() {
+		programIndex.invalidate();
+
+		hiv = Context.getProgramWorkflowService().getProgramByUuid(StandardTestData._Program.HIV);
+		workflow = hiv.getAllWorkflows().iterator().next();
+		state = workflow.getStates().iterator().next();
+	}
+
+	/**
+	 * @see ProgramIndex#getInstance()
+	 */
+	@Test
+	public void getInstance_shouldReturnComponent() {
+		Assert.assertThat(ProgramIndex.getInstance(), is(programIndex));
+	}
+
+	/**
+	 * @see ProgramIndex#getProgram(String)
+	 */
+	@Test
+	public void getProgram_shouldFindProgramByAllKeys() {
+		Assert.assertThat(programIndex.getProgram(hiv.getUuid()), is(hiv));
+		Assert.assertThat(programIndex.getProgram(hiv.getUuid().toUpperCase()), is(hiv));
+		Assert.assertThat(programIndex.getProgram(hiv.getName()), is(hiv));
+		Assert.assertThat(programIndex.getProgram(hiv.getName().toUpperCase()), is(hiv));
+		Assert.assertThat(programIndex.getProgram(hiv.getProgramId().toString()), is(hiv));
+		Assert.assertThat(programIndex.getProgram("xxx"), nullValue());
+	}
+
+	/**
+	 * @see ProgramIndex#getProgram(String)
+	 */
+	@Test
+	public void getProgram_shouldNotResolveKeysWhichMatchMoreThanOneProgram() {
+		String hivId = hiv.getProgramId().toString();
+		distroToolsService.installObject(program(hivId, "Testing", hiv.getConcept().getUuid(), "test-program-uuid"));
+
+		Assert.assertThat(programIndex.getProgram(hivId), nullValue());
+
+		// Service based lookup matches names before ids, and doesn't invalidate the index as it contains the program
+		Assert.assertThat(MetadataLookup.getProgram(hivId).getUuid(), is("test-program-uuid"));
+		Assert.assertThat(programIndex.isBuilt(), is(true));
+	}
+
+	/**
+	 * @see ProgramIndex#getProgram(String)
+	 */
+	@Test
+	public void getProgram_shouldNotFindProgramByConceptName() {
+		Concept concept = Context.getConceptService().getConceptByUuid(StandardTestData._Concept.CD4_COUNT);
+		distroToolsService.installObject(program("Test Program", "Testing", concept.getUuid(), "test-program-uuid"));
+
+		Assert.assertThat(programIndex.getProgram("Test Program").getUuid(), is("test-program-uuid"));
+		Assert.assertThat(programIndex.getProgram(concept.getName().getName()), nullValue());
+	}
+
+	/**
+	 * @see MetadataLookup#getProgram(String)
+	 */
+	@Test
+	public void getProgram_shouldNotInvalidateIndexIfFallbackFindsIndexedProgram() {
+		programIndex.getProgram(hiv.getUuid());
+
+		Assert.assertThat(MetadataLookup.getProgram("00" + hiv.getProgramId()), is(hiv));
+		Assert.assertThat(programIndex.isBuilt(), is(true));
+	}
+
+	/**
+	 * @see ProgramIndex#getWorkflow(String, String)
+	 */
+	@Test
+	public void getWorkflow_shouldFindWorkflowByAllKeys() {
+		Assert.assertThat(programIndex.getWorkflow(hiv.getUuid(), workflow.getUuid()), is(workflow));
+		Assert.assertThat(programIndex.getWorkflow(hiv.getUuid(), workflow.getConcept().getName().getName()), is(workflow));
+		Assert.assertThat(programIndex.getWorkflow(hiv.getUuid(), workflow.getProgramWorkflowId().toString()), is(workflow));
+		Assert.assertThat(programIndex.getWorkflow(hiv.getUuid(), "xxx"), nullValue());
+		Assert.assertThat(programIndex.getWorkflow("xxx", workflow.getUuid()), nullValue());
+	}
+
+	/**
+	 * @see ProgramIndex#getState(String, String, String)
+	 */
+	@Test
+	public void getState_shouldFindStateByAllKeys() {
+		String p = hiv.getUuid();
+		String w = workflow.getUuid();
+
+		Assert.assertThat(programIndex.getState(p, w, state.getUuid()), is(state));
+		Assert.assertThat(programIndex.getState(p, w, state.getConcept().getName().getName()), is(state));
+		Assert.assertThat(programIndex.getState(p, w, state.getConcept().getUuid()), is(state));
+		Assert.assertThat(programIndex.getState(p, w, state.getProgramWorkflowStateId().toString()), is(state));
+		Assert.assertThat(programIndex.getState(p, w, state.getConcept().getConceptId().toString()), is(state));
+		Assert.assertThat(programIndex.getState(p, w, "xxx"), nullValue());
+	}
+
+	/**
+	 * @see ProgramIndex#invalidate()
+	 */
+	@Test
+	public void invalidate_shouldBeCalledWhenProgramInstalled() {
+		programIndex.getProgram(hiv.getUuid());
+		Assert.assertThat(programIndex.isBuilt(), is(true));
+
+		distroToolsService.installObject(program("Test Program", "Testing", hiv.getConcept().getUuid(), "test-program-uuid"));
+
+		Assert.assertThat(programIndex.isBuilt(), is(false));
+		Assert.assertThat(programIndex.getProgram("Test Program").getUuid(), is("test-program-uuid"));
+	}
+
+	/**
+	 * @see ProgramWorkflowServiceAdvice#afterReturning(Object, java.lang.reflect.Method, Object[], Object)
+	 */
+	@Test
+	public void afterReturning_shouldInvalidateIndexWhenProgramSaved() throws Throwable {
+		programIndex.getProgram(hiv.getUuid());
+
+		new ProgramWorkflowServiceAdvice().afterReturning(null, ProgramWorkflowService.class.getMethod("getAllPrograms"), null, null);
+		Assert.assertThat(programIndex.isBuilt(), is(true));
+
+		new ProgramWorkflowServiceAdvice().afterReturning(hiv, ProgramWorkflowService.class.getMethod("saveProgram", Program.class), new Object[] { hiv }, null);
+		Assert.assertThat(programIndex.isBuilt(), is(false));
+	}
+
+	/**
+	 * @see MetadataLookup#getProgramWorkflowState(String, String, String)
+	 */
+	@Test
+	public void getProgramWorkflowState_shouldUseIndex() {
+		ProgramWorkflowState found = MetadataLookup.getProgramWorkflowState(hiv.getName(), workflow.getUuid(), state.getUuid());
+
+		Assert.assertThat(found, is(state));
+		Assert.assertThat(programIndex.isBuilt(), is(true));
+	}
+}
@@ -0,0 +1,54 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+package org.openmrs.module.distrotools.metadata.reference;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.Concept;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.distrotools.metadata.MissingMetadataException;
+import org.openmrs.module.distrotools.test.StandardTestData;
+import org.openmrs.test.BaseModuleContextSensitiveTest;
+
+import static org.hamcrest.Matchers.*;
+
+/**
+ * Tests for {@link ConceptReference}
+ */
+public class ConceptReferenceTest extends BaseModuleContextSensitiveTest {
+
+	/**
+	 * @see AbstractMetadataReference#getTarget()
+	 */
+	@Test
+	public void getTarget_shouldRememberPrimaryKeyOfTarget() {
+		Concept weight = Context.getConceptService().getConceptByUuid(StandardTestData._Concept.WEIGHT_KG);
+
+		ConceptReference reference = new ConceptReference(StandardTestData._Concept.WEIGHT_KG);
+
+		Assert.assertThat(reference.getTargetId(), nullValue());
+		Assert.assertThat(reference.getTarget().getUuid(), is(weight.getUuid()));
+		Assert.assertThat(reference.getTargetId(), is(weight.getConceptId()));
+		Assert.assertThat(reference.getTarget().getConceptId(), is(weight.getConceptId()));
+	}
+
+	/**
+	 * @see AbstractMetadataReference#getTarget()
+	 */
+	@Test(expected = MissingMetadataException.class)
+	public void getTarget_shouldThrowExceptionForNonExistent() {
+		new ConceptReference("xxxxxxxx-xxxx-xxxx-xxxx-xxxxxxxxxxxx").getTarget();
+	}
+}
@@ -0,0 +1,114 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+package org.openmrs.module.distrotools.metadata.source;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.Location;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.hamcrest.Matchers.*;
+
+/**
+ * Tests for {@link AbstractJdbcSource}
+ */
+public class AbstractJdbcSourceTest {
+
+	private static final String URL = "jdbc:h2:mem:jdbcsourcetest;DB_CLOSE_DELAY=-1";
+
+	private Connection connection;
+
+	@Before
+	public void setup() throws Exception {
+		Class.forName("org.h2.Driver");
+		connection = DriverManager.getConnection(URL, "sa", "");
+
+		Statement statement = connection.createStatement();
+		statement.execute("CREATE TABLE facility (name VARCHAR(255), description VARCHAR(255), uuid CHAR(36))");
+		statement.execute("INSERT INTO facility VALUES ('Location #1', 'Testing', '51DA0E0A-CD4B-4D48-9422-7555623662BB')");
+		statement.execute("INSERT INTO facility VALUES ('Location #2', NULL, 'C271874A-DACE-480A-8D55-840A96ADA70F')");
+		statement.execute("INSERT INTO facility VALUES ('Location #3', NULL, '8FA56890-2CCA-40CD-9D43-67E0C9732AA5')");
+		statement.close();
+	}
+
+	@After
+	public void cleanup() throws Exception {
+		Statement statement = connection.createStatement();
+		statement.execute("DROP TABLE facility");
+		statement.close();
+		connection.close();
+	}
+
+	@Test
+	public void integration() throws Exception {
+		TestJdbcSource source = new TestJdbcSource(connection, "SELECT * FROM facility WHERE name <> ? ORDER BY name", "Location #2");
+		source.setFetchSize(1);
+
+		Location location1 = source.fetchNext();
+		Assert.assertThat(location1.getName(), is("Location #1"));
+		Assert.assertThat(location1.getDescription(), is("Testing"));
+		Assert.assertThat(location1.getUuid(), is("51DA0E0A-CD4B-4D48-9422-7555623662BB"));
+
+		Location location3 = source.fetchNext();
+		Assert.assertThat(location3.getName(), is("Location #3"));
+		Assert.assertThat(location3.getDescription(), nullValue());
+
+		Assert.assertThat(source.fetchNext(), nullValue());
+		Assert.assertThat(source.fetchNext(), nullValue());
+
+		// Connection which wasn't opened by the source should still be open
+		Assert.assertThat(connection.isClosed(), is(false));
+	}
+
+	@Test
+	public void integration_shouldOpenAndCloseOwnConnection() throws Exception {
+		TestJdbcSource source = new TestJdbcSource(URL, "SELECT * FROM facility ORDER BY name");
+
+		Assert.assertThat(source.fetchNext().getName(), is("Location #1"));
+		Assert.assertThat(source.fetchNext().getName(), is("Location #2"));
+		Assert.assertThat(source.fetchNext().getName(), is("Location #3"));
+		Assert.assertThat(source.fetchNext(), nullValue());
+	}
+
+	/**
+	 * Implementation for testing
+	 */
+	protected class TestJdbcSource extends AbstractJdbcSource<Location> {
+
+		public TestJdbcSource(Connection connection, String sql, Object... parameters) {
+			super(connection, sql, parameters);
+		}
+
+		public TestJdbcSource(String url, String sql) throws SQLException {
+			super(url, "sa", "", sql);
+		}
+
+		@Override
+		protected Location parseRow(ResultSet row) throws SQLException {
+			Location location = new Location();
+			location.setName(row.getString("name"));
+			location.setDescription(row.getString("description"));
+			location.setUuid(row.getString("uuid"));
+			return location;
+		}
+	}
+}
@@ -0,0 +1,100 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+package org.openmrs.module.distrotools.metadata.source;
+
+import org.codehaus.jackson.JsonNode;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.Location;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.hamcrest.Matchers.*;
+
+/**
+ * Tests for {@link AbstractJsonSource}
+ */
+public class AbstractJsonSourceTest {
+
+	@Test
+	public void integration() throws Exception {
+		AbstractJsonSource<Location> jsonSource = new TestJsonSource();
+
+		Location location1 = jsonSource.fetchNext();
+		Assert.assertThat(location1.getName(), is("Location #1"));
+		Assert.assertThat(location1.getDescription(), is("Testing"));
+		Assert.assertThat(location1.getUuid(), is("51DA0E0A-CD4B-4D48-9422-7555623662BB"));
+
+		Location location2 = jsonSource.fetchNext();
+		Assert.assertThat(location2.getName(), is("Location #2"));
+		Assert.assertThat(location2.getDescription(), nullValue()); // Has null description
+
+		Location location3 = jsonSource.fetchNext();
+		Assert.assertThat(location3.getName(), is("Location #3"));
+		Assert.assertThat(location3.getDescription(), nullValue()); // Has no description
+		Assert.assertThat(location3.getUuid(), is("8FA56890-2CCA-40CD-9D43-67E0C9732AA5"));
+
+		Assert.assertThat(jsonSource.fetchNext(), nullValue());
+		Assert.assertThat(jsonSource.fetchNext(), nullValue());
+	}
+
+	@Test
+	public void integration_shouldReadTopLevelArray() throws Exception {
+		AbstractJsonSource<Location> jsonSource = new TestJsonSource(stream("[{\"name\": \"A\"}, {\"name\": \"B\"}]"), null);
+
+		Assert.assertThat(jsonSource.fetchNext().getName(), is("A"));
+		Assert.assertThat(jsonSource.fetchNext().getName(), is("B"));
+		Assert.assertThat(jsonSource.fetchNext(), nullValue());
+	}
+
+	@Test(expected = IOException.class)
+	public void integration_shouldThrowExceptionIfArrayFieldDoesNotExist() throws Exception {
+		new TestJsonSource(stream("{\"other\": []}"), "locations");
+	}
+
+	private static InputStream stream(String json) throws IOException {
+		return new ByteArrayInputStream(json.getBytes("UTF-8"));
+	}
+
+	/**
+	 * Implementation for testing
+	 */
+	protected class TestJsonSource extends AbstractJsonSource<Location> {
+
+		public TestJsonSource() throws IOException {
+			super("test-location-source.json", "locations");
+		}
+
+		public TestJsonSource(InputStream in, String arrayField) throws IOException {
+			super(in, arrayField);
+		}
+
+		@Override
+		protected Location parseElement(JsonNode element) {
+			Location location = new Location();
+			location.setName(text(element, "name"));
+			location.setDescription(text(element, "description"));
+			location.setUuid(text(element, "uuid"));
+			return location;
+		}
+
+		private String text(JsonNode element, String field) {
+			JsonNode value = element.get(field);
+			return (value != null && !value.isNull()) ? value.getTextValue() : null;
+		}
+	}
+}
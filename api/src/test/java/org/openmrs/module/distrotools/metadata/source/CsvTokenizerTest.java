@@ -0,0 +1,71 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+package org.openmrs.module.distrotools.metadata.source;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.Matchers.*;
+
+/**
+ * Tests for {@link CsvTokenizer}
+ */
+public class CsvTokenizerTest {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final String CSV = "a,\"b,c\",d\r\n\n\"say \"\"hello\"\"\",\u00e9t\u00e9,\"multi\nline\"\r\nlast,";
+
+	/**
+	 * @see CsvTokenizer#next(CsvLine)
+	 */
+	@Test
+	public void next_shouldTokenizeBuffer() throws Exception {
+		CsvTokenizer tokenizer = new CsvTokenizer(ByteBuffer.wrap(CSV.getBytes(UTF8)));
+
+		assertLines(tokenizer);
+	}
+
+	/**
+	 * @see CsvTokenizer#next(CsvLine)
+	 */
+	@Test
+	public void next_shouldTokenizeChannelWithBufferSmallerThanLines() throws Exception {
+		CsvTokenizer tokenizer = new CsvTokenizer(Channels.newChannel(new ByteArrayInputStream(CSV.getBytes(UTF8))), 2);
+
+		assertLines(tokenizer);
+	}
+
+	private void assertLines(CsvTokenizer tokenizer) throws Exception {
+		CsvLine line = new CsvLine(UTF8);
+		List<List<String>> lines = new ArrayList<List<String>>();
+		while (tokenizer.next(line)) {
+			lines.add(Arrays.asList(line.toArray()));
+		}
+
+		Assert.assertThat(lines, hasSize(3));
+		Assert.assertThat(lines.get(0), contains("a", "b,c", "d"));
+		Assert.assertThat(lines.get(1), contains("say \"hello\"", "\u00e9t\u00e9", "multi\nline"));
+		Assert.assertThat(lines.get(2), contains("last", null));
+	}
+}
@@ -0,0 +1,171 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+package org.openmrs.module.distrotools.metadata.source;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.Location;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.zip.GZIPOutputStream;
+
+import static org.hamcrest.Matchers.*;
+
+/**
+ * Tests for {@link HttpCsvSource}
+ */
+public class HttpCsvSourceTest {
+
+	private static final String CSV = "Name,Desc\nLocation #1,Testing,51DA0E0A-CD4B-4D48-9422-7555623662BB\nLocation #2,,C271874A-DACE-480A-8D55-840A96ADA70F\n";
+
+	private HttpServer server;
+
+	private URL url;
+
+	private File cacheFile;
+
+	private int requests = 0;
+
+	private int notModifiedResponses = 0;
+
+	@Before
+	public void setup() throws Exception {
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/locations.csv", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				requests++;
+
+				if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+					notModifiedResponses++;
+					exchange.sendResponseHeaders(304, -1);
+					exchange.close();
+					return;
+				}
+
+				exchange.getResponseHeaders().add("ETag", "\"v1\"");
+				exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+				exchange.sendResponseHeaders(200, 0);
+
+				OutputStream out = new GZIPOutputStream(exchange.getResponseBody());
+				out.write(CSV.getBytes("UTF-8"));
+				out.close();
+				exchange.close();
+			}
+		});
+		server.start();
+
+		url = new URL("http://localhost:" + server.getAddress().getPort() + "/locations.csv");
+
+		cacheFile = File.createTempFile("locations", ".csv");
+		cacheFile.delete();
+	}
+
+	@After
+	public void cleanup() {
+		server.stop(0);
+
+		cacheFile.delete();
+		new File(cacheFile.getPath() + HttpResource.META_SUFFIX).delete();
+		new File(cacheFile.getPath() + ".tmp").delete();
+	}
+
+	@Test
+	public void integration() throws Exception {
+		TestCsvSource source1 = new TestCsvSource();
+		Assert.assertThat(source1.isUnchanged(), is(false));
+		Assert.assertThat(source1.fetchNext().getName(), is("Location #1"));
+		Assert.assertThat(source1.fetchNext().getName(), is("Location #2"));
+		Assert.assertThat(source1.fetchNext(), nullValue());
+		source1.markSynchronized();
+
+		Assert.assertThat(cacheFile.exists(), is(true));
+
+		// Second fetch should get a not modified response, and read the cached copy
+		TestCsvSource source2 = new TestCsvSource();
+		Assert.assertThat(source2.isUnchanged(), is(true));
+		Assert.assertThat(source2.fetchNext().getName(), is("Location #1"));
+		Assert.assertThat(source2.fetchNext().getName(), is("Location #2"));
+		Assert.assertThat(source2.fetchNext(), nullValue());
+
+		Assert.assertThat(requests, is(2));
+		Assert.assertThat(notModifiedResponses, is(1));
+	}
+
+	@Test
+	public void integration_shouldNotCacheResourceWhichWasPartlyRead() throws Exception {
+		TestCsvSource source1 = new TestCsvSource();
+		source1.fetchNext();
+		source1.close();
+
+		Assert.assertThat(cacheFile.exists(), is(false));
+
+		TestCsvSource source2 = new TestCsvSource();
+		Assert.assertThat(source2.isUnchanged(), is(false));
+		source2.close();
+	}
+
+	@Test
+	public void integration_shouldNotCacheResourceUntilMarkedSynchronized() throws Exception {
+		TestCsvSource source1 = new TestCsvSource();
+		while (source1.fetchNext() != null) {
+		}
+
+		Assert.assertThat(cacheFile.exists(), is(false));
+
+		// Resource is fetched again as the last copy wasn't marked as synchronized
+		TestCsvSource source2 = new TestCsvSource();
+		Assert.assertThat(source2.isUnchanged(), is(false));
+		while (source2.fetchNext() != null) {
+		}
+		source2.markSynchronized();
+
+		Assert.assertThat(cacheFile.exists(), is(true));
+
+		TestCsvSource source3 = new TestCsvSource();
+		Assert.assertThat(source3.isUnchanged(), is(true));
+		source3.close();
+
+		Assert.assertThat(notModifiedResponses, is(1));
+	}
+
+	/**
+	 * Implementation for testing
+	 */
+	protected class TestCsvSource extends HttpCsvSource<Location> {
+
+		public TestCsvSource() throws IOException {
+			super(url, cacheFile, true);
+		}
+
+		@Override
+		protected Location parseLine(CsvLine line) {
+			Location location = new Location();
+			location.setName(line.get(0));
+			location.setDescription(line.get(1));
+			location.setUuid(line.get(2));
+			return location;
+		}
+	}
+}
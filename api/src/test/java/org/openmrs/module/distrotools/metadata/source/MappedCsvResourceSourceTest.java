@@ -0,0 +1,83 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+package org.openmrs.module.distrotools.metadata.source;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.Location;
+
+import java.io.IOException;
+
+import static org.hamcrest.Matchers.*;
+
+/**
+ * Tests for {@link MappedCsvResourceSource}
+ */
+public class MappedCsvResourceSourceTest {
+
+	@Test
+	public void integration() throws Exception {
+		MappedCsvResourceSource<Location> csvSource = new TestCsvSource();
+
+		Location location1 = csvSource.fetchNext();
+		Assert.assertThat(location1.getName(), is("Location #1"));
+		Assert.assertThat(location1.getDescription(), is("Testing"));
+		Assert.assertThat(location1.getUuid(), is("51DA0E0A-CD4B-4D48-9422-7555623662BB"));
+
+		Location location2 = csvSource.fetchNext();
+		Assert.assertThat(location2.getName(), is("Location #2"));
+		Assert.assertThat(location2.getDescription(), nullValue()); // Has empty description which should be converted to null
+
+		Location location3 = csvSource.fetchNext();
+		Assert.assertThat(location3.getName(), is("Location #3"));
+		Assert.assertThat(location3.getDescription(), nullValue()); // Has blank description which should be converted to null
+		Assert.assertThat(location3.getUuid(), is("8FA56890-2CCA-40CD-9D43-67E0C9732AA5"));
+
+		Assert.assertThat(csvSource.fetchNext(), nullValue());
+	}
+
+	@Test
+	public void integration_shouldReadCompressedResource() throws Exception {
+		MappedCsvResourceSource<Location> csvSource = new TestCsvSource("test-location-source.csv.gz");
+
+		Assert.assertThat(csvSource.fetchNext().getName(), is("Location #1"));
+		Assert.assertThat(csvSource.fetchNext().getName(), is("Location #2"));
+		Assert.assertThat(csvSource.fetchNext().getName(), is("Location #3"));
+		Assert.assertThat(csvSource.fetchNext(), nullValue());
+	}
+
+	/**
+	 * Implementation for testing
+	 */
+	protected class TestCsvSource extends MappedCsvResourceSource<Location> {
+
+		public TestCsvSource() throws IOException {
+			this("test-location-source.csv");
+		}
+
+		public TestCsvSource(String csvFile) throws IOException {
+			super(csvFile, true);
+		}
+
+		@Override
+		protected Location parseLine(CsvLine line) {
+			Location location = new Location();
+			location.setName(line.get(0));
+			location.setDescription(line.get(1));
+			location.setUuid(line.get(2));
+			return location;
+		}
+	}
+}
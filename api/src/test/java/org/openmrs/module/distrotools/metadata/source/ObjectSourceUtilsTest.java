@@ -0,0 +1,179 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+package org.openmrs.module.distrotools.metadata.source;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.Location;
+import org.openmrs.api.APIException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.hamcrest.Matchers.*;
+
+/**
+ * Tests for {@link ObjectSourceUtils}
+ */
+public class ObjectSourceUtilsTest {
+
+	/**
+	 * @see ObjectSourceUtils#iterator(ObjectSource)
+	 */
+	@Test
+	public void iterator_shouldIterateOverObjectsOfSource() {
+		Iterator<Location> iterator = ObjectSourceUtils.iterator(source("A", "B"));
+
+		Assert.assertThat(iterator.hasNext(), is(true));
+		Assert.assertThat(iterator.hasNext(), is(true));
+		Assert.assertThat(iterator.next().getName(), is("A"));
+		Assert.assertThat(iterator.next().getName(), is("B"));
+		Assert.assertThat(iterator.hasNext(), is(false));
+	}
+
+	/**
+	 * @see ObjectSourceUtils#iterator(ObjectSource)
+	 */
+	@Test(expected = APIException.class)
+	public void iterator_shouldThrowAPIExceptionIfSourceThrowsException() {
+		ObjectSourceUtils.iterator(new ObjectSource<Location>() {
+			@Override
+			public Location fetchNext() throws Exception {
+				throw new IOException();
+			}
+		}).hasNext();
+	}
+
+	/**
+	 * @see ObjectSourceUtils#filter(ObjectSource, org.openmrs.module.distrotools.metadata.source.ObjectSourceUtils.Filter)
+	 */
+	@Test
+	public void filter_shouldIncludeOnlyAcceptedObjects() throws Exception {
+		ObjectSource<Location> filtered = ObjectSourceUtils.filter(source("A", "B", "C"), new ObjectSourceUtils.Filter<Location>() {
+			@Override
+			public boolean accept(Location obj) {
+				return !obj.getName().equals("B");
+			}
+		});
+
+		Assert.assertThat(names(filtered), contains("A", "C"));
+	}
+
+	/**
+	 * @see ObjectSourceUtils#map(ObjectSource, org.openmrs.module.distrotools.metadata.source.ObjectSourceUtils.Mapper)
+	 */
+	@Test
+	public void map_shouldMapEachObject() throws Exception {
+		ObjectSource<Location> mapped = ObjectSourceUtils.map(source("A", "B"), new ObjectSourceUtils.Mapper<Location, Location>() {
+			@Override
+			public Location map(Location obj) {
+				return location(obj.getName() + obj.getName());
+			}
+		});
+
+		Assert.assertThat(names(mapped), contains("AA", "BB"));
+	}
+
+	/**
+	 * @see ObjectSourceUtils#concat(java.util.List)
+	 */
+	@Test
+	public void concat_shouldFetchFromEachSourceInTurn() throws Exception {
+		List<ObjectSource<Location>> sources = new ArrayList<ObjectSource<Location>>();
+		sources.add(source("A"));
+		sources.add(source());
+		sources.add(source("B", "C"));
+
+		ObjectSource<Location> concatenated = ObjectSourceUtils.concat(sources);
+
+		Assert.assertThat(names(concatenated), contains("A", "B", "C"));
+	}
+
+	/**
+	 * @see ObjectSourceUtils#distinct(ObjectSource, org.openmrs.module.distrotools.metadata.source.ObjectSourceUtils.Mapper)
+	 */
+	@Test
+	public void distinct_shouldExcludeObjectsWithDuplicateKeys() throws Exception {
+		ObjectSource<Location> distinct = ObjectSourceUtils.distinct(source("A", "B", "A", "C", "B"), new ObjectSourceUtils.Mapper<Location, String>() {
+			@Override
+			public String map(Location obj) {
+				return obj.getName();
+			}
+		});
+
+		Assert.assertThat(names(distinct), contains("A", "B", "C"));
+	}
+
+	/**
+	 * @see ObjectSourceUtils#limit(ObjectSource, int)
+	 */
+	@Test
+	public void limit_shouldFetchAtMostMaxObjectsAndCloseSource() throws Exception {
+		ClosingSource source = new ClosingSource(source("A", "B", "C"));
+		ObjectSource<Location> limited = ObjectSourceUtils.limit(source, 2);
+
+		Assert.assertThat(names(limited), contains("A", "B"));
+		Assert.assertThat(source.closed, is(true));
+	}
+
+	private static List<String> names(ObjectSource<Location> source) throws Exception {
+		List<String> names = new ArrayList<String>();
+		for (Location location : ObjectSourceUtils.iterable(source)) {
+			names.add(location.getName());
+		}
+		return names;
+	}
+
+	private static ObjectSource<Location> source(String... names) {
+		List<Location> locations = new ArrayList<Location>();
+		for (String name : names) {
+			locations.add(location(name));
+		}
+		return ObjectSourceUtils.fromIterable(locations);
+	}
+
+	private static Location location(String name) {
+		Location location = new Location();
+		location.setName(name);
+		return location;
+	}
+
+	/**
+	 * Source which records whether it was closed
+	 */
+	private static class ClosingSource implements ObjectSource<Location>, Closeable {
+
+		private final ObjectSource<Location> source;
+
+		private boolean closed = false;
+
+		public ClosingSource(ObjectSource<Location> source) {
+			this.source = source;
+		}
+
+		@Override
+		public Location fetchNext() throws Exception {
+			return source.fetchNext();
+		}
+
+		@Override
+		public void close() {
+			closed = true;
+		}
+	}
+}
@@ -0,0 +1,139 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+package org.openmrs.module.distrotools.metadata.source;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.Location;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.hamcrest.Matchers.*;
+
+/**
+ * Tests for {@link ParallelCsvResourceSource}
+ */
+public class ParallelCsvResourceSourceTest {
+
+	@Test
+	public void integration() throws Exception {
+		// Small chunk size means each line is parsed as a separate chunk
+		ParallelCsvResourceSource<Location> csvSource = new TestCsvSource(true);
+
+		Location location1 = csvSource.fetchNext();
+		Assert.assertThat(location1.getName(), is("Location #1"));
+		Assert.assertThat(location1.getDescription(), is("Testing"));
+		Assert.assertThat(location1.getUuid(), is("51DA0E0A-CD4B-4D48-9422-7555623662BB"));
+
+		Location location2 = csvSource.fetchNext();
+		Assert.assertThat(location2.getName(), is("Location #2"));
+		Assert.assertThat(location2.getDescription(), nullValue());
+
+		Location location3 = csvSource.fetchNext();
+		Assert.assertThat(location3.getName(), is("Location #3"));
+		Assert.assertThat(location3.getDescription(), nullValue());
+		Assert.assertThat(location3.getUuid(), is("8FA56890-2CCA-40CD-9D43-67E0C9732AA5"));
+
+		Assert.assertThat(csvSource.fetchNext(), nullValue());
+	}
+
+	@Test
+	public void integration_shouldFetchAllObjectsWhenUnordered() throws Exception {
+		ParallelCsvResourceSource<Location> csvSource = new TestCsvSource(false);
+
+		Set<String> names = new HashSet<String>();
+		Location location;
+		while ((location = csvSource.fetchNext()) != null) {
+			names.add(location.getName());
+		}
+
+		Assert.assertThat(names, containsInAnyOrder("Location #1", "Location #2", "Location #3"));
+	}
+
+	@Test
+	public void integration_shouldStreamCompressedResource() throws Exception {
+		ParallelCsvResourceSource<Location> csvSource = new TestCsvSource("test-location-source.csv.gz", true);
+
+		Assert.assertThat(fetchNames(csvSource), contains("Location #1", "Location #2", "Location #3"));
+	}
+
+	@Test
+	public void integration_shouldMapFileInSeveralWindows() throws Exception {
+		// Windows are smaller than most lines so must also be enlarged
+		ParallelCsvResourceSource<Location> csvSource = new TestCsvSource("test-location-source.csv", true) {
+			@Override
+			protected int getWindowSize() {
+				return 16;
+			}
+		};
+
+		Assert.assertThat(fetchNames(csvSource), contains("Location #1", "Location #2", "Location #3"));
+	}
+
+	/**
+	 * @see ParallelCsvResourceSource#findChunkBoundaries(java.nio.ByteBuffer, int, int)
+	 */
+	@Test
+	public void findChunkBoundaries_shouldSplitOnlyAtLineBreaksOutsideQuotes() throws Exception {
+		ByteBuffer buffer = ByteBuffer.wrap("a,b\n\"c\nd\",e\n\"f\"\"\ng\",h\ni,j".getBytes("UTF-8"));
+
+		Assert.assertThat(ParallelCsvResourceSource.findChunkBoundaries(buffer, 0, 1), contains(0, 4, 12, 22, 25));
+		Assert.assertThat(ParallelCsvResourceSource.findChunkBoundaries(buffer, 0, 10), contains(0, 12, 22, 25));
+		Assert.assertThat(ParallelCsvResourceSource.findChunkBoundaries(buffer, 0, 100), contains(0, 25));
+	}
+
+	/**
+	 * Fetches the names of all locations from a source
+	 * @param csvSource the source
+	 * @return the names
+	 */
+	protected static List<String> fetchNames(ParallelCsvResourceSource<Location> csvSource) throws Exception {
+		List<String> names = new ArrayList<String>();
+		Location location;
+		while ((location = csvSource.fetchNext()) != null) {
+			names.add(location.getName());
+		}
+		return names;
+	}
+
+	/**
+	 * Implementation for testing
+	 */
+	protected class TestCsvSource extends ParallelCsvResourceSource<Location> {
+
+		public TestCsvSource(boolean ordered) throws IOException {
+			this("test-location-source.csv", ordered);
+		}
+
+		public TestCsvSource(String csvFile, boolean ordered) throws IOException {
+			super(csvFile, true, Charset.forName("UTF-8"), 2, ordered, 1);
+		}
+
+		@Override
+		protected Location parseLine(CsvLine line) {
+			Location location = new Location();
+			location.setName(line.get(0));
+			location.setDescription(line.get(1));
+			location.setUuid(line.get(2));
+			return location;
+		}
+	}
+}
@@ -0,0 +1,194 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+package org.openmrs.module.distrotools.metadata.source;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.Location;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.*;
+
+/**
+ * Tests for {@link PrefetchingObjectSource}
+ */
+public class PrefetchingObjectSourceTest {
+
+	/**
+	 * @see PrefetchingObjectSource#fetchNext()
+	 */
+	@Test
+	public void fetchNext_shouldFetchAllObjectsInOrder() throws Exception {
+		PrefetchingObjectSource<Location> source = new PrefetchingObjectSource<Location>(new CountingSource(10, false), 3);
+
+		for (int l = 1; l <= 10; l++) {
+			Assert.assertThat(source.fetchNext().getName(), is("Location #" + l));
+		}
+		Assert.assertThat(source.fetchNext(), nullValue());
+		Assert.assertThat(source.fetchNext(), nullValue());
+	}
+
+	/**
+	 * @see PrefetchingObjectSource#fetchNext()
+	 */
+	@Test
+	public void fetchNext_shouldNotFetchMoreThanCapacityAheadOfConsumer() throws Exception {
+		CountingSource counting = new CountingSource(100, false);
+		PrefetchingObjectSource<Location> source = new PrefetchingObjectSource<Location>(counting, 3);
+
+		source.fetchNext();
+		Thread.sleep(200);
+
+		// One taken by the consumer, three in the buffer and one waiting to be put in the buffer
+		Assert.assertThat(counting.fetched.get(), lessThanOrEqualTo(5));
+
+		source.close();
+	}
+
+	/**
+	 * @see PrefetchingObjectSource#fetchNext()
+	 */
+	@Test(expected = IOException.class)
+	public void fetchNext_shouldThrowExceptionFromSourceAfterEarlierObjects() throws Exception {
+		PrefetchingObjectSource<Location> source = new PrefetchingObjectSource<Location>(new CountingSource(2, true), 3);
+
+		Assert.assertThat(source.fetchNext().getName(), is("Location #1"));
+		Assert.assertThat(source.fetchNext().getName(), is("Location #2"));
+		source.fetchNext();
+	}
+
+	/**
+	 * @see PrefetchingObjectSource#close()
+	 */
+	@Test
+	public void close_shouldNotCloseSourceWhileProducerIsFetching() throws Exception {
+		BlockingSource blocking = new BlockingSource();
+		PrefetchingObjectSource<Location> source = new PrefetchingObjectSource<Location>(blocking, 3);
+
+		source.fetchNext();
+		Assert.assertThat(blocking.fetching.await(5, TimeUnit.SECONDS), is(true));
+
+		source.close();
+		Assert.assertThat(blocking.closed.getCount(), is(1L));
+
+		// Source is closed by the producer once its fetch returns
+		blocking.release.countDown();
+		Assert.assertThat(blocking.closed.await(5, TimeUnit.SECONDS), is(true));
+		Assert.assertThat(blocking.closedWhileFetching, is(false));
+	}
+
+	/**
+	 * @see PrefetchingObjectSource#close()
+	 */
+	@Test
+	public void close_shouldCloseSourceIfProducerNotStarted() throws Exception {
+		BlockingSource blocking = new BlockingSource();
+		PrefetchingObjectSource<Location> source = new PrefetchingObjectSource<Location>(blocking, 3);
+
+		source.close();
+		Assert.assertThat(blocking.closed.getCount(), is(0L));
+	}
+
+	/**
+	 * Source of numbered locations which counts how many have been fetched
+	 */
+	private static class CountingSource implements ObjectSource<Location> {
+
+		private final int size;
+
+		private final boolean fail;
+
+		private final AtomicInteger fetched = new AtomicInteger();
+
+		public CountingSource(int size, boolean fail) {
+			this.size = size;
+			this.fail = fail;
+		}
+
+		@Override
+		public Location fetchNext() throws Exception {
+			if (fetched.get() >= size) {
+				if (fail) {
+					throw new IOException("Failed");
+				}
+				return null;
+			}
+
+			Location location = new Location();
+			location.setName("Location #" + fetched.incrementAndGet());
+			return location;
+		}
+	}
+
+	/**
+	 * Source whose second fetch blocks (ignoring interrupts, like some I/O) until it is released, and which records
+	 * whether it was closed during that fetch
+	 */
+	private static class BlockingSource implements ObjectSource<Location>, Closeable {
+
+		private final CountDownLatch fetching = new CountDownLatch(1);
+
+		private final CountDownLatch release = new CountDownLatch(1);
+
+		private final CountDownLatch closed = new CountDownLatch(1);
+
+		private volatile boolean inFetch = false;
+
+		private volatile boolean closedWhileFetching = false;
+
+		private boolean first = true;
+
+		@Override
+		public Location fetchNext() throws Exception {
+			if (first) {
+				first = false;
+				return new Location();
+			}
+
+			inFetch = true;
+			fetching.countDown();
+
+			boolean interrupted = false;
+			while (true) {
+				try {
+					release.await();
+					break;
+				}
+				catch (InterruptedException ex) {
+					interrupted = true;
+				}
+			}
+			inFetch = false;
+
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+			return new Location();
+		}
+
+		@Override
+		public void close() {
+			if (inFetch) {
+				closedWhileFetching = true;
+			}
+			closed.countDown();
+		}
+	}
+}
@@ -0,0 +1,71 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+package org.openmrs.module.distrotools.metadata.source;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URL;
+
+import static org.hamcrest.Matchers.*;
+
+/**
+ * Tests for {@link ResourceUtils}
+ */
+public class ResourceUtilsTest {
+
+	/**
+	 * @see ResourceUtils#getResource(ClassLoader, String)
+	 */
+	@Test(expected = IOException.class)
+	public void getResource_shouldThrowExceptionIfResourceDoesNotExist() throws Exception {
+		ResourceUtils.getResource(getClass().getClassLoader(), "xxx.csv");
+	}
+
+	/**
+	 * @see ResourceUtils#isCompressed(java.net.URL)
+	 */
+	@Test
+	public void isCompressed_shouldDetectGzipResources() throws Exception {
+		Assert.assertThat(ResourceUtils.isCompressed(getResource("test-location-source.csv")), is(false));
+		Assert.assertThat(ResourceUtils.isCompressed(getResource("test-location-source.csv.gz")), is(true));
+	}
+
+	/**
+	 * @see ResourceUtils#openStream(java.net.URL)
+	 */
+	@Test
+	public void openStream_shouldDecompressGzipResources() throws Exception {
+		Assert.assertThat(readFirstLine(getResource("test-location-source.csv")), is("Name,Desc"));
+		Assert.assertThat(readFirstLine(getResource("test-location-source.csv.gz")), is("Name,Desc"));
+	}
+
+	private URL getResource(String path) throws IOException {
+		return ResourceUtils.getResource(getClass().getClassLoader(), path);
+	}
+
+	private static String readFirstLine(URL url) throws IOException {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(ResourceUtils.openStream(url), "UTF-8"));
+		try {
+			return reader.readLine();
+		}
+		finally {
+			reader.close();
+		}
+	}
+}
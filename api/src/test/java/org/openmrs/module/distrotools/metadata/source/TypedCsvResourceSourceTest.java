@@ -0,0 +1,98 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+
+package org.openmrs.module.distrotools.metadata.source;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.Location;
+import org.openmrs.api.APIException;
+
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import static org.hamcrest.Matchers.*;
+
+/**
+ * Tests for {@link TypedCsvResourceSource}
+ */
+public class TypedCsvResourceSourceTest {
+
+	@Test
+	public void integration() throws Exception {
+		TypedCsvResourceSource<Location> csvSource = new TestCsvSource();
+
+		Location location1 = csvSource.fetchNext();
+		Assert.assertThat(location1.getName(), is("Location #1"));
+		Assert.assertThat(location1.getPostalCode(), is("101"));
+		Assert.assertThat(location1.getRetired(), is(true));
+		Assert.assertThat(location1.getDateCreated(), is(new SimpleDateFormat("yyyy-MM-dd").parse("2014-01-31")));
+		Assert.assertThat(location1.getUuid(), is("51DA0E0A-CD4B-4D48-9422-7555623662BB"));
+
+		Location location2 = csvSource.fetchNext();
+		Assert.assertThat(location2.getName(), is("Location #2"));
+		Assert.assertThat(location2.getPostalCode(), nullValue()); // Has empty code which should be converted to null
+		Assert.assertThat(location2.getRetired(), is(false));
+		Assert.assertThat(location2.getDateCreated(), nullValue());
+
+		try {
+			csvSource.fetchNext();
+			Assert.fail();
+		}
+		catch (IllegalArgumentException ex) {
+			Assert.assertThat(ex.getMessage(), is("Invalid value 'x103' in column 'Code'"));
+		}
+	}
+
+	/**
+	 * @see TypedCsvResourceSource#column(String, org.openmrs.module.distrotools.metadata.source.TypedCsvResourceSource.Converter)
+	 */
+	@Test(expected = APIException.class)
+	public void column_shouldThrowExceptionIfColumnDoesNotExist() throws Exception {
+		new TestCsvSource().stringColumn("Missing");
+	}
+
+	/**
+	 * Implementation for testing
+	 */
+	protected class TestCsvSource extends TypedCsvResourceSource<Location> {
+
+		private final Column<String> name = stringColumn("Name");
+
+		private final Column<Integer> code = intColumn("Code");
+
+		private final Column<Boolean> retired = booleanColumn("Retired");
+
+		private final Column<Date> opened = dateColumn("Opened", "yyyy-MM-dd");
+
+		private final Column<String> uuid = uuidColumn("UUID");
+
+		public TestCsvSource() throws IOException {
+			super("test-typed-location-source.csv");
+		}
+
+		@Override
+		protected Location parseRow(Row row) {
+			Location location = new Location();
+			location.setName(row.get(name));
+			Integer codeValue = row.get(code);
+			location.setPostalCode(codeValue != null ? codeValue.toString() : null);
+			location.setRetired(row.get(retired));
+			location.setDateCreated(row.get(opened));
+			location.setUuid(row.get(uuid));
+			return location;
+		}
+	}
+}
@@ -19,10 +19,14 @@ import org.junit.Test;
 import org.openmrs.Location;
 import org.openmrs.api.LocationService;
 import org.openmrs.module.distrotools.metadata.source.AbstractCsvResourceSource;
+import org.openmrs.module.distrotools.metadata.source.ChangeTrackingSource;
 import org.openmrs.test.BaseModuleContextSensitiveTest;
 import org.openmrs.util.OpenmrsUtil;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.util.List;
 
@@ -61,6 +65,78 @@ public class MetadataSynchronizationRunnerTest extends BaseModuleContextSensitiv
 		Assert.assertThat(location2.getName(), is("Location #2"));
 	}
 
+	/**
+	 * @see MetadataSynchronizationRunner#run()
+	 */
+	@Test
+	public void run_shouldSkipSynchronizationIfSourceIsUnchanged() throws Exception {
+		MetadataSynchronizationRunner<Location> runner = new MetadataSynchronizationRunner<Location>(new UnchangedSource(), new TestUuidSynchronization());
+		SyncResult<Location> result = runner.run();
+
+		Assert.assertThat(result.getCreated(), hasSize(0));
+		Assert.assertThat(result.getUpdated(), hasSize(0));
+		Assert.assertThat(result.getRetired(), hasSize(0)); // Existing locations not retired even though source is empty
+
+		Assert.assertThat(locationService.getLocation("Xanadu").isRetired(), is(false));
+	}
+
+	/**
+	 * @see MetadataSynchronizationRunner#run()
+	 */
+	@Test
+	public void run_shouldMarkSourceSynchronizedAfterSuccessfulSynchronization() throws Exception {
+		ChangedSource source = new ChangedSource(false);
+		new MetadataSynchronizationRunner<Location>(source, new TestUuidSynchronization()).run();
+
+		// Not marked until the synchronization is committed
+		Assert.assertThat(source.synced, is(false));
+		completeTransaction(TransactionSynchronization.STATUS_COMMITTED);
+
+		Assert.assertThat(source.synced, is(true));
+		Assert.assertThat(source.closed, is(true));
+	}
+
+	/**
+	 * @see MetadataSynchronizationRunner#run()
+	 */
+	@Test
+	public void run_shouldNotMarkSourceSynchronizedIfTransactionRolledBack() throws Exception {
+		ChangedSource source = new ChangedSource(false);
+		new MetadataSynchronizationRunner<Location>(source, new TestUuidSynchronization()).run();
+
+		completeTransaction(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+		Assert.assertThat(source.synced, is(false));
+	}
+
+	/**
+	 * @see MetadataSynchronizationRunner#run()
+	 */
+	@Test
+	public void run_shouldNotMarkSourceSynchronizedIfFetchingFails() throws Exception {
+		ChangedSource source = new ChangedSource(true);
+		new MetadataSynchronizationRunner<Location>(source, new TestUuidSynchronization()).run();
+		completeTransaction(TransactionSynchronization.STATUS_COMMITTED);
+
+		Assert.assertThat(source.synced, is(false));
+		Assert.assertThat(source.closed, is(true));
+	}
+
+	/**
+	 * Runs the runner synchronizations registered with the test transaction, as if it had completed
+	 * @param status the completion status
+	 */
+	private static void completeTransaction(int status) {
+		for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+			if (synchronization instanceof MetadataSynchronizationRunner.MarkSynchronizedSynchronization) {
+				if (status == TransactionSynchronization.STATUS_COMMITTED) {
+					synchronization.afterCommit();
+				}
+				synchronization.afterCompletion(status);
+			}
+		}
+	}
+
 	/**
 	 * Location source for testing
 	 */
@@ -80,6 +156,70 @@ public class MetadataSynchronizationRunnerTest extends BaseModuleContextSensitiv
 		}
 	}
 
+	/**
+	 * Location source which is always unchanged, for testing
+	 */
+	protected class UnchangedSource implements ChangeTrackingSource<Location> {
+
+		@Override
+		public boolean isUnchanged() {
+			return true;
+		}
+
+		@Override
+		public void markSynchronized() {
+			throw new AssertionError("Unchanged source shouldn't be marked as synchronized");
+		}
+
+		@Override
+		public Location fetchNext() {
+			throw new AssertionError("Unchanged source shouldn't be read");
+		}
+	}
+
+	/**
+	 * Location source which is always changed and records whether it was marked as synchronized or closed, for testing
+	 */
+	protected class ChangedSource implements ChangeTrackingSource<Location>, Closeable {
+
+		private final TestCsvSource source;
+
+		private final boolean fail;
+
+		private boolean synced = false;
+
+		private boolean closed = false;
+
+		public ChangedSource(boolean fail) throws IOException {
+			this.source = new TestCsvSource();
+			this.fail = fail;
+		}
+
+		@Override
+		public boolean isUnchanged() {
+			return false;
+		}
+
+		@Override
+		public void markSynchronized() {
+			synced = true;
+		}
+
+		@Override
+		public Location fetchNext() throws Exception {
+			Location next = source.fetchNext();
+			if (next == null && fail) {
+				throw new IOException("Failed");
+			}
+			return next;
+		}
+
+		@Override
+		public void close() {
+			closed = true;
+		}
+	}
+
 	/**
 	 * Location UUID based synchronization for testing
 	 */
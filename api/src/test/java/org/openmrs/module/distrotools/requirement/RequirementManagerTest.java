@@ -15,11 +15,15 @@
 package org.openmrs.module.distrotools.requirement;
 
 import org.junit.Assert;
+import org.junit.Before;
 import org.junit.Test;
 import org.openmrs.test.BaseModuleContextSensitiveTest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.util.Arrays;
+import java.util.List;
+
 import static org.hamcrest.Matchers.*;
 
 /**
@@ -33,6 +37,13 @@ public class RequirementManagerTest extends BaseModuleContextSensitiveTest {
 	@Autowired
 	private TestRequirement testRequirement;
 
+	@Before
+	public void setup() {
+		RequirementManager.clearCache();
+		testRequirement.checks = 0;
+		testRequirement.foundVersion = "2.0";
+	}
+
 	/**
 	 * @see RequirementManager#refresh()
 	 */
@@ -54,6 +65,8 @@ public class RequirementManagerTest extends BaseModuleContextSensitiveTest {
 			requirementManager.refresh();
 		}
 		catch(UnsatisfiedRequirementException ex) {
+			Assert.assertThat(ex, instanceOf(UnsatisfiedRequirementsException.class));
+			Assert.assertThat(((UnsatisfiedRequirementsException) ex).getRequirements(), contains((Requirement) testRequirement));
 			return;
 		}
 		finally {
@@ -63,6 +76,62 @@ public class RequirementManagerTest extends BaseModuleContextSensitiveTest {
 		Assert.fail();
 	}
 
+	/**
+	 * @see RequirementManager#refresh()
+	 */
+	@Test
+	public void refresh_shouldNotCheckPreviouslySatisfiedRequirementsAgain() {
+		requirementManager.refresh();
+		requirementManager.refresh();
+
+		Assert.assertThat(testRequirement.checks, is(1));
+	}
+
+	/**
+	 * @see RequirementManager#refresh()
+	 */
+	@Test
+	public void refresh_shouldCheckPreviouslySatisfiedRequirementsAgainIfFoundVersionChanged() {
+		requirementManager.refresh();
+
+		testRequirement.foundVersion = "0.9";
+		testRequirement.satisfied = false;
+
+		try {
+			requirementManager.refresh();
+			Assert.fail();
+		}
+		catch (UnsatisfiedRequirementsException ex) {
+			Assert.assertThat(testRequirement.checks, is(2));
+		}
+		finally {
+			testRequirement.satisfied = true;
+		}
+	}
+
+	/**
+	 * @see RequirementManager#checkRequirements(java.util.List)
+	 */
+	@Test
+	public void checkRequirements_shouldCheckAllRequirementsAndCatchErrors() {
+		TestRequirement requirement1 = new TestRequirement();
+		TestRequirement requirement2 = new TestRequirement();
+		requirement2.satisfied = false;
+		TestRequirement requirement3 = new TestRequirement();
+		requirement3.error = true;
+
+		List<RequirementManager.Result> results = requirementManager.checkRequirements(Arrays.<Requirement>asList(requirement1, requirement2, requirement3));
+
+		Assert.assertThat(results, hasSize(3));
+		Assert.assertThat(results.get(0).getRequirement(), is((Requirement) requirement1));
+		Assert.assertThat(results.get(0).isSatisfied(), is(true));
+		Assert.assertThat(results.get(0).getFoundVersion(), is("2.0"));
+		Assert.assertThat(results.get(1).isSatisfied(), is(false));
+		Assert.assertThat(results.get(1).getError(), nullValue());
+		Assert.assertThat(results.get(2).isSatisfied(), is(false));
+		Assert.assertThat(results.get(2).getError(), instanceOf(IllegalStateException.class));
+	}
+
 	/**
 	 * Requirement component for testing that can be configured to fail or pass
 	 */
@@ -71,6 +140,12 @@ public class RequirementManagerTest extends BaseModuleContextSensitiveTest {
 
 		public boolean satisfied = true;
 
+		public boolean error = false;
+
+		public int checks = 0;
+
+		public String foundVersion = "2.0";
+
 		@Override
 		public String getName() {
 			return "Test Requirement";
@@ -83,11 +158,15 @@ public class RequirementManagerTest extends BaseModuleContextSensitiveTest {
 
 		@Override
 		public String getFoundVersion() {
-			return "2.0";
+			return foundVersion;
 		}
 
 		@Override
 		public boolean isSatisfied() {
+			checks++;
+			if (error) {
+				throw new IllegalStateException("Unable to check");
+			}
 			return satisfied;
 		}
 	}